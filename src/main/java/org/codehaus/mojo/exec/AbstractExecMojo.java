@@ -20,13 +20,22 @@ package org.codehaus.mojo.exec;
  */
 
 import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 
 import org.apache.maven.artifact.Artifact;
+import org.apache.maven.model.FileSet;
 import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecution;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.project.MavenProject;
+import org.codehaus.plexus.util.DirectoryScanner;
+import org.codehaus.plexus.util.StringUtils;
 import org.codehaus.plexus.util.cli.CommandLineUtils;
 
 /**
@@ -80,6 +89,76 @@ public abstract class AbstractExecMojo
     @Parameter( property = "skip", defaultValue = "false" )
     private boolean skip;
 
+    /**
+     * The files read by the execution, as a list of <code>&lt;input&gt;</code> filesets with a
+     * <code>&lt;directory&gt;</code>, <code>&lt;includes&gt;</code> and <code>&lt;excludes&gt;</code>. If
+     * {@link #inputs} or {@link #outputs} are specified, the execution is skipped when neither the input files, the
+     * output files, the command line, the environment nor the classpath changed since the last successful execution.
+     * Only the variables set by the plugin and the {@link #cacheEnvironmentVariables} count as the environment.
+     *
+     * @since 1.4.0
+     */
+    @Parameter
+    private FileSet[] inputs;
+
+    /**
+     * The files written by the execution, as a list of <code>&lt;output&gt;</code> filesets. See {@link #inputs}.
+     *
+     * @since 1.4.0
+     */
+    @Parameter
+    private FileSet[] outputs;
+
+    /**
+     * The directory where the fingerprints of the {@link #inputs} and {@link #outputs} are stored.
+     *
+     * @since 1.4.0
+     */
+    @Parameter( defaultValue = "${project.build.directory}/exec-fingerprints" )
+    private File fingerprintDirectory;
+
+    /**
+     * The directory of a local, content-addressed cache of the {@link #outputs}, which may be shared by several
+     * projects and builds, e.g. <code>${user.home}/.m2/exec-cache</code>. If the outputs of an execution with the same
+     * command line, the same {@link #cacheEnvironmentVariables}, the same classpath content and the same
+     * {@link #inputs} content were stored before, they are restored from the cache instead of running the execution.
+     * The classpath only counts for <code>exec:exec</code> if an argument contains it. Paths below the project base
+     * directory are relative in the cache key, so a clean workspace in another location hits the cache. The cache is
+     * disabled if this is not set.
+     *
+     * @since 1.4.0
+     */
+    @Parameter( property = "exec.cacheDirectory" )
+    private File cacheDirectory;
+
+    /**
+     * The names of the environment variables which are part of the cache key, see {@link #cacheDirectory}. Other
+     * environment variables are ignored, so machines with different environments can share cached outputs.
+     *
+     * @since 1.4.0
+     */
+    @Parameter
+    private List<String> cacheEnvironmentVariables;
+
+    /**
+     * The maximum size of the {@link #cacheDirectory} in megabytes. The least recently used entries are evicted when
+     * it grows larger.
+     *
+     * @since 1.4.0
+     */
+    @Parameter( property = "exec.cacheMaxSize", defaultValue = "1024" )
+    private long cacheMaxSize;
+
+    /**
+     * @since 1.4.0
+     */
+    @Parameter( defaultValue = "${mojoExecution}", readonly = true )
+    private MojoExecution mojoExecution;
+
+    private FingerprintStore fingerprintStore;
+
+    private String cacheKey;
+
     /**
      * Collects the project artifacts in the specified List and the project specific classpath (build output and build
      * test output) Files in the specified List, depending on the plugin classpathScope value.
@@ -174,6 +253,370 @@ public abstract class AbstractExecMojo
         }
     }
 
+    /**
+     * Check whether the fingerprints of the {@link #inputs} and {@link #outputs} and the key are unchanged since the
+     * last successful execution. If not, {@link #recordFingerprints()} must be called once the execution succeeded.
+     *
+     * @param key describes the execution itself, e.g. the command line, the environment and the classpath
+     * @return true if the execution can be skipped
+     * @throws MojoExecutionException if the files could not be fingerprinted
+     */
+    protected boolean isUpToDate( String key )
+        throws MojoExecutionException
+    {
+        fingerprintStore = null;
+        if ( !isFingerprinted() )
+        {
+            return false;
+        }
+
+        String name = "default";
+        if ( mojoExecution != null )
+        {
+            name = mojoExecution.getMojoDescriptor().getGoal() + "-" + mojoExecution.getExecutionId();
+        }
+        fingerprintStore = new FingerprintStore( new File( fingerprintDirectory, name + ".properties" ) );
+
+        try
+        {
+            if ( fingerprintStore.isUpToDate( key, scanFileSets( inputs ), scanFileSets( outputs ) ) )
+            {
+                getLog().info( "Skipping execution, inputs and outputs are up to date" );
+                return true;
+            }
+            return false;
+        }
+        catch ( IOException e )
+        {
+            throw new MojoExecutionException( "Could not compute the fingerprints of the inputs and outputs", e );
+        }
+    }
+
+    /**
+     * @return true if {@link #inputs} or {@link #outputs} are specified, i.e. the execution may be skipped
+     */
+    protected boolean isFingerprinted()
+    {
+        return inputs != null || outputs != null;
+    }
+
+    /**
+     * Store the fingerprints after a successful execution, see {@link #isUpToDate(String)}.
+     *
+     * @throws MojoExecutionException if the fingerprints could not be stored
+     */
+    protected void recordFingerprints()
+        throws MojoExecutionException
+    {
+        if ( fingerprintStore != null )
+        {
+            try
+            {
+                fingerprintStore.record( scanFileSets( outputs ) );
+            }
+            catch ( IOException e )
+            {
+                throw new MojoExecutionException( "Could not store the fingerprints of the inputs and outputs", e );
+            }
+        }
+    }
+
+    /**
+     * Restore the {@link #outputs} from the {@link #cacheDirectory} if they were cached for the same execution. If not,
+     * {@link #storeInCache()} must be called once the execution succeeded. Failures to read the cache are logged and
+     * treated as a cache miss.
+     *
+     * @param command describes the command, e.g. the command line and the working directory
+     * @param enviro the environment of the execution, only the {@link #cacheEnvironmentVariables} are used
+     * @param classpath the classpath elements, whose content is part of the key
+     * @return true if the outputs were restored and the execution can be skipped
+     */
+    protected boolean restoreFromCache( String command, Map<String, String> enviro, List<File> classpath )
+    {
+        cacheKey = null;
+        if ( !isCached() )
+        {
+            return false;
+        }
+
+        try
+        {
+            cacheKey = FingerprintStore.hash( getCacheKey( command, enviro, classpath ) );
+            getLog().debug( "Cache key: " + cacheKey );
+            return createOutputCache().restore( cacheKey, getFileSetDirectories( outputs ) );
+        }
+        catch ( IOException e )
+        {
+            getLog().warn( "Could not restore the outputs from the cache: " + e.getMessage() );
+            return false;
+        }
+    }
+
+    /**
+     * @return true if the {@link #cacheDirectory} and the {@link #outputs} are specified
+     */
+    protected boolean isCached()
+    {
+        return cacheDirectory != null && outputs != null;
+    }
+
+    /**
+     * Store the {@link #outputs} in the cache after a successful execution, see
+     * {@link #restoreFromCache(String, Map, List)}. Failures to write the cache are logged only.
+     */
+    protected void storeInCache()
+    {
+        if ( cacheKey == null )
+        {
+            return;
+        }
+
+        try
+        {
+            createOutputCache().store( cacheKey, getFileSetDirectories( outputs ), scanFileSets( outputs ) );
+        }
+        catch ( IOException e )
+        {
+            getLog().warn( "Could not store the outputs in the cache: " + e.getMessage() );
+        }
+    }
+
+    private OutputCache createOutputCache()
+    {
+        return new OutputCache( cacheDirectory, cacheMaxSize * 1024 * 1024, getLog() );
+    }
+
+    /**
+     * The key of the cache is independent of the location of the project, the paths of the classpath elements and the
+     * modification times of the files. Classpath elements and input files are described by the hash of their content.
+     */
+    private String getCacheKey( String command, Map<String, String> enviro, List<File> classpath )
+        throws IOException
+    {
+        StringBuilder key = new StringBuilder( relativize( command ) );
+        key.append( "\nenv " ).append( describeEnvironment( enviro ) );
+
+        for ( File element : classpath )
+        {
+            if ( element.isDirectory() )
+            {
+                FileSet fileSet = new FileSet();
+                fileSet.setDirectory( element.getAbsolutePath() );
+                appendHashes( key, "classpath " + relativize( element.getAbsolutePath() ) + " ",
+                              new FileSet[] { fileSet } );
+            }
+            else if ( element.isFile() )
+            {
+                key.append( "\nclasspath " ).append( element.getName() ).append( ' ' );
+                key.append( FingerprintStore.hash( element ) );
+            }
+        }
+
+        appendHashes( key, "input ", inputs );
+
+        for ( FileSet output : outputs )
+        {
+            key.append( "\noutput " ).append( relativize( getFileSetDirectory( output ).getAbsolutePath() ) );
+            key.append( ' ' ).append( output.getIncludes() ).append( ' ' ).append( output.getExcludes() );
+        }
+        return key.toString();
+    }
+
+    private void appendHashes( StringBuilder key, String prefix, FileSet[] fileSets )
+        throws IOException
+    {
+        if ( fileSets == null )
+        {
+            return;
+        }
+        for ( FileSet fileSet : fileSets )
+        {
+            String directory = getFileSetDirectory( fileSet ).getAbsolutePath() + File.separator;
+            List<File> files = scanFileSets( new FileSet[] { fileSet } );
+            List<String> hashes = FingerprintStore.hashFiles( files );
+            for ( int i = 0; i < files.size(); i++ )
+            {
+                String path = files.get( i ).getAbsolutePath().substring( directory.length() );
+                key.append( "\n" ).append( prefix ).append( path.replace( File.separatorChar, '/' ) );
+                key.append( ' ' ).append( hashes.get( i ) );
+            }
+        }
+    }
+
+    /**
+     * Replace the project base directory by a placeholder.
+     */
+    private String relativize( String text )
+    {
+        if ( project == null || project.getBasedir() == null )
+        {
+            return text;
+        }
+        return StringUtils.replace( text, project.getBasedir().getAbsolutePath(), "${basedir}" );
+    }
+
+    private List<File> getFileSetDirectories( FileSet[] fileSets )
+    {
+        List<File> directories = new ArrayList<File>();
+        for ( FileSet fileSet : fileSets )
+        {
+            directories.add( getFileSetDirectory( fileSet ) );
+        }
+        return directories;
+    }
+
+    /**
+     * Collect the files matched by the filesets. Relative directories are resolved against the project base
+     * directory.
+     *
+     * @param fileSets the filesets, may be <code>null</code>
+     * @return the matched files, sorted per fileset
+     */
+    @SuppressWarnings( "unchecked" )
+    protected List<File> scanFileSets( FileSet[] fileSets )
+    {
+        List<File> files = new ArrayList<File>();
+        if ( fileSets == null )
+        {
+            return files;
+        }
+
+        for ( FileSet fileSet : fileSets )
+        {
+            File directory = getFileSetDirectory( fileSet );
+            if ( !directory.isDirectory() )
+            {
+                continue;
+            }
+
+            DirectoryScanner scanner = new DirectoryScanner();
+            scanner.setBasedir( directory );
+            List<String> includes = fileSet.getIncludes();
+            if ( !includes.isEmpty() )
+            {
+                scanner.setIncludes( includes.toArray( new String[includes.size()] ) );
+            }
+            List<String> excludes = fileSet.getExcludes();
+            if ( !excludes.isEmpty() )
+            {
+                scanner.setExcludes( excludes.toArray( new String[excludes.size()] ) );
+            }
+            scanner.addDefaultExcludes();
+            scanner.scan();
+
+            String[] included = scanner.getIncludedFiles();
+            Arrays.sort( included );
+            for ( String path : included )
+            {
+                files.add( new File( directory, path ) );
+            }
+        }
+        return files;
+    }
+
+    /**
+     * @return the directory of the fileset, resolved against the project base directory
+     */
+    protected File getFileSetDirectory( FileSet fileSet )
+    {
+        if ( fileSet.getDirectory() == null )
+        {
+            return project.getBasedir();
+        }
+        File directory = new File( fileSet.getDirectory() );
+        if ( !directory.isAbsolute() && project != null )
+        {
+            directory = new File( project.getBasedir(), fileSet.getDirectory() );
+        }
+        return directory;
+    }
+
+    /**
+     * Describe a classpath element for the key of {@link #isUpToDate(String)}. Files are described by their size and
+     * modification time as well, so a rebuilt snapshot dependency changes the key. Directories are described by the
+     * hash of the paths, sizes and modification times of all their files, so recompiled classes change the key.
+     */
+    protected static String describeClasspathElement( File file )
+    {
+        if ( file.isFile() )
+        {
+            return file.getAbsolutePath() + "," + file.length() + "," + file.lastModified();
+        }
+        if ( file.isDirectory() )
+        {
+            StringBuilder listing = new StringBuilder();
+            describeDirectory( file, "", listing );
+            return file.getAbsolutePath() + "," + FingerprintStore.hash( listing.toString() );
+        }
+        return file.getAbsolutePath();
+    }
+
+    private static void describeDirectory( File directory, String prefix, StringBuilder listing )
+    {
+        String[] names = directory.list();
+        if ( names == null )
+        {
+            return;
+        }
+        Arrays.sort( names );
+        for ( String name : names )
+        {
+            File file = new File( directory, name );
+            if ( file.isDirectory() )
+            {
+                describeDirectory( file, prefix + name + "/", listing );
+            }
+            else
+            {
+                listing.append( prefix ).append( name ).append( ',' ).append( file.length() ).append( ',' );
+                listing.append( file.lastModified() ).append( '\n' );
+            }
+        }
+    }
+
+    /**
+     * Describe the environment for the key of {@link #isUpToDate(String)}, of the output cache and of the cached
+     * variables of environment scripts. Only the variables set by the plugin on top of the environment of Maven and the
+     * {@link #cacheEnvironmentVariables} are part of it, so variables which change with every build, e.g. on a CI
+     * server, do not prevent skipping the execution.
+     */
+    protected String describeEnvironment( Map<String, String> enviro )
+    {
+        Map<String, String> described = new TreeMap<String, String>();
+        if ( enviro instanceof EnvironmentOverlay )
+        {
+            described.putAll( ( (EnvironmentOverlay) enviro ).getOverlay() );
+        }
+        if ( cacheEnvironmentVariables != null )
+        {
+            for ( String name : cacheEnvironmentVariables )
+            {
+                described.put( name, enviro.get( name ) );
+            }
+        }
+        return described.toString();
+    }
+
+    /**
+     * Add the names of the configured parameters of the up-to-date check and of the output cache.
+     *
+     * @param names the list of names to add to
+     */
+    void addCachingParameters( List<String> names )
+    {
+        addIf( names, "inputs", inputs != null && inputs.length > 0 );
+        addIf( names, "outputs", outputs != null && outputs.length > 0 );
+        addIf( names, "cacheDirectory", cacheDirectory != null );
+    }
+
+    static void addIf( List<String> names, String name, boolean configured )
+    {
+        if ( configured )
+        {
+            names.add( name );
+        }
+    }
+
     /**
      * Check if the execution should be skipped
      * 
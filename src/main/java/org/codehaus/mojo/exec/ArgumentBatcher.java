@@ -0,0 +1,161 @@
+package org.codehaus.mojo.exec;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.exec.OS;
+
+/**
+ * Splits the values of a {@link Batch} into command lines which fit the limit of the operating system, see
+ * {@link ExecMojo#arguments}.
+ * <p>
+ * On Unix the limit is <code>ARG_MAX</code>, shared by the arguments and the environment, each counted with its
+ * terminating zero byte and its pointer. Like <code>xargs</code>, 2048 bytes are left as headroom. On Windows the
+ * limit is the 32767 characters of the command line, each argument counted with its separating space and quotes.
+ * </p>
+ */
+final class ArgumentBatcher
+{
+    static final long HEADROOM = 2048;
+
+    private static final long WINDOWS_LIMIT = 32767;
+
+    private static final long DEFAULT_LIMIT = 128 * 1024;
+
+    private static long argMax;
+
+    private ArgumentBatcher()
+    {
+        // utility class
+    }
+
+    /**
+     * @return the size of the command line and the environment the operating system accepts
+     */
+    static synchronized long getCommandLineLimit()
+    {
+        if ( argMax == 0 )
+        {
+            argMax = DEFAULT_LIMIT;
+            if ( OS.isFamilyWindows() )
+            {
+                argMax = WINDOWS_LIMIT;
+            }
+            else
+            {
+                List<String> output = ProcessTree.run( "getconf", "ARG_MAX" );
+                if ( output != null && !output.isEmpty() )
+                {
+                    try
+                    {
+                        argMax = Long.parseLong( output.get( 0 ).trim() );
+                    }
+                    catch ( NumberFormatException e )
+                    {
+                        // keep the limit POSIX guarantees to be safe in practice
+                    }
+                }
+            }
+        }
+        return argMax;
+    }
+
+    /**
+     * @return the space one argument takes on the command line
+     */
+    static long size( String argument )
+    {
+        if ( OS.isFamilyWindows() )
+        {
+            return argument.length() + 3;
+        }
+        return argument.getBytes().length + 1 + 8;
+    }
+
+    /**
+     * @return the space the arguments take on the command line
+     */
+    static long size( List<String> arguments )
+    {
+        long size = 0;
+        for ( String argument : arguments )
+        {
+            size += size( argument );
+        }
+        return size;
+    }
+
+    /**
+     * @return the space the environment takes next to the command line, nothing on Windows where it is passed
+     *         separately
+     */
+    static long size( Map<String, String> environment )
+    {
+        if ( OS.isFamilyWindows() )
+        {
+            return 0;
+        }
+        long size = 0;
+        for ( Map.Entry<String, String> entry : environment.entrySet() )
+        {
+            size += size( entry.getKey() + "=" + entry.getValue() );
+        }
+        return size;
+    }
+
+    /**
+     * @param values the values to split
+     * @param budget the space available to the values of one batch
+     * @param maxArguments the maximum number of values in one batch, &lt;= 0 for no limit
+     * @return the batches, in the order of the values
+     * @throws IllegalArgumentException if a single value does not fit the budget
+     */
+    static List<List<String>> split( List<String> values, long budget, int maxArguments )
+    {
+        List<List<String>> batches = new ArrayList<List<String>>();
+        List<String> current = new ArrayList<String>();
+        long used = 0;
+        for ( String value : values )
+        {
+            long size = size( value );
+            if ( size > budget )
+            {
+                throw new IllegalArgumentException( "The batch argument '" + value + "' does not fit the command line, "
+                    + budget + " bytes are available" );
+            }
+            if ( !current.isEmpty() && ( used + size > budget || current.size() == maxArguments ) )
+            {
+                batches.add( current );
+                current = new ArrayList<String>();
+                used = 0;
+            }
+            current.add( value );
+            used += size;
+        }
+        if ( !current.isEmpty() )
+        {
+            batches.add( current );
+        }
+        return batches;
+    }
+}
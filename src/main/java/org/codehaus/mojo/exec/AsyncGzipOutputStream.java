@@ -0,0 +1,261 @@
+package org.codehaus.mojo.exec;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.GZIPOutputStream;
+
+import org.codehaus.plexus.util.IOUtil;
+
+/**
+ * Writes a gzip compressed file on a separate thread, see {@link ExecMojo#outputCompression}.
+ * <p>
+ * Written bytes are copied into buffers from a fixed pool and handed to the compressing thread through a bounded
+ * queue, so the thread pumping the output of a process only copies memory, unless the compression falls behind by more
+ * than the whole pool. Errors of the compressing thread are thrown by the next write or by {@link #close()}. The
+ * stream is thread safe, so the standard and the error output can share it.
+ * </p>
+ */
+class AsyncGzipOutputStream
+    extends OutputStream
+{
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final int BUFFER_COUNT = 64;
+
+    private final BlockingQueue<Buffer> free = new ArrayBlockingQueue<Buffer>( BUFFER_COUNT );
+
+    private final BlockingQueue<Buffer> full = new ArrayBlockingQueue<Buffer>( BUFFER_COUNT + 1 );
+
+    private final Buffer end = new Buffer();
+
+    private final Thread compressor;
+
+    private volatile IOException failure;
+
+    private Buffer current;
+
+    private boolean closed;
+
+    /**
+     * @param file the compressed file, it is truncated first
+     */
+    AsyncGzipOutputStream( File file )
+        throws IOException
+    {
+        final OutputStream out = new GZIPOutputStream( new BufferedOutputStream( new FileOutputStream( file ) ) );
+        for ( int i = 0; i < BUFFER_COUNT; i++ )
+        {
+            free.add( new Buffer() );
+        }
+
+        compressor = new Thread( "exec-gzip-" + file.getName() )
+        {
+            public void run()
+            {
+                compress( out );
+            }
+        };
+        compressor.setDaemon( true );
+        compressor.start();
+    }
+
+    /**
+     * @return true if the file name ends with <code>.gz</code>
+     */
+    static boolean isGzipFile( File file )
+    {
+        return file.getName().toLowerCase( Locale.ENGLISH ).endsWith( ".gz" );
+    }
+
+    public synchronized void write( int b )
+        throws IOException
+    {
+        write( new byte[] { (byte) b }, 0, 1 );
+    }
+
+    public synchronized void write( byte[] b, int off, int len )
+        throws IOException
+    {
+        checkFailure();
+        if ( closed )
+        {
+            throw new IOException( "Stream closed" );
+        }
+        while ( len > 0 )
+        {
+            if ( current == null )
+            {
+                current = take( free );
+            }
+            int count = Math.min( len, BUFFER_SIZE - current.length );
+            System.arraycopy( b, off, current.data, current.length, count );
+            current.length += count;
+            off += count;
+            len -= count;
+            if ( current.length == BUFFER_SIZE )
+            {
+                handOver();
+            }
+        }
+    }
+
+    /**
+     * Hand the partially filled buffer to the compressing thread. This does not wait for the compression.
+     */
+    public synchronized void flush()
+        throws IOException
+    {
+        checkFailure();
+        if ( current != null && current.length > 0 )
+        {
+            handOver();
+        }
+    }
+
+    /**
+     * Wait until all data is compressed and the file is closed.
+     */
+    public synchronized void close()
+        throws IOException
+    {
+        if ( closed )
+        {
+            return;
+        }
+        flush();
+        closed = true;
+        try
+        {
+            full.put( end );
+            compressor.join();
+        }
+        catch ( InterruptedException e )
+        {
+            throw new InterruptedIOException( "Interrupted while compressing the output" );
+        }
+        checkFailure();
+    }
+
+    private void handOver()
+        throws IOException
+    {
+        try
+        {
+            full.put( current );
+        }
+        catch ( InterruptedException e )
+        {
+            throw new InterruptedIOException( "Interrupted while compressing the output" );
+        }
+        current = null;
+    }
+
+    private Buffer take( BlockingQueue<Buffer> queue )
+        throws IOException
+    {
+        try
+        {
+            return queue.take();
+        }
+        catch ( InterruptedException e )
+        {
+            throw new InterruptedIOException( "Interrupted while compressing the output" );
+        }
+    }
+
+    private void checkFailure()
+        throws IOException
+    {
+        if ( failure != null )
+        {
+            IOException e = new IOException( "Could not write the compressed output: " + failure.getMessage() );
+            e.initCause( failure );
+            throw e;
+        }
+    }
+
+    private void compress( OutputStream out )
+    {
+        boolean ended = false;
+        try
+        {
+            Buffer buffer;
+            while ( ( buffer = full.take() ) != end )
+            {
+                out.write( buffer.data, 0, buffer.length );
+                buffer.length = 0;
+                free.add( buffer );
+            }
+            ended = true;
+            out.close();
+        }
+        catch ( IOException e )
+        {
+            failure = e;
+            IOUtil.close( out );
+            if ( !ended )
+            {
+                // keep recycling the buffers so writers do not block forever
+                drain();
+            }
+        }
+        catch ( InterruptedException e )
+        {
+            failure = new InterruptedIOException( "Interrupted while compressing the output" );
+            IOUtil.close( out );
+        }
+    }
+
+    private void drain()
+    {
+        try
+        {
+            Buffer buffer;
+            while ( ( buffer = full.take() ) != end )
+            {
+                buffer.length = 0;
+                free.add( buffer );
+            }
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * A reusable buffer.
+     */
+    private static class Buffer
+    {
+        private final byte[] data = new byte[BUFFER_SIZE];
+
+        private int length;
+    }
+}
@@ -0,0 +1,123 @@
+package org.codehaus.mojo.exec;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Map;
+
+import org.apache.commons.exec.CommandLine;
+import org.apache.commons.exec.DefaultExecuteResultHandler;
+import org.apache.commons.exec.ExecuteException;
+import org.apache.commons.exec.Executor;
+import org.codehaus.plexus.util.IOUtil;
+
+/**
+ * A program started by {@link ExecStartMojo} and running until {@link ExecStopMojo} stops it or the JVM exits. Its
+ * whole process tree is destroyed in both cases.
+ */
+class BackgroundProcess
+{
+    private final CommandLine commandLine;
+
+    private final OutputStream output;
+
+    private final ProcessTreeDestroyer destroyer;
+
+    private final DefaultExecuteResultHandler result = new DefaultExecuteResultHandler()
+    {
+        public void onProcessComplete( int exitValue )
+        {
+            IOUtil.close( output );
+            super.onProcessComplete( exitValue );
+        }
+
+        public void onProcessFailed( ExecuteException e )
+        {
+            IOUtil.close( output );
+            super.onProcessFailed( e );
+        }
+    };
+
+    /**
+     * @param commandLine the command line of the program
+     * @param output the file stream receiving the output, closed when the program exited, <code>null</code> if the
+     *            output goes to the console
+     * @param gracePeriod the number of milliseconds between terminating and killing the process tree
+     */
+    BackgroundProcess( CommandLine commandLine, OutputStream output, long gracePeriod )
+    {
+        this.commandLine = commandLine;
+        this.output = output;
+        this.destroyer = new ProcessTreeDestroyer( gracePeriod );
+    }
+
+    /**
+     * Start the program without waiting for it.
+     */
+    void start( Executor exec, Map<String, String> enviro )
+        throws IOException
+    {
+        exec.setProcessDestroyer( destroyer );
+        exec.execute( commandLine, enviro, result );
+    }
+
+    CommandLine getCommandLine()
+    {
+        return commandLine;
+    }
+
+    /**
+     * @return true if the program exited
+     */
+    boolean hasExited()
+    {
+        return result.hasResult();
+    }
+
+    /**
+     * @return the exit code of the program, or a description of why it could not run
+     */
+    String getExitDescription()
+    {
+        ExecuteException e = result.getException();
+        if ( e != null && e.getCause() != null )
+        {
+            return e.getCause().toString();
+        }
+        return "exit code " + result.getExitValue();
+    }
+
+    /**
+     * Destroy the process tree and wait until the program exited.
+     *
+     * @param timeout the number of milliseconds to wait after destroying the process tree
+     * @throws InterruptedException if interrupted while waiting
+     */
+    void stop( long timeout )
+        throws InterruptedException
+    {
+        if ( !hasExited() )
+        {
+            destroyer.destroyAll();
+            result.waitFor( timeout );
+        }
+    }
+}
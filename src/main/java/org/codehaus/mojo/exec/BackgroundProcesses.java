@@ -0,0 +1,53 @@
+package org.codehaus.mojo.exec;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Session scoped registry of the programs started by {@link ExecStartMojo}, by their id.
+ */
+class BackgroundProcesses
+{
+    private final Map<String, BackgroundProcess> processes = new HashMap<String, BackgroundProcess>();
+
+    /**
+     * @return the running program registered with the id, or <code>null</code>
+     */
+    synchronized BackgroundProcess getRunning( String id )
+    {
+        BackgroundProcess process = processes.get( id );
+        return process != null && !process.hasExited() ? process : null;
+    }
+
+    synchronized void put( String id, BackgroundProcess process )
+    {
+        processes.put( id, process );
+    }
+
+    /**
+     * @return the program registered with the id, or <code>null</code>
+     */
+    synchronized BackgroundProcess remove( String id )
+    {
+        return processes.remove( id );
+    }
+}
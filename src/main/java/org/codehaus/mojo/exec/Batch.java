@@ -0,0 +1,131 @@
+package org.codehaus.mojo.exec;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Wrapper class for the batch argument type, an entry of the <code>arguments</code> of the exec goal whose values are
+ * split into as many command lines as needed, like <code>xargs</code> does. Each batch runs as a separate command,
+ * with the other arguments in place around it.
+ */
+public class Batch
+{
+    private List<String> arguments;
+
+    private int maxArguments;
+
+    private int maxLength;
+
+    /**
+     * <p>
+     * Getter for the field <code>arguments</code>, the values which are split into batches.
+     * </p>
+     *
+     * @return a list of {@link java.lang.String} objects.
+     */
+    public List<String> getArguments()
+    {
+        return arguments;
+    }
+
+    /**
+     * <p>
+     * Setter for the field <code>arguments</code>.
+     * </p>
+     *
+     * @param arguments a list of {@link java.lang.String} objects.
+     */
+    public void setArguments( List<String> arguments )
+    {
+        this.arguments = arguments;
+    }
+
+    /**
+     * Add one value, so the values can be listed as <code>&lt;argument&gt;</code> elements directly in the
+     * <code>&lt;batch&gt;</code>.
+     *
+     * @param argument a {@link java.lang.String} object.
+     */
+    public void setArgument( String argument )
+    {
+        if ( arguments == null )
+        {
+            arguments = new ArrayList<String>();
+        }
+        arguments.add( argument );
+    }
+
+    /**
+     * <p>
+     * Getter for the field <code>maxArguments</code>, the maximum number of values in one batch. A value &lt;= 0 means
+     * the batches are only limited by the length of the command line.
+     * </p>
+     *
+     * @return the maximum number of values.
+     */
+    public int getMaxArguments()
+    {
+        return maxArguments;
+    }
+
+    /**
+     * <p>
+     * Setter for the field <code>maxArguments</code>.
+     * </p>
+     *
+     * @param maxArguments the maximum number of values.
+     */
+    public void setMaxArguments( int maxArguments )
+    {
+        this.maxArguments = maxArguments;
+    }
+
+    /**
+     * <p>
+     * Getter for the field <code>maxLength</code>, the maximum size of a whole command line, including the
+     * executable, the other arguments and the environment. A value &lt;= 0 means the limit of the operating system.
+     * </p>
+     *
+     * @return the maximum size.
+     */
+    public int getMaxLength()
+    {
+        return maxLength;
+    }
+
+    /**
+     * <p>
+     * Setter for the field <code>maxLength</code>.
+     * </p>
+     *
+     * @param maxLength the maximum size.
+     */
+    public void setMaxLength( int maxLength )
+    {
+        this.maxLength = maxLength;
+    }
+
+    public String toString()
+    {
+        return "Batch {" + ( arguments != null ? arguments.size() : 0 ) + " argument(s)}";
+    }
+}
@@ -0,0 +1,111 @@
+package org.codehaus.mojo.exec;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+/**
+ * Wrapper class for the capture argument type, one entry of the <code>captures</code> list of the exec goal. The
+ * pattern is applied to every line of output, and the group of the last matching line is set as the property.
+ */
+public class Capture
+{
+    private String property;
+
+    private String pattern;
+
+    private int group = 1;
+
+    /**
+     * <p>
+     * Getter for the field <code>property</code>, the name of the project property receiving the captured value.
+     * </p>
+     *
+     * @return a {@link java.lang.String} object.
+     */
+    public String getProperty()
+    {
+        return property;
+    }
+
+    /**
+     * <p>
+     * Setter for the field <code>property</code>.
+     * </p>
+     *
+     * @param property a {@link java.lang.String} object.
+     */
+    public void setProperty( String property )
+    {
+        this.property = property;
+    }
+
+    /**
+     * <p>
+     * Getter for the field <code>pattern</code>, a regular expression searched in each line of output.
+     * </p>
+     *
+     * @return a {@link java.lang.String} object.
+     */
+    public String getPattern()
+    {
+        return pattern;
+    }
+
+    /**
+     * <p>
+     * Setter for the field <code>pattern</code>.
+     * </p>
+     *
+     * @param pattern a {@link java.lang.String} object.
+     */
+    public void setPattern( String pattern )
+    {
+        this.pattern = pattern;
+    }
+
+    /**
+     * <p>
+     * Getter for the field <code>group</code>, the group of the pattern which is captured. Defaults to 1, 0 captures
+     * the whole match.
+     * </p>
+     *
+     * @return the group number.
+     */
+    public int getGroup()
+    {
+        return group;
+    }
+
+    /**
+     * <p>
+     * Setter for the field <code>group</code>.
+     * </p>
+     *
+     * @param group the group number.
+     */
+    public void setGroup( int group )
+    {
+        this.group = group;
+    }
+
+    public String toString()
+    {
+        return "Capture {" + property + " = " + pattern + " (" + group + ")}";
+    }
+}
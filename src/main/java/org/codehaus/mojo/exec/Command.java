@@ -0,0 +1,151 @@
+package org.codehaus.mojo.exec;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.util.List;
+
+/**
+ * Wrapper class for the command argument type, one entry of the <code>commands</code> list of the exec goal.
+ */
+public class Command
+{
+    private String executable;
+
+    private List<?> arguments;
+
+    private File workingDirectory;
+
+    private int[] successCodes;
+
+    /**
+     * <p>
+     * Getter for the field <code>executable</code>.
+     * </p>
+     *
+     * @return a {@link java.lang.String} object.
+     */
+    public String getExecutable()
+    {
+        return executable;
+    }
+
+    /**
+     * <p>
+     * Setter for the field <code>executable</code>.
+     * </p>
+     *
+     * @param executable a {@link java.lang.String} object.
+     */
+    public void setExecutable( String executable )
+    {
+        this.executable = executable;
+    }
+
+    /**
+     * <p>
+     * Getter for the field <code>arguments</code>, which may contain <code>&lt;argument&gt;</code> and
+     * <code>&lt;classpath&gt;</code> elements just like the <code>arguments</code> of the exec goal.
+     * </p>
+     *
+     * @return a {@link java.util.List} object.
+     */
+    public List<?> getArguments()
+    {
+        return arguments;
+    }
+
+    /**
+     * <p>
+     * Setter for the field <code>arguments</code>.
+     * </p>
+     *
+     * @param arguments a {@link java.util.List} object.
+     */
+    public void setArguments( List<?> arguments )
+    {
+        this.arguments = arguments;
+    }
+
+    /**
+     * <p>
+     * Getter for the field <code>workingDirectory</code>. If <code>null</code> the working directory of the
+     * execution is used.
+     * </p>
+     *
+     * @return a {@link java.io.File} object.
+     */
+    public File getWorkingDirectory()
+    {
+        return workingDirectory;
+    }
+
+    /**
+     * <p>
+     * Setter for the field <code>workingDirectory</code>.
+     * </p>
+     *
+     * @param workingDirectory a {@link java.io.File} object.
+     */
+    public void setWorkingDirectory( File workingDirectory )
+    {
+        this.workingDirectory = workingDirectory;
+    }
+
+    /**
+     * <p>
+     * Getter for the field <code>successCodes</code>. If <code>null</code> the success codes of the execution are
+     * used.
+     * </p>
+     *
+     * @return the exit codes resolved as successful execution.
+     */
+    public int[] getSuccessCodes()
+    {
+        return successCodes;
+    }
+
+    /**
+     * <p>
+     * Setter for the field <code>successCodes</code>.
+     * </p>
+     *
+     * @param successCodes the exit codes resolved as successful execution.
+     */
+    public void setSuccessCodes( int[] successCodes )
+    {
+        this.successCodes = successCodes;
+    }
+
+    public String toString()
+    {
+        StringBuilder buffer = new StringBuilder( "Command {" );
+        buffer.append( executable );
+        if ( arguments != null )
+        {
+            for ( Object argument : arguments )
+            {
+                buffer.append( " " ).append( argument );
+            }
+        }
+        buffer.append( "}" );
+        return buffer.toString();
+    }
+}
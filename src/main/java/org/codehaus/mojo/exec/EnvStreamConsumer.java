@@ -1,49 +1,138 @@
-package org.codehaus.mojo.exec;
-
-import java.util.HashMap;
-import java.util.Map;
-
-import org.codehaus.plexus.util.StringUtils;
-import org.codehaus.plexus.util.cli.StreamConsumer;
-
-public class EnvStreamConsumer
-    implements StreamConsumer
-{
-
-    public static final String START_PARSING_INDICATOR =
-        "================================This is the beginning of env parsing================================";
-
-    private Map<String, String> envs = new HashMap<String, String>();
-
-    private boolean startParsing = false;
-
-    public void consumeLine( String line )
-    {
-
-        if ( line.startsWith( START_PARSING_INDICATOR ) )
-        {
-            this.startParsing = true;
-            return;
-        }
-
-        if ( this.startParsing )
-        {
-            String[] tokens = StringUtils.split( line, "=" );
-            if ( tokens.length == 2 )
-            {
-                envs.put( tokens[0], tokens[1] );
-            }
-        }
-        else
-        {
-            System.out.println( line );
-        }
-
-    }
-
-    public Map<String, String> getParsedEnv()
-    {
-        return this.envs;
-    }
-
-}
+package org.codehaus.mojo.exec;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.codehaus.plexus.util.cli.StreamConsumer;
+
+/**
+ * Parses the output of the wrapper of an environment script from a byte stream, in one pass. The output of the script
+ * itself is copied to <code>System.out</code> line by line until a line starting with
+ * {@link #START_PARSING_INDICATOR}. The variables follow, as written by <code>env -0</code>, each terminated by a NUL
+ * byte, if the indicator is {@link #NUL_PARSING_INDICATOR}, and one per line otherwise, as written by
+ * <code>env</code> or <code>set</code>. Each variable is split at its first <code>=</code>, so values may contain
+ * <code>=</code>, and with NUL terminators also line breaks. The bytes are decoded with the encoding the JVM uses
+ * for the environment of processes, unless another one is given.
+ */
+public class EnvStreamConsumer
+    extends OutputStream
+    implements StreamConsumer
+{
+
+    public static final String START_PARSING_INDICATOR =
+        "================================This is the beginning of env parsing================================";
+
+    public static final String NUL_PARSING_INDICATOR = START_PARSING_INDICATOR + "-NUL";
+
+    private Map<String, String> envs = new HashMap<String, String>();
+
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream( 256 );
+
+    private boolean startParsing = false;
+
+    private byte terminator = '\n';
+
+    private final Charset charset;
+
+    public EnvStreamConsumer()
+    {
+        this( System.getProperty( "sun.jnu.encoding", Charset.defaultCharset().name() ) );
+    }
+
+    /**
+     * @param encoding the encoding of the output of the script
+     */
+    public EnvStreamConsumer( String encoding )
+    {
+        this.charset = Charset.forName( encoding );
+    }
+
+    public void write( int b )
+    {
+        write( new byte[] { (byte) b }, 0, 1 );
+    }
+
+    public void write( byte[] b, int off, int len )
+    {
+        int start = off;
+        for ( int i = off; i < off + len; i++ )
+        {
+            if ( b[i] == terminator )
+            {
+                buffer.write( b, start, i - start );
+                consume();
+                start = i + 1;
+            }
+        }
+        buffer.write( b, start, off + len - start );
+    }
+
+    /**
+     * @param line a line of the output, without its line break
+     * @deprecated write the output to this stream instead, values containing line breaks are only parsed from the
+     *             output of <code>env -0</code>
+     */
+    @Deprecated
+    public void consumeLine( String line )
+    {
+        ByteBuffer bytes = charset.encode( line );
+        buffer.write( bytes.array(), bytes.arrayOffset(), bytes.remaining() );
+        consume();
+    }
+
+    /**
+     * Parse the last variable if it is not terminated.
+     */
+    public void close()
+        throws IOException
+    {
+        if ( buffer.size() > 0 )
+        {
+            consume();
+        }
+    }
+
+    private void consume()
+    {
+        String text = charset.decode( ByteBuffer.wrap( buffer.toByteArray() ) ).toString();
+        buffer.reset();
+        if ( !startParsing )
+        {
+            if ( text.endsWith( "\r" ) )
+            {
+                text = text.substring( 0, text.length() - 1 );
+            }
+            if ( text.startsWith( START_PARSING_INDICATOR ) )
+            {
+                startParsing = true;
+                terminator = text.startsWith( NUL_PARSING_INDICATOR ) ? (byte) 0 : (byte) '\n';
+            }
+            else
+            {
+                System.out.println( text );
+            }
+            return;
+        }
+
+        if ( terminator == '\n' && text.endsWith( "\r" ) )
+        {
+            text = text.substring( 0, text.length() - 1 );
+        }
+        int separator = text.indexOf( '=' );
+        if ( separator > 0 )
+        {
+            envs.put( text.substring( 0, separator ), text.substring( separator + 1 ) );
+        }
+    }
+
+    public Map<String, String> getParsedEnv()
+    {
+        return this.envs;
+    }
+
+}
@@ -0,0 +1,156 @@
+package org.codehaus.mojo.exec;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * The environment of an execution: the variables set by the execution on top of an immutable base shared by all
+ * executions, see {@link SystemEnvironment}. Setting a variable only touches the overlay, so preparing an execution
+ * does not copy the whole environment; the complete list is only built when a process is launched. Variables cannot be
+ * removed.
+ */
+class EnvironmentOverlay
+    extends AbstractMap<String, String>
+{
+    private final Map<String, String> base;
+
+    private final Map<String, String> overlay = new HashMap<String, String>();
+
+    /**
+     * @param base the immutable base environment
+     */
+    EnvironmentOverlay( Map<String, String> base )
+    {
+        this.base = base;
+    }
+
+    /**
+     * @return the variables set on top of the base
+     */
+    Map<String, String> getOverlay()
+    {
+        return overlay;
+    }
+
+    public String get( Object key )
+    {
+        return overlay.containsKey( key ) ? overlay.get( key ) : base.get( key );
+    }
+
+    public boolean containsKey( Object key )
+    {
+        return overlay.containsKey( key ) || base.containsKey( key );
+    }
+
+    public String put( String key, String value )
+    {
+        String previous = get( key );
+        overlay.put( key, value );
+        return previous;
+    }
+
+    public int size()
+    {
+        int size = base.size();
+        for ( String key : overlay.keySet() )
+        {
+            if ( !base.containsKey( key ) )
+            {
+                size++;
+            }
+        }
+        return size;
+    }
+
+    public Set<Map.Entry<String, String>> entrySet()
+    {
+        return new AbstractSet<Map.Entry<String, String>>()
+        {
+            public int size()
+            {
+                return EnvironmentOverlay.this.size();
+            }
+
+            public Iterator<Map.Entry<String, String>> iterator()
+            {
+                return new EntryIterator();
+            }
+        };
+    }
+
+    /**
+     * Iterates over the overlay, then over the variables of the base which are not overridden.
+     */
+    private class EntryIterator
+        implements Iterator<Map.Entry<String, String>>
+    {
+        private final Iterator<Map.Entry<String, String>> overlayEntries = overlay.entrySet().iterator();
+
+        private final Iterator<Map.Entry<String, String>> baseEntries = base.entrySet().iterator();
+
+        private Map.Entry<String, String> next;
+
+        public boolean hasNext()
+        {
+            if ( next != null )
+            {
+                return true;
+            }
+            if ( overlayEntries.hasNext() )
+            {
+                next = overlayEntries.next();
+                return true;
+            }
+            while ( baseEntries.hasNext() )
+            {
+                Map.Entry<String, String> entry = baseEntries.next();
+                if ( !overlay.containsKey( entry.getKey() ) )
+                {
+                    next = entry;
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        public Map.Entry<String, String> next()
+        {
+            if ( !hasNext() )
+            {
+                throw new NoSuchElementException();
+            }
+            Map.Entry<String, String> entry = next;
+            next = null;
+            return entry;
+        }
+
+        public void remove()
+        {
+            throw new UnsupportedOperationException( "Variables cannot be removed" );
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package org.codehaus.mojo.exec;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import org.codehaus.plexus.util.IOUtil;
+
+/**
+ * Session scoped cache of the variables set by environment scripts, see {@link ExecMojo#environmentScript}. The
+ * variables are kept in memory for the session, and optionally in a directory as one properties file per key, so
+ * later builds do not run the script either. The key must change whenever the output of the script may change.
+ * Scripts usually derive the variables they set from their inherited values, e.g. <code>PATH=/sdk/bin:$PATH</code>,
+ * so these values are kept with the variables and the cached variables are only used while they are unchanged.
+ */
+class EnvironmentScriptCache
+{
+    private static final String SET_PREFIX = "set.";
+
+    private static final String INHERITED_PREFIX = "inherited.";
+
+    private final Map<String, Entry> entries = new HashMap<String, Entry>();
+
+    /**
+     * @param key the hash of the script, its inputs and its environment
+     * @param enviro the environment the script would inherit
+     * @param directory the directory of the cached files, <code>null</code> to only look in memory
+     * @return the variables, or <code>null</code> if they are not cached or were set from other inherited values
+     */
+    synchronized Map<String, String> get( String key, Map<String, String> enviro, File directory )
+        throws IOException
+    {
+        Entry entry = entries.get( key );
+        File file = getFile( key, directory );
+        if ( entry == null && file != null && file.isFile() )
+        {
+            Properties properties = new Properties();
+            InputStream in = new FileInputStream( file );
+            try
+            {
+                properties.load( in );
+            }
+            finally
+            {
+                IOUtil.close( in );
+            }
+            Map<String, String> variables = new HashMap<String, String>();
+            Map<String, String> inherited = new HashMap<String, String>();
+            for ( Map.Entry<?, ?> property : properties.entrySet() )
+            {
+                String name = (String) property.getKey();
+                if ( name.startsWith( SET_PREFIX ) )
+                {
+                    variables.put( name.substring( SET_PREFIX.length() ), (String) property.getValue() );
+                }
+                else if ( name.startsWith( INHERITED_PREFIX ) )
+                {
+                    inherited.put( name.substring( INHERITED_PREFIX.length() ), (String) property.getValue() );
+                }
+            }
+            entry = new Entry( variables, inherited );
+            entries.put( key, entry );
+        }
+        return entry != null && entry.isInherited( enviro ) ? entry.variables : null;
+    }
+
+    /**
+     * @param key the hash of the script, its inputs and its environment
+     * @param variables the variables set by the script
+     * @param inherited the values of these variables before the script ran, without the variables it defined
+     * @param directory the directory of the cached files, <code>null</code> to only keep them in memory
+     */
+    synchronized void put( String key, Map<String, String> variables, Map<String, String> inherited,
+                           File directory )
+        throws IOException
+    {
+        entries.put( key, new Entry( variables, inherited ) );
+        File file = getFile( key, directory );
+        if ( file == null )
+        {
+            return;
+        }
+
+        if ( !directory.isDirectory() && !directory.mkdirs() )
+        {
+            throw new IOException( "Could not create " + directory );
+        }
+        Properties properties = new Properties();
+        for ( Map.Entry<String, String> variable : variables.entrySet() )
+        {
+            properties.setProperty( SET_PREFIX + variable.getKey(), variable.getValue() );
+        }
+        for ( Map.Entry<String, String> variable : inherited.entrySet() )
+        {
+            properties.setProperty( INHERITED_PREFIX + variable.getKey(), variable.getValue() );
+        }
+        File tmp = new File( directory, key + ".tmp" );
+        OutputStream out = new FileOutputStream( tmp );
+        try
+        {
+            properties.store( out, null );
+        }
+        finally
+        {
+            IOUtil.close( out );
+        }
+        if ( !tmp.renameTo( file ) )
+        {
+            file.delete();
+            if ( !tmp.renameTo( file ) )
+            {
+                throw new IOException( "Could not rename " + tmp + " to " + file );
+            }
+        }
+    }
+
+    private static File getFile( String key, File directory )
+    {
+        return directory != null ? new File( directory, key + ".properties" ) : null;
+    }
+
+    private static class Entry
+    {
+        private final Map<String, String> variables;
+
+        private final Map<String, String> inherited;
+
+        Entry( Map<String, String> variables, Map<String, String> inherited )
+        {
+            this.variables = Collections.unmodifiableMap( new HashMap<String, String>( variables ) );
+            this.inherited = new HashMap<String, String>( inherited );
+        }
+
+        boolean isInherited( Map<String, String> enviro )
+        {
+            for ( String name : variables.keySet() )
+            {
+                String value = inherited.get( name );
+                if ( value == null ? enviro.get( name ) != null : !value.equals( enviro.get( name ) ) )
+                {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
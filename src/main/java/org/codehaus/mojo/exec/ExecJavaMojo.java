@@ -49,6 +49,7 @@ import org.apache.maven.plugins.annotations.ResolutionScope;
 import org.apache.maven.project.MavenProject;
 import org.apache.maven.project.MavenProjectBuilder;
 import org.apache.maven.project.artifact.MavenMetadataSource;
+import org.codehaus.plexus.util.FileUtils;
 
 /**
  * Executes the supplied java class in the current VM with the enclosing project's dependencies as classpath.
@@ -254,6 +255,22 @@ public class ExecJavaMojo
             arguments = new String[0];
         }
 
+        final List<URL> classpathURLs = computeClasspathURLs();
+
+        if ( isFingerprinted() && isUpToDate( getFingerprintKey( classpathURLs ) ) )
+        {
+            registerSourceRoots();
+            return;
+        }
+
+        if ( isCached()
+            && restoreFromCache( getCommandDescription(), System.getenv(), getClasspathFiles( classpathURLs ) ) )
+        {
+            recordFingerprints();
+            registerSourceRoots();
+            return;
+        }
+
         if ( getLog().isDebugEnabled() )
         {
             StringBuffer msg = new StringBuffer( "Invoking : " );
@@ -305,7 +322,7 @@ public class ExecJavaMojo
                 }
             }
         }, mainClass + ".main()" );
-        bootstrapThread.setContextClassLoader( getClassLoader() );
+        bootstrapThread.setContextClassLoader( getClassLoader( classpathURLs ) );
         setSystemProperties();
 
         bootstrapThread.start();
@@ -347,6 +364,9 @@ public class ExecJavaMojo
             }
         }
 
+        recordFingerprints();
+        storeInCache();
+
         registerSourceRoots();
     }
 
@@ -517,21 +537,90 @@ public class ExecJavaMojo
     }
 
     /**
-     * Set up a classloader for the execution of the main class.
+     * Compute the classpath for the execution of the main class.
      * 
-     * @return the classloader
+     * @return the classpath URLs
      * @throws MojoExecutionException if a problem happens
      */
-    private ClassLoader getClassLoader()
+    private List<URL> computeClasspathURLs()
         throws MojoExecutionException
     {
         List<URL> classpathURLs = new ArrayList<URL>();
         this.addRelevantPluginDependenciesToClasspath( classpathURLs );
         this.addRelevantProjectDependenciesToClasspath( classpathURLs );
         this.addAdditionalClasspathElements( classpathURLs );
+        return classpathURLs;
+    }
+
+    /**
+     * Set up a classloader for the execution of the main class.
+     * 
+     * @param classpathURLs the classpath
+     * @return the classloader
+     */
+    private ClassLoader getClassLoader( List<URL> classpathURLs )
+    {
         return new URLClassLoader( classpathURLs.toArray( new URL[classpathURLs.size()] ) );
     }
 
+    /**
+     * @return the key for {@link #isUpToDate(String)}, covering the main class, the arguments, the system properties
+     *         and the classpath
+     */
+    private String getFingerprintKey( List<URL> classpathURLs )
+    {
+        StringBuilder key = new StringBuilder( getCommandDescription() );
+        for ( URL url : classpathURLs )
+        {
+            if ( "file".equals( url.getProtocol() ) )
+            {
+                key.append( '\n' ).append( describeClasspathElement( FileUtils.toFile( url ) ) );
+            }
+            else
+            {
+                key.append( '\n' ).append( url );
+            }
+        }
+        return key.toString();
+    }
+
+    /**
+     * @return the main class, the arguments and the system properties
+     */
+    private String getCommandDescription()
+    {
+        StringBuilder description = new StringBuilder( mainClass );
+        for ( String argument : arguments )
+        {
+            description.append( ' ' ).append( argument );
+        }
+        if ( systemProperties != null )
+        {
+            for ( Property systemProperty : systemProperties )
+            {
+                description.append( "\n-D" ).append( systemProperty.getKey() ).append( '=' );
+                description.append( systemProperty.getValue() );
+            }
+        }
+        return description.toString();
+    }
+
+    /**
+     * @return the local files of the classpath, for the cache key
+     */
+    private static List<File> getClasspathFiles( List<URL> classpathURLs )
+    {
+        List<File> files = new ArrayList<File>();
+        for ( URL url : classpathURLs )
+        {
+            if ( "file".equals( url.getProtocol() ) )
+            {
+                files.add( FileUtils.toFile( url ) );
+            }
+        }
+        return files;
+    }
+
     private void addAdditionalClasspathElements( List<URL> path )
     {
         if ( additionalClasspathElements != null )
@@ -21,21 +21,25 @@ package org.codehaus.mojo.exec;
 
 import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
 import java.io.PrintWriter;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Properties;
-import java.util.Set;
-import java.util.TreeSet;
+import java.util.TreeMap;
+import java.util.concurrent.Semaphore;
 import java.util.jar.JarEntry;
 import java.util.jar.JarOutputStream;
 import java.util.jar.Manifest;
@@ -50,6 +54,7 @@ import org.apache.maven.artifact.Artifact;
 import org.apache.maven.artifact.resolver.filter.AndArtifactFilter;
 import org.apache.maven.artifact.resolver.filter.IncludesArtifactFilter;
 import org.apache.maven.execution.MavenSession;
+import org.apache.maven.model.FileSet;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugins.annotations.Component;
 import org.apache.maven.plugins.annotations.Mojo;
@@ -57,15 +62,9 @@ import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.plugins.annotations.ResolutionScope;
 import org.apache.maven.project.MavenProject;
 import org.apache.maven.toolchain.Toolchain;
-import org.apache.maven.toolchain.ToolchainManager;
-import org.codehaus.plexus.component.repository.exception.ComponentLookupException;
 import org.codehaus.plexus.util.IOUtil;
 import org.codehaus.plexus.util.StringUtils;
-import org.codehaus.plexus.util.cli.CommandLineException;
 import org.codehaus.plexus.util.cli.CommandLineUtils;
-import org.codehaus.plexus.util.cli.Commandline;
-import org.codehaus.plexus.util.cli.DefaultConsumer;
-import org.codehaus.plexus.util.cli.StreamConsumer;
 
 /**
  * A Plugin for executing external programs.
@@ -93,10 +92,13 @@ public class ExecMojo
      * </ol>
      * Otherwise use the executable as is.
      * </p>
+     * <p>
+     * Required unless {@link #commands} are specified.
+     * </p>
      *
      * @since 1.0
      */
-    @Parameter( property = "exec.executable", required = true )
+    @Parameter( property = "exec.executable" )
     private String executable;
 
     /**
@@ -120,11 +122,172 @@ public class ExecMojo
     @Parameter( property = "exec.outputFile" )
     private File outputFile;
 
+    /**
+     * If set to true, the standard and error output of the program are written to the {@link #outputFile} by the
+     * operating system, without passing through Maven. This saves the CPU and memory spent on copying, which matters
+     * for programs writing large amounts of output. Requires Java 7 to run Maven; on older versions the output is
+     * copied as usual. Ignored for {@link #commands} and {@link #worker} processes, and with {@link #teeOutput}.
+     *
+     * @since 1.4.0
+     */
+    @Parameter( property = "exec.redirectOutput", defaultValue = "false" )
+    private boolean redirectOutput;
+
+    /**
+     * If set to true and no {@link #outputFile} is specified, the program uses the standard input, output and error
+     * of the Maven process directly. No threads copy its output, so it appears immediately and costs nothing, but it
+     * bypasses any redirection of <code>System.out</code> within Maven, e.g. to a log file. Requires Java 7 to run
+     * Maven; on older versions the output is copied as usual. Ignored for {@link #commands} and {@link #worker}
+     * processes.
+     *
+     * @since 1.4.0
+     */
+    @Parameter( property = "exec.inheritIo", defaultValue = "false" )
+    private boolean inheritIo;
+
+    /**
+     * A file the program reads as its standard input, instead of the standard input of Maven. The operating system
+     * connects the file to the program, so it is read at disk speed without a thread copying it. Requires Java 7 to
+     * run Maven; on older versions the file is copied as usual. Ignored for {@link #commands}, {@link #pipeline} and
+     * {@link #worker} processes.
+     *
+     * @since 1.4.0
+     */
+    @Parameter( property = "exec.inputFile" )
+    private File inputFile;
+
+    /**
+     * If set to true and no {@link #inputFile} is specified, the standard input of the program is closed immediately,
+     * so a program reading it sees its end instead of waiting for the console, e.g. on a build server.
+     *
+     * @since 1.4.0
+     */
+    @Parameter( property = "exec.closeStdin", defaultValue = "false" )
+    private boolean closeStdin;
+
+    /**
+     * If set to true, the output of the program is written both to the {@link #outputFile} and to the console. The
+     * file always receives the complete output. When the console cannot keep up, it skips parts of the output after
+     * waiting a second, instead of blocking the program, and reports how many bytes were not shown.
+     *
+     * @since 1.4.0
+     */
+    @Parameter( property = "exec.teeOutput", defaultValue = "false" )
+    private boolean teeOutput;
+
+    /**
+     * If set to true, the output of the program is copied by a single thread shared by all executions of the Maven
+     * session, which polls the output of every program instead of using two pump threads per program. This saves
+     * threads when many programs run at once, e.g. with {@link #commands} or in parallel builds, but every program
+     * still occupies the thread waiting for its exit, and output following a pause is delayed by up to 10 ms. The
+     * standard input of the program is closed, and output written by its descendants after it exited is not copied.
+     *
+     * @since 1.4.0
+     */
+    @Parameter( property = "exec.pollOutput", defaultValue = "false" )
+    private boolean pollOutput;
+
+    /**
+     * <p>
+     * A list of <code>&lt;capture&gt;</code> elements, each with a <code>&lt;property&gt;</code>, a
+     * <code>&lt;pattern&gt;</code> and an optional <code>&lt;group&gt;</code> (default 1). The regular expression is
+     * searched in every line of the standard and error output while the program runs, and the group of the last
+     * matching line is set as project property once the program exited, e.g. to extract a version or a count from the
+     * output without reading it again.
+     * </p>
+     * <p>
+     * The patterns are matched against the bytes of the output, each byte seen as one character, so they should only
+     * contain ASCII text. Captures are not supported with {@link #redirectOutput} and {@link #inheritIo}, which are
+     * ignored when captures are configured.
+     * </p>
+     *
+     * @since 1.4.0
+     */
+    @Parameter
+    private List<Capture> captures;
+
+    /**
+     * The compression of the {@link #outputFile}: <code>gzip</code>, <code>none</code> or <code>auto</code>, which
+     * compresses with gzip if the file name ends with <code>.gz</code>. The compression runs on a separate thread, fed
+     * through a bounded queue of buffers, so it does not slow down reading the output of the program. A compressed
+     * output file cannot be written by the operating system, so {@link #redirectOutput} is ignored.
+     *
+     * @since 1.4.0
+     */
+    @Parameter( property = "exec.outputCompression", defaultValue = "auto" )
+    private String outputCompression;
+
+    /**
+     * The maximum size of the {@link #outputFile} in megabytes. When it is reached, the file is rolled over: it is
+     * renamed to <code>outputFile.1</code> (or <code>name.1.gz</code> for <code>name.gz</code>), older segments are
+     * renumbered, and a new file is started. The size counts the output before compression. Rolled over output cannot
+     * be written by the operating system, so {@link #redirectOutput} is ignored. A value &lt;= 0 means no limit.
+     *
+     * @since 1.4.0
+     */
+    @Parameter( property = "exec.outputFileMaxSize", defaultValue = "0" )
+    private long outputFileMaxSize;
+
+    /**
+     * The number of rolled over segments of the {@link #outputFile} which are kept, see {@link #outputFileMaxSize}.
+     * The oldest segment is deleted when a new one is started.
+     *
+     * @since 1.4.0
+     */
+    @Parameter( property = "exec.outputFileSegments", defaultValue = "5" )
+    private int outputFileSegments;
+
+    /**
+     * The number of kilobytes at the end of the output of the program which are kept in memory and added to the error
+     * message when the program fails, so the failure can be diagnosed without reading the whole output. The output
+     * is not available if it is connected by the operating system, see {@link #redirectOutput} and
+     * {@link #inheritIo}. A value &lt;= 0 disables it.
+     *
+     * @since 1.4.0
+     */
+    @Parameter( property = "exec.outputTailSize", defaultValue = "16" )
+    private int outputTailSize;
+
+    /**
+     * If set to true, the CPU time, peak resident memory, context switches and I/O bytes of the program and all the
+     * processes it starts are sampled from <code>/proc</code> while it runs. They are logged when it exits and
+     * appended to the {@link #processStatsFile}. Only supported on Linux, and not for a {@link #worker}.
+     *
+     * @since 1.4.0
+     */
+    @Parameter( property = "exec.processStats", defaultValue = "false" )
+    private boolean processStats;
+
+    /**
+     * The number of milliseconds between two samples of the {@link #processStats}. The first sample is taken after
+     * one interval, so programs which finish faster are not sampled at all.
+     *
+     * @since 1.4.0
+     */
+    @Parameter( property = "exec.processStatsInterval", defaultValue = "500" )
+    private long processStatsInterval;
+
+    /**
+     * The file receiving the {@link #processStats}, one line of comma separated values per execution, after a header
+     * line naming the columns.
+     *
+     * @since 1.4.0
+     */
+    @Parameter( property = "exec.processStatsFile", defaultValue = "${project.build.directory}/exec-process-stats.csv" )
+    private File processStatsFile;
+
     /**
      * <p>
      * A list of arguments passed to the {@code executable}, which should be of type <code>&lt;argument&gt;</code> or
      * <code>&lt;classpath&gt;</code>. Can be overridden by using the <code>exec.args</code> environment variable.
      * </p>
+     * <p>
+     * One argument may be a <code>&lt;batch&gt;</code> listing many values, e.g. file names, as
+     * <code>&lt;argument&gt;</code> elements. Like <code>xargs</code>, the values are split into as many command lines
+     * as needed to fit the limit of the operating system, or the <code>maxLength</code> and <code>maxArguments</code>
+     * of the batch. Each batch runs as a separate command with the other arguments around it, in parallel on
+     * {@link #commandThreads} threads like the {@link #commands}, and fails the build if any of them fails.
+     * </p>
      *
      * @since 1.0
      */
@@ -181,6 +344,28 @@ public class ExecMojo
     @Parameter
     private File environmentScript = null;
 
+    /**
+     * The files sourced by the {@link #environmentScript}. The variables the script adds or changes are cached for the
+     * Maven session, keyed by the content of the script and of these files, the {@link #environmentVariables} and the
+     * {@link #cacheEnvironmentVariables}, so the script only runs again when one of them changed. Variables of the
+     * environment of Maven which the script reads should be listed in {@link #cacheEnvironmentVariables}.
+     *
+     * @since 1.4.0
+     */
+    @Parameter
+    private List<File> environmentScriptInputs;
+
+    /**
+     * A directory where the variables set by the {@link #environmentScript} are also cached for later builds, e.g.
+     * <code>${project.build.directory}/exec-environment</code>. See {@link #environmentScriptInputs} for the key. Only
+     * the variables the script added or changed are stored, not the environment of Maven. They are only cached for the
+     * session if this is not set.
+     *
+     * @since 1.4.0
+     */
+    @Parameter( property = "exec.environmentScriptCacheDirectory" )
+    private File environmentScriptCacheDirectory;
+
     /**
      * The current build session instance. This is used for toolchain manager API calls.
      */
@@ -205,8 +390,218 @@ public class ExecMojo
     @Parameter( property = "exec.longClasspath", defaultValue = "false" )
     private boolean longClasspath;
 
+    /**
+     * <p>
+     * A list of independent commands to execute instead of the single {@code executable}. Each
+     * <code>&lt;command&gt;</code> has an <code>&lt;executable&gt;</code>, optional <code>&lt;arguments&gt;</code>
+     * (which accept the same elements as {@link #arguments}), an optional <code>&lt;workingDirectory&gt;</code> and
+     * optional <code>&lt;successCodes&gt;</code>.
+     * </p>
+     * <p>
+     * The commands run in parallel on {@link #commandThreads} threads and share the environment and the classpath of
+     * this execution. The output of every command is kept together and written in the order the commands are
+     * declared, so it is held in memory until the commands declared before have finished. The first failing command
+     * cancels the others, destroying their processes together with the processes they started.
+     * </p>
+     *
+     * @since 1.4.0
+     */
+    @Parameter
+    private List<Command> commands;
+
+    /**
+     * <p>
+     * A list of commands to execute as a pipeline instead of the single {@code executable}, like
+     * <code>sh -c "a | b | c"</code> but without a shell. Each <code>&lt;command&gt;</code> is configured like the
+     * {@link #commands}, the standard output of each command is connected to the standard input of the next one.
+     * </p>
+     * <p>
+     * On Java 9 and later the commands are connected by pipes of the operating system, so their data never passes
+     * through Maven; on older versions it is copied by a thread per connection. The standard input of the first
+     * command is closed. The standard output of the last command and the error output of all commands are written
+     * like the output of the {@code executable}. The exit code of every command is checked against its success codes.
+     * </p>
+     *
+     * @since 1.4.0
+     */
+    @Parameter
+    private List<Command> pipeline;
+
+    /**
+     * The maximum number of {@link #commands}, or batches of a <code>&lt;batch&gt;</code> argument, executed at the
+     * same time. A value &lt;= 0 means one thread per available processor.
+     *
+     * @since 1.4.0
+     */
+    @Parameter( property = "exec.commandThreads", defaultValue = "0" )
+    private int commandThreads;
+
+    /**
+     * <p>
+     * The files to execute the {@code executable} for, once per file, as a fileset with a
+     * <code>&lt;directory&gt;</code>, <code>&lt;includes&gt;</code> and <code>&lt;excludes&gt;</code>. In the
+     * {@link #arguments}, {@value #FILE_TOKEN} is replaced with the path of the file and {@value #TARGET_TOKEN} with
+     * the path of the output mapped by {@link #filesetTarget}.
+     * </p>
+     * <p>
+     * The executions run in parallel on {@link #commandThreads} threads, and the build fails if any of them fails.
+     * Files whose target exists and is newer than the file are skipped.
+     * </p>
+     *
+     * @since 1.4.0
+     */
+    @Parameter
+    private FileSet fileset;
+
+    /**
+     * The name of a concurrency group shared by executions, e.g. <code>heavy-node</code>. In a parallel build, at most
+     * {@link #concurrencyPermits} processes of all executions of the group run at the same time, across all modules.
+     * The others wait in the order they arrived, and the waiting time is logged.
+     *
+     * @since 1.4.0
+     */
+    @Parameter( property = "exec.concurrencyGroup" )
+    private String concurrencyGroup;
+
+    /**
+     * The number of processes of the {@link #concurrencyGroup} which may run at the same time. The first execution
+     * using the group during a build defines it.
+     *
+     * @since 1.4.0
+     */
+    @Parameter( property = "exec.concurrencyPermits", defaultValue = "1" )
+    private int concurrencyPermits;
+
+    /**
+     * The scheduling priority, I/O class, CPU affinity and resource limits of the program, see
+     * {@link ResourceControls}, e.g. a <code>&lt;nice&gt;</code> of 10 and the <code>idle</code>
+     * <code>&lt;ioClass&gt;</code> for a bulk tool. They are applied when the program is launched, by starting it
+     * through <code>nice</code>, <code>ionice</code>, <code>taskset</code> and <code>prlimit</code>, and are inherited
+     * by the processes it starts. Only supported on Linux, ignored with a warning elsewhere.
+     *
+     * @since 1.4.0
+     */
+    @Parameter
+    private ResourceControls resourceControls;
+
+    /**
+     * The output of each file of the {@link #fileset}, e.g.
+     * <code>${project.build.directory}/shaders/%dir/%name.spv</code>. <code>%dir</code> is replaced with the directory
+     * of the file relative to the directory of the fileset, and <code>%name</code> with its name without the
+     * extension. Without a target no file is skipped.
+     *
+     * @since 1.4.0
+     */
+    @Parameter
+    private String filesetTarget;
+
+    /**
+     * <p>
+     * If set to true, the {@code executable} is started once per Maven session and kept alive as a worker process.
+     * Later executions with the same executable, {@link #workerArguments}, working directory and environment send
+     * their arguments to the running worker instead of starting a new process.
+     * </p>
+     * <p>
+     * The worker reads its requests from the standard input: a line with the number of arguments, followed by one line
+     * per argument. It writes the output of a request to the standard output and ends it with the line
+     * <code>##EXIT n</code>, where <code>n</code> is the exit code of the request. The worker should terminate when
+     * its standard input is closed. Arguments containing line breaks cannot be sent to a worker.
+     * </p>
+     * <p>
+     * The {@link #timeout} bounds the time the worker takes to answer a request. A worker not answering in time is
+     * stopped together with the processes it started, and is started again by the next execution. The
+     * {@link #processStats}, {@link #inputFile}, {@link #closeStdin}, {@link #redirectOutput} and {@link #inheritIo}
+     * are ignored for a worker, and its error output is always copied to the error output of Maven.
+     * </p>
+     *
+     * @since 1.4.0
+     */
+    @Parameter( property = "exec.worker", defaultValue = "false" )
+    private boolean worker;
+
+    /**
+     * Arguments used to start the worker process, see {@link #worker}. The {@link #arguments} are sent to the worker
+     * for every execution.
+     *
+     * @since 1.4.0
+     */
+    @Parameter
+    private List<String> workerArguments;
+
+    /**
+     * The number of milliseconds after which an unused worker process is stopped, see {@link #worker}.
+     *
+     * @since 1.4.0
+     */
+    @Parameter( property = "exec.workerIdleTimeout", defaultValue = "60000" )
+    private long workerIdleTimeout;
+
+    /**
+     * The number of milliseconds the executed program may run. When the timeout is reached the program and all the
+     * processes it started are asked to terminate, and are killed if they are still alive after the
+     * {@link #timeoutGracePeriod}. A value &lt;= 0 means no timeout. It applies to each of the {@link #commands} and
+     * to the {@link #pipeline} as a whole.
+     *
+     * @since 1.4.0
+     */
+    @Parameter( property = "exec.timeout", defaultValue = "0" )
+    private long timeout;
+
+    /**
+     * The number of milliseconds between asking the processes to terminate (<code>SIGTERM</code>) and killing them
+     * (<code>SIGKILL</code>), when the {@link #timeout} is reached or Maven is stopped.
+     *
+     * @since 1.4.0
+     */
+    @Parameter( property = "exec.timeoutGracePeriod", defaultValue = "5000" )
+    private long timeoutGracePeriod;
+
+    /**
+     * Artifacts and output directories collected for the classpath, shared by all arguments of one execution.
+     */
+    private List<Artifact> classpathArtifacts;
+
+    private List<File> classpathFiles;
+
+    /**
+     * Whether an argument of the execution contains the classpath, which makes it part of the cache key.
+     */
+    private boolean classpathUsed;
+
+    /**
+     * Applies the {@link #captures} to the output of the current execution, <code>null</code> if there are none.
+     */
+    private OutputCapturer capturer;
+
+    /**
+     * Whether the {@link #outputFile} of the current execution is compressed, see {@link #outputCompression}.
+     */
+    private boolean compressOutput;
+
+    /**
+     * The batch found by the last {@link #handleArguments(List, List)}, <code>null</code> if there is none, and the
+     * position of its values among the arguments.
+     */
+    private Batch batch;
+
+    private int batchPosition;
+
+    /**
+     * The tools applying the {@link #resourceControls} to the launched programs, empty if there are none.
+     */
+    private List<String> launcherPrefix;
+
+    /**
+     * Keeps the end of the output of the current execution, <code>null</code> if {@link #outputTailSize} is disabled.
+     */
+    private OutputTail tail;
+
     public static final String CLASSPATH_TOKEN = "%classpath";
 
+    public static final String FILE_TOKEN = "%file";
+
+    public static final String TARGET_TOKEN = "%target";
+
     /**
      * priority in the execute method will be to use System properties arguments over the pom specification.
      *
@@ -226,93 +621,838 @@ public class ExecMojo
             throw new IllegalStateException( "basedir is null. Should not be possible." );
         }
 
+        classpathArtifacts = null;
+        classpathFiles = null;
+        classpathUsed = false;
+        batch = null;
+        capturer = createCapturer();
+        compressOutput = isOutputCompressed();
+        tail = outputTailSize > 0 ? new OutputTail( outputTailSize * 1024 ) : null;
+        launcherPrefix = getLauncherPrefix();
+
+        if ( commands != null && !commands.isEmpty() )
+        {
+            executeCommands();
+            registerSourceRoots();
+            return;
+        }
+
+        if ( pipeline != null && !pipeline.isEmpty() )
+        {
+            executePipeline();
+            registerSourceRoots();
+            return;
+        }
+
+        if ( executable == null )
+        {
+            throw new MojoExecutionException( "The parameter 'executable' is missing or invalid" );
+        }
+
         try
         {
 
             handleWorkingDirectory();
 
-            String argsProp = getSystemProperty( "exec.args" );
+            List<String> commandArguments = computeCommandArguments();
 
-            List<String> commandArguments = new ArrayList<String>();
+            Map<String, String> enviro = handleSystemEnvVariables();
+            checkExecutable( executable, workingDirectory, enviro );
 
-            if ( hasCommandlineArgs() )
+            if ( fileset != null )
             {
-                handleCommandLineArgs( commandArguments );
+                if ( worker || batch != null )
+                {
+                    throw new MojoExecutionException( "A fileset cannot be combined with a worker or a batch "
+                        + "argument." );
+                }
+                runJobs( createFilesetJobs( commandArguments, enviro ), enviro );
+                registerSourceRoots();
+                return;
             }
-            else if ( !StringUtils.isEmpty( argsProp ) )
+
+            if ( batch != null )
             {
-                handleSystemPropertyArguments( argsProp, commandArguments );
+                if ( worker )
+                {
+                    throw new MojoExecutionException( "A batch argument cannot be sent to a worker." );
+                }
+                List<CommandJob> jobs = new ArrayList<CommandJob>();
+                for ( List<String> batchArguments : splitBatch( executable, commandArguments, enviro ) )
+                {
+                    CommandLine commandLine = getExecutablePath( enviro, workingDirectory );
+                    commandLine.addArguments( batchArguments.toArray( new String[batchArguments.size()] ), false );
+                    jobs.add( new CommandJob( commandLine, workingDirectory, successCodes, enviro ) );
+                }
+                runJobs( jobs, enviro );
+                registerSourceRoots();
+                return;
             }
-            else
+
+            CommandLine commandLine = getExecutablePath( enviro, workingDirectory );
+
+            if ( worker )
             {
-                if ( arguments != null )
+                if ( workerArguments != null )
                 {
-                    handleArguments( commandArguments );
+                    commandLine.addArguments( workerArguments.toArray( new String[workerArguments.size()] ), false );
                 }
             }
+            else
+            {
+                String[] args = commandArguments.toArray( new String[commandArguments.size()] );
+
+                commandLine.addArguments( args, false );
+            }
+
+            String description = commandLine + " " + commandArguments + " in " + workingDirectory;
+            if ( isFingerprinted() && isUpToDate( getFingerprintKey( description, enviro ) ) )
+            {
+                registerSourceRoots();
+                return;
+            }
+
+            if ( isCached() && restoreFromCache( description, enviro, getCacheClasspathElements() ) )
+            {
+                recordFingerprints();
+                registerSourceRoots();
+                return;
+            }
+
+            if ( inputFile != null && !worker && !inputFile.isFile() )
+            {
+                throw new MojoExecutionException( "The input file " + inputFile + " does not exist." );
+            }
+
+            commandLine = ResourceLauncher.wrap( commandLine, launcherPrefix );
+            Executor exec = createExecutor();
+            exec.setWorkingDirectory( workingDirectory );
+            fillSuccessCodes( exec );
+            ProcessStats stats = worker ? null : createProcessStats( commandLine );
+            ProcessTreeWatchdog watchdog = fillWatchdog( exec, stats );
+
+            getLog().debug( "Executing command line: " + commandLine );
+
+            Semaphore permit = acquirePermit();
+            try
+            {
+                int resultCode;
+                if ( outputFile != null )
+                {
+                    if ( !outputFile.getParentFile().exists() && !outputFile.getParentFile().mkdirs() )
+                    {
+                        getLog().warn( "Could not create non existing parent directories for log file: " + outputFile );
+                    }
+
+                    OutputStream outputStream = null;
+                    try
+                    {
+                        if ( isOutputRedirected( exec ) )
+                        {
+                            resultCode = executeRedirected( exec, commandLine, enviro );
+                        }
+                        else if ( teeOutput )
+                        {
+                            resultCode = executeTee( exec, commandLine, commandArguments, enviro );
+                        }
+                        else if ( worker )
+                        {
+                            outputStream = openOutputFile();
+                            resultCode =
+                                executeInWorker( commandLine, commandArguments, enviro,
+                                                 capture( new BufferedOutputStream( outputStream ) ) );
+                        }
+                        else if ( capturer != null || tail != null || compressOutput || outputFileMaxSize > 0 )
+                        {
+                            outputStream = openOutputFile();
+                            BufferedOutputStream bos = new BufferedOutputStream( outputStream );
+                            resultCode =
+                                executeCommandLine( exec, commandLine, enviro, capture( bos ), capture( bos ) );
+                            bos.flush();
+                        }
+                        else
+                        {
+                            FileOutputStream fileStream = new FileOutputStream( outputFile );
+                            outputStream = fileStream;
+                            resultCode = executeCommandLine( exec, commandLine, enviro, fileStream );
+                        }
+
+                        if ( outputStream != null )
+                        {
+                            // report the errors of closing, e.g. of the compression
+                            outputStream.close();
+                        }
+                    }
+                    finally
+                    {
+                        IOUtil.close( outputStream );
+                    }
+                }
+                else if ( isOutputRedirected( exec ) )
+                {
+                    resultCode = executeRedirected( exec, commandLine, enviro );
+                }
+                else if ( worker )
+                {
+                    resultCode = executeInWorker( commandLine, commandArguments, enviro, capture( System.out ) );
+                }
+                else
+                {
+                    resultCode =
+                        executeCommandLine( exec, commandLine, enviro, capture( System.out ), capture( System.err ) );
+                }
+
+                setCapturedProperties();
+                checkTimeout( watchdog, commandLine );
+
+                if ( isResultCodeAFailure( resultCode ) )
+                {
+                    throw new MojoExecutionException( appendTail( "Result of " + commandLine + " execution is: '"
+                        + resultCode + "'." ) );
+                }
+
+                recordFingerprints();
+                storeInCache();
+            }
+            catch ( ExecuteException e )
+            {
+                checkTimeout( watchdog, commandLine );
+                throw new MojoExecutionException( appendTail( "Command execution failed." ), e );
+
+            }
+            catch ( IOException e )
+            {
+                throw new MojoExecutionException( "Command execution failed.", e );
+            }
+            finally
+            {
+                releasePermit( permit );
+                reportProcessStats( stats );
+            }
+
+            registerSourceRoots();
+        }
+        catch ( IOException e )
+        {
+            throw new MojoExecutionException( "I/O Error", e );
+        }
+    }
+
+    /**
+     * @return the arguments of the executable, from the command line, the <code>exec.args</code> property or the
+     *         {@link #arguments}
+     */
+    private List<String> computeCommandArguments()
+        throws MojoExecutionException, IOException
+    {
+        String argsProp = getSystemProperty( "exec.args" );
+
+        List<String> commandArguments = new ArrayList<String>();
+
+        if ( hasCommandlineArgs() )
+        {
+            handleCommandLineArgs( commandArguments );
+        }
+        else if ( !StringUtils.isEmpty( argsProp ) )
+        {
+            handleSystemPropertyArguments( argsProp, commandArguments );
+        }
+        else
+        {
+            if ( arguments != null )
+            {
+                handleArguments( arguments, commandArguments );
+            }
+        }
+        return commandArguments;
+    }
+
+    /**
+     * Start the program without waiting for it to exit, see {@link ExecStartMojo}. The standard and the error output
+     * are written to the {@link #outputFile}, or to the console, through the probe.
+     *
+     * @param probe the probe watching the output of the program
+     * @return the running program
+     * @throws MojoExecutionException if the program could not be started
+     */
+    /**
+     * @return the names of the configured parameters which {@link #startInBackground(ReadinessProbe)} does not support
+     */
+    List<String> getParametersUnsupportedInBackground()
+    {
+        List<String> names = new ArrayList<String>();
+        addIf( names, "commands", commands != null && !commands.isEmpty() );
+        addIf( names, "pipeline", pipeline != null && !pipeline.isEmpty() );
+        addIf( names, "fileset", fileset != null );
+        addIf( names, "filesetTarget", filesetTarget != null );
+        addIf( names, "worker", worker );
+        addIf( names, "workerArguments", workerArguments != null && !workerArguments.isEmpty() );
+        addIf( names, "timeout", timeout > 0 );
+        addIf( names, "redirectOutput", redirectOutput );
+        addIf( names, "inheritIo", inheritIo );
+        addIf( names, "inputFile", inputFile != null );
+        addIf( names, "closeStdin", closeStdin );
+        addIf( names, "teeOutput", teeOutput );
+        addIf( names, "pollOutput", pollOutput );
+        addIf( names, "captures", captures != null && !captures.isEmpty() );
+        addIf( names, "processStats", processStats );
+        addIf( names, "concurrencyGroup", concurrencyGroup != null );
+        addCachingParameters( names );
+        return names;
+    }
+
+    BackgroundProcess startInBackground( ReadinessProbe probe )
+        throws MojoExecutionException
+    {
+        if ( executable == null )
+        {
+            throw new MojoExecutionException( "The parameter 'executable' is missing or invalid" );
+        }
+
+        classpathArtifacts = null;
+        classpathFiles = null;
+        classpathUsed = false;
+        batch = null;
+        capturer = null;
+        compressOutput = isOutputCompressed();
+        tail = outputTailSize > 0 ? new OutputTail( outputTailSize * 1024 ) : null;
+        launcherPrefix = getLauncherPrefix();
+
+        OutputStream output = null;
+        try
+        {
+            handleWorkingDirectory();
+            List<String> commandArguments = computeCommandArguments();
+            if ( batch != null )
+            {
+                throw new MojoExecutionException( "A batch argument cannot be started in the background." );
+            }
+            Map<String, String> enviro = handleSystemEnvVariables();
+            checkExecutable( executable, workingDirectory, enviro );
+
+            CommandLine commandLine = getExecutablePath( enviro, workingDirectory );
+            commandLine.addArguments( commandArguments.toArray( new String[commandArguments.size()] ), false );
+            commandLine = ResourceLauncher.wrap( commandLine, launcherPrefix );
+
+            OutputStream out = System.out;
+            OutputStream err = System.err;
+            if ( outputFile != null )
+            {
+                if ( !outputFile.getParentFile().exists() && !outputFile.getParentFile().mkdirs() )
+                {
+                    getLog().warn( "Could not create non existing parent directories for log file: " + outputFile );
+                }
+                output = openOutputFile();
+                out = output;
+                err = output;
+            }
+
+            Executor exec = new DefaultExecutor();
+            exec.setWorkingDirectory( workingDirectory );
+            fillSuccessCodes( exec );
+            exec.setStreamHandler( new PumpStreamHandler( probe.wrap( capture( out ) ), probe.wrap( capture( err ) ),
+                                                          null ) );
+
+            getLog().debug( "Starting command line: " + commandLine );
+            BackgroundProcess process = new BackgroundProcess( commandLine, output, timeoutGracePeriod );
+            process.start( exec, enviro );
+            return process;
+        }
+        catch ( IOException e )
+        {
+            IOUtil.close( output );
+            throw new MojoExecutionException( "Command execution failed.", e );
+        }
+    }
+
+    /**
+     * Execute all {@link #commands} in parallel. The environment and the classpath are computed once and shared by all
+     * commands.
+     *
+     * @throws MojoExecutionException if a command could not be prepared or failed
+     */
+    private void executeCommands()
+        throws MojoExecutionException
+    {
+        try
+        {
+            handleWorkingDirectory();
+
+            Map<String, String> enviro = handleSystemEnvVariables();
+
+            List<CommandJob> jobs = new ArrayList<CommandJob>();
+            for ( int i = 0; i < commands.size(); i++ )
+            {
+                Command command = commands.get( i );
+                if ( command.getExecutable() == null )
+                {
+                    throw new MojoExecutionException( "Misconfigured command (" + ( i + 1 )
+                        + "), executable is null." );
+                }
+
+                File dir = command.getWorkingDirectory() != null ? command.getWorkingDirectory() : workingDirectory;
+                ensureDirectory( dir );
+                checkExecutable( command.getExecutable(), dir, enviro );
+
+                List<String> commandArguments = new ArrayList<String>();
+                batch = null;
+                if ( command.getArguments() != null )
+                {
+                    handleArguments( command.getArguments(), commandArguments );
+                }
+
+                int[] codes = command.getSuccessCodes() != null ? command.getSuccessCodes() : successCodes;
+                for ( List<String> batchArguments : splitBatch( command.getExecutable(), commandArguments, enviro ) )
+                {
+                    CommandLine commandLine = getExecutablePath( command.getExecutable(), enviro, dir );
+                    commandLine.addArguments( batchArguments.toArray( new String[batchArguments.size()] ), false );
+                    jobs.add( new CommandJob( commandLine, dir, codes, enviro ) );
+                }
+            }
+
+            runJobs( jobs, enviro );
+        }
+        catch ( IOException e )
+        {
+            throw new MojoExecutionException( "I/O Error", e );
+        }
+    }
+
+    /**
+     * Execute the {@link #pipeline}.
+     *
+     * @throws MojoExecutionException if a command could not be prepared or failed
+     */
+    private void executePipeline()
+        throws MojoExecutionException
+    {
+        try
+        {
+            handleWorkingDirectory();
+
+            Map<String, String> enviro = handleSystemEnvVariables();
+
+            Pipeline stages = new Pipeline();
+            List<int[]> codes = new ArrayList<int[]>();
+            StringBuilder description = new StringBuilder();
+            for ( int i = 0; i < pipeline.size(); i++ )
+            {
+                Command command = pipeline.get( i );
+                if ( command.getExecutable() == null )
+                {
+                    throw new MojoExecutionException( "Misconfigured command (" + ( i + 1 )
+                        + "), executable is null." );
+                }
+
+                File dir = command.getWorkingDirectory() != null ? command.getWorkingDirectory() : workingDirectory;
+                ensureDirectory( dir );
+                checkExecutable( command.getExecutable(), dir, enviro );
+
+                List<String> commandArguments = new ArrayList<String>();
+                batch = null;
+                if ( command.getArguments() != null )
+                {
+                    handleArguments( command.getArguments(), commandArguments );
+                }
+                if ( batch != null )
+                {
+                    throw new MojoExecutionException( "A batch argument cannot be used in a pipeline." );
+                }
+
+                CommandLine commandLine = getExecutablePath( command.getExecutable(), enviro, dir );
+                commandLine.addArguments( commandArguments.toArray( new String[commandArguments.size()] ), false );
+                stages.add( ResourceLauncher.wrap( commandLine, launcherPrefix ), dir, enviro );
+                codes.add( command.getSuccessCodes() != null ? command.getSuccessCodes() : successCodes );
+                description.append( i > 0 ? " | " : "" ).append( commandLine ).append( " in " ).append( dir );
+            }
+
+            if ( isFingerprinted() && isUpToDate( getFingerprintKey( description.toString(), enviro ) ) )
+            {
+                return;
+            }
+            if ( isCached() && restoreFromCache( description.toString(), enviro, getCacheClasspathElements() ) )
+            {
+                recordFingerprints();
+                return;
+            }
+            if ( !Pipeline.isNative() )
+            {
+                getLog().debug( "Connecting the pipeline by the operating system requires Java 9, the output is copied "
+                    + "between the commands" );
+            }
+
+            getLog().debug( "Executing pipeline: " + description );
+            int[] exitCodes;
+            Semaphore permit = acquirePermit();
+            try
+            {
+                ProcessTreeDestroyer destroyer = new ProcessTreeDestroyer( timeoutGracePeriod );
+                if ( outputFile != null )
+                {
+                    if ( !outputFile.getParentFile().exists() && !outputFile.getParentFile().mkdirs() )
+                    {
+                        getLog().warn( "Could not create non existing parent directories for log file: " + outputFile );
+                    }
+                    OutputStream outputStream = null;
+                    try
+                    {
+                        outputStream = new BufferedOutputStream( openOutputFile() );
+                        OutputStream captured = capture( outputStream );
+                        exitCodes = stages.run( captured, captured, destroyer, timeout );
+                        outputStream.close();
+                    }
+                    finally
+                    {
+                        IOUtil.close( outputStream );
+                    }
+                }
+                else
+                {
+                    exitCodes = stages.run( capture( System.out ), capture( System.err ), destroyer, timeout );
+                }
+            }
+            catch ( InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+                throw new MojoExecutionException( "Interrupted while executing the pipeline", e );
+            }
+            finally
+            {
+                releasePermit( permit );
+            }
+
+            setCapturedProperties();
+            if ( stages.isTimedOut() )
+            {
+                String report = "The pipeline exceeded the timeout of " + timeout + " ms, its commands were stopped.";
+                getLog().error( report );
+                throw new MojoExecutionException( appendTail( report ) );
+            }
+            StringBuilder failures = new StringBuilder();
+            for ( int i = 0; i < exitCodes.length; i++ )
+            {
+                getLog().debug( "Result of " + stages.getCommandLines().get( i ) + " is: " + exitCodes[i] );
+                if ( stages.isOrphaned( i ) )
+                {
+                    getLog().debug( stages.getCommandLines().get( i ) + " was stopped after the next command exited" );
+                }
+                else if ( isResultCodeAFailure( codes.get( i ), exitCodes[i] ) )
+                {
+                    failures.append( failures.length() > 0 ? ", " : "" ).append( stages.getCommandLines().get( i ) );
+                    failures.append( ": '" ).append( exitCodes[i] ).append( "'" );
+                }
+            }
+            if ( failures.length() > 0 )
+            {
+                throw new MojoExecutionException( appendTail( "Result of the pipeline " + Arrays.toString( exitCodes )
+                    + ", failed: " + failures + "." ) );
+            }
+
+            recordFingerprints();
+            storeInCache();
+        }
+        catch ( IOException e )
+        {
+            throw new MojoExecutionException( "Command execution failed.", e );
+        }
+    }
+
+    /**
+     * @return a job for each file of the {@link #fileset} whose target is missing or older than the file
+     */
+    private List<CommandJob> createFilesetJobs( List<String> commandArguments, Map<String, String> enviro )
+        throws MojoExecutionException
+    {
+        String directory = getFileSetDirectory( fileset ).getAbsolutePath() + File.separator;
+        List<CommandJob> jobs = new ArrayList<CommandJob>();
+        int upToDate = 0;
+        for ( File file : scanFileSets( new FileSet[] { fileset } ) )
+        {
+            File target = null;
+            if ( filesetTarget != null )
+            {
+                target = getFilesetTarget( file.getAbsolutePath().substring( directory.length() ) );
+                if ( target.isFile() && target.lastModified() >= file.lastModified() )
+                {
+                    upToDate++;
+                    continue;
+                }
+                if ( !target.getParentFile().isDirectory() && !target.getParentFile().mkdirs() )
+                {
+                    throw new MojoExecutionException( "Could not create the directory of " + target );
+                }
+            }
+
+            List<String> fileArguments = new ArrayList<String>( commandArguments.size() );
+            for ( String argument : commandArguments )
+            {
+                String arg = argument.replace( FILE_TOKEN, file.getAbsolutePath() );
+                if ( arg.contains( TARGET_TOKEN ) )
+                {
+                    if ( target == null )
+                    {
+                        throw new MojoExecutionException( "The argument '" + argument + "' uses " + TARGET_TOKEN
+                            + ", but the filesetTarget is missing." );
+                    }
+                    arg = arg.replace( TARGET_TOKEN, target.getAbsolutePath() );
+                }
+                fileArguments.add( arg );
+            }
+
+            CommandLine commandLine = getExecutablePath( enviro, workingDirectory );
+            commandLine.addArguments( fileArguments.toArray( new String[fileArguments.size()] ), false );
+            jobs.add( new CommandJob( commandLine, workingDirectory, successCodes, enviro ) );
+        }
+        getLog().info( "Executing " + executable + " for " + jobs.size() + " file(s), " + upToDate
+            + " file(s) up to date" );
+        return jobs;
+    }
+
+    /**
+     * @param path the path of a file of the {@link #fileset}, relative to its directory
+     * @return the {@link #filesetTarget} of the file
+     */
+    private File getFilesetTarget( String path )
+    {
+        File relative = new File( path );
+        String dir = relative.getParent() != null ? relative.getParent() : ".";
+        String name = relative.getName();
+        int extension = name.lastIndexOf( '.' );
+        if ( extension > 0 )
+        {
+            name = name.substring( 0, extension );
+        }
+        File target = new File( filesetTarget.replace( "%dir", dir ).replace( "%name", name ) );
+        if ( !target.isAbsolute() )
+        {
+            target = new File( basedir, target.getPath() );
+        }
+        return target;
+    }
+
+    /**
+     * Execute the jobs in parallel on {@link #commandThreads} threads, unless they are up to date or cached.
+     *
+     * @throws MojoExecutionException if a job failed
+     * @throws IOException if the output could not be written
+     */
+    private void runJobs( List<CommandJob> jobs, Map<String, String> enviro )
+        throws MojoExecutionException, IOException
+    {
+        if ( isFingerprinted() )
+        {
+            StringBuilder key = new StringBuilder();
+            for ( CommandJob job : jobs )
+            {
+                key.append( job ).append( " in " ).append( job.dir ).append( '\n' );
+            }
+            if ( isUpToDate( getFingerprintKey( key.toString(), enviro ) ) )
+            {
+                return;
+            }
+            if ( isCached() && restoreFromCache( key.toString(), enviro, getCacheClasspathElements() ) )
+            {
+                recordFingerprints();
+                return;
+            }
+        }
+
+        int threads = commandThreads > 0 ? commandThreads : Runtime.getRuntime().availableProcessors();
+        ParallelCommandRunner runner = new ParallelCommandRunner( getLog(), threads );
+
+        try
+        {
+            if ( outputFile != null )
+            {
+                if ( !outputFile.getParentFile().exists() && !outputFile.getParentFile().mkdirs() )
+                {
+                    getLog().warn( "Could not create non existing parent directories for log file: " + outputFile );
+                }
+
+                if ( teeOutput )
+                {
+                    TeeOutput tee = new TeeOutput( outputFile, openOutputFile(), System.out, System.err );
+                    try
+                    {
+                        runner.run( jobs, capture( tee.getOut() ), capture( tee.getErr() ) );
+                    }
+                    finally
+                    {
+                        tee.close();
+                    }
+                }
+                else
+                {
+                    OutputStream outputStream = null;
+                    try
+                    {
+                        outputStream = new BufferedOutputStream( openOutputFile() );
+                        runner.run( jobs, capture( outputStream ), capture( outputStream ) );
+                        outputStream.close();
+                    }
+                    finally
+                    {
+                        IOUtil.close( outputStream );
+                    }
+                }
+            }
+            else
+            {
+                runner.run( jobs, capture( System.out ), capture( System.err ) );
+            }
+        }
+        catch ( MojoExecutionException e )
+        {
+            String message = appendTail( e.getMessage() );
+            if ( message.equals( e.getMessage() ) )
+            {
+                throw e;
+            }
+            throw new MojoExecutionException( message, e.getCause() );
+        }
+        setCapturedProperties();
+
+        recordFingerprints();
+        storeInCache();
+    }
+
+    /**
+     * @return the key for {@link #isUpToDate(String)}, covering the commands, the environment and the classpath
+     */
+    private String getFingerprintKey( String commands, Map<String, String> enviro )
+    {
+        StringBuilder key = new StringBuilder( commands );
+        key.append( '\n' ).append( describeEnvironment( enviro ) );
+        for ( File element : getClasspathElements() )
+        {
+            key.append( '\n' ).append( describeClasspathElement( element ) );
+        }
+        return key.toString();
+    }
+
+    /**
+     * @return the elements of the classpath if an argument contains it, otherwise the classpath does not change the
+     *         outputs and hashing it would be wasted
+     */
+    private List<File> getCacheClasspathElements()
+    {
+        return classpathUsed ? getClasspathElements() : Collections.<File>emptyList();
+    }
+
+    /**
+     * @return the elements of the classpath of the {@link #classpathScope}
+     */
+    private List<File> getClasspathElements()
+    {
+        List<File> elements = new ArrayList<File>();
+        for ( String element : computeClasspath( null ) )
+        {
+            elements.add( new File( element ) );
+        }
+        return elements;
+    }
+
+    /**
+     * One of the {@link #commands}, ready to be executed.
+     */
+    private class CommandJob
+        implements ParallelCommandRunner.Job
+    {
+        private final CommandLine commandLine;
+
+        private final File dir;
 
-            Map<String, String> enviro = handleSystemEnvVariables();
+        private final int[] codes;
 
-            CommandLine commandLine = getExecutablePath( enviro, workingDirectory );
+        private final Map<String, String> enviro;
 
-            String[] args = commandArguments.toArray( new String[commandArguments.size()] );
+        private ProcessTreeDestroyer destroyer;
 
-            commandLine.addArguments( args, false );
+        private boolean cancelled;
+
+        CommandJob( CommandLine commandLine, File dir, int[] codes, Map<String, String> enviro )
+        {
+            this.commandLine = commandLine;
+            this.dir = dir;
+            this.codes = codes;
+            this.enviro = enviro;
+        }
 
+        public int execute( OutputStream out, OutputStream err )
+            throws IOException
+        {
             Executor exec = new DefaultExecutor();
-            exec.setWorkingDirectory( workingDirectory );
-            fillSuccessCodes( exec );
+            exec.setWorkingDirectory( dir );
+            if ( codes != null && codes.length > 0 )
+            {
+                exec.setExitValues( codes );
+            }
+            ProcessStats stats = createProcessStats( commandLine );
+            ProcessTreeWatchdog watchdog = fillWatchdog( exec, stats );
+            synchronized ( this )
+            {
+                destroyer = (ProcessTreeDestroyer) exec.getProcessDestroyer();
+                if ( cancelled )
+                {
+                    throw new IOException( "Execution of " + commandLine + " was cancelled" );
+                }
+            }
 
             getLog().debug( "Executing command line: " + commandLine );
 
+            int result;
+            Semaphore permit = acquirePermit();
             try
             {
-                int resultCode;
-                if ( outputFile != null )
-                {
-                    if ( !outputFile.getParentFile().exists() && !outputFile.getParentFile().mkdirs() )
-                    {
-                        getLog().warn( "Could not create non existing parent directories for log file: " + outputFile );
-                    }
-
-                    FileOutputStream outputStream = null;
-                    try
-                    {
-                        outputStream = new FileOutputStream( outputFile );
-
-                        resultCode = executeCommandLine( exec, commandLine, enviro, outputStream );
-                    }
-                    finally
-                    {
-                        IOUtil.close( outputStream );
-                    }
-                }
-                else
-                {
-                    resultCode = executeCommandLine( exec, commandLine, enviro, System.out, System.err );
-                }
-
-                if ( isResultCodeAFailure( resultCode ) )
-                {
-                    throw new MojoExecutionException( "Result of " + commandLine + " execution is: '" + resultCode
-                        + "'." );
-                }
+                // parallel commands must not compete for System.in
+                result = executeCommandLine( exec, ResourceLauncher.wrap( commandLine, launcherPrefix ), enviro, out,
+                                             err, null );
             }
             catch ( ExecuteException e )
             {
-                throw new MojoExecutionException( "Command execution failed.", e );
-
+                checkTimeout( watchdog );
+                throw e;
             }
-            catch ( IOException e )
+            finally
             {
-                throw new MojoExecutionException( "Command execution failed.", e );
+                releasePermit( permit );
+                reportProcessStats( stats );
             }
+            checkTimeout( watchdog );
+            return result;
+        }
 
-            registerSourceRoots();
+        private void checkTimeout( ProcessTreeWatchdog watchdog )
+            throws IOException
+        {
+            if ( watchdog != null && watchdog.isTimedOut() )
+            {
+                throw new IOException( "Execution of " + commandLine + " timed out. " + watchdog.getReport() );
+            }
         }
-        catch ( IOException e )
+
+        public boolean isFailure( int resultCode )
         {
-            throw new MojoExecutionException( "I/O Error", e );
+            return isResultCodeAFailure( codes, resultCode );
+        }
+
+        public void cancel()
+        {
+            ProcessTreeDestroyer toCancel;
+            synchronized ( this )
+            {
+                cancelled = true;
+                toCancel = destroyer;
+            }
+            if ( toCancel != null )
+            {
+                toCancel.cancel();
+            }
+        }
+
+        public String toString()
+        {
+            return commandLine.toString();
         }
     }
 
@@ -322,19 +1462,8 @@ public class ExecMojo
 
         validateEnvironmentVars();
 
-        Map<String, String> enviro = new HashMap<String, String>();
-        try
-        {
-            Properties systemEnvVars = CommandLineUtils.getSystemEnvVars();
-            for ( Map.Entry<?, ?> entry : systemEnvVars.entrySet() )
-            {
-                enviro.put( (String) entry.getKey(), (String) entry.getValue() );
-            }
-        }
-        catch ( IOException x )
-        {
-            getLog().error( "Could not assign default system enviroment variables.", x );
-        }
+        EnvironmentOverlay enviro =
+            new EnvironmentOverlay( SessionContext.get( session, SystemEnvironment.class ).getVariables( getLog() ) );
 
         if ( environmentVariables != null )
         {
@@ -344,7 +1473,7 @@ public class ExecMojo
         if ( this.environmentScript != null )
         {
             getLog().info( "Pick up external environment script: " + this.environmentScript );
-            Map<String, String> envVarsFromScript = this.createEnvs( this.environmentScript );
+            Map<String, String> envVarsFromScript = getScriptEnvironment( enviro );
             if ( envVarsFromScript != null )
             {
                 enviro.putAll( envVarsFromScript );
@@ -353,11 +1482,9 @@ public class ExecMojo
 
         if ( this.getLog().isDebugEnabled() )
         {
-            Set<String> keys = new TreeSet<String>();
-            keys.addAll( enviro.keySet() );
-            for ( String key : keys )
+            for ( Map.Entry<String, String> entry : new TreeMap<String, String>( enviro.getOverlay() ).entrySet() )
             {
-                this.getLog().debug( "env: " + key + "=" + enviro.get( key ) );
+                this.getLog().debug( "env: " + entry.getKey() + "=" + entry.getValue() );
             }
         }
 
@@ -421,13 +1548,19 @@ public class ExecMojo
             workingDirectory = basedir;
         }
 
-        if ( !workingDirectory.exists() )
+        ensureDirectory( workingDirectory );
+    }
+
+    private void ensureDirectory( File directory )
+        throws MojoExecutionException
+    {
+        if ( !directory.exists() )
         {
-            getLog().debug( "Making working directory '" + workingDirectory.getAbsolutePath() + "'." );
-            if ( !workingDirectory.mkdirs() )
+            getLog().debug( "Making working directory '" + directory.getAbsolutePath() + "'." );
+            if ( !directory.mkdirs() )
             {
-                throw new MojoExecutionException( "Could not make working directory: '"
-                    + workingDirectory.getAbsolutePath() + "'" );
+                throw new MojoExecutionException( "Could not make working directory: '" + directory.getAbsolutePath()
+                    + "'" );
             }
         }
     }
@@ -476,9 +1609,10 @@ public class ExecMojo
         }
     }
 
-    private void handleArguments( List<String> commandArguments )
+    private void handleArguments( List<?> arguments, List<String> commandArguments )
         throws MojoExecutionException, IOException
     {
+        batch = null;
         for ( int i = 0; i < arguments.size(); i++ )
         {
             Object argument = arguments.get( i );
@@ -516,6 +1650,16 @@ public class ExecMojo
                 arg = computeClasspathString( specifiedClasspath );
                 commandArguments.add( arg );
             }
+            else if ( argument instanceof Batch )
+            {
+                if ( batch != null )
+                {
+                    throw new MojoExecutionException( "Misconfigured argument (" + ( i + 1 )
+                        + "), only one batch argument is allowed." );
+                }
+                batch = (Batch) argument;
+                batchPosition = commandArguments.size();
+            }
             else
             {
                 arg = argument.toString();
@@ -524,6 +1668,144 @@ public class ExecMojo
         }
     }
 
+    /**
+     * Split the values of the {@link #batch} found by {@link #handleArguments(List, List)} into command lines fitting
+     * the limit of the operating system.
+     *
+     * @param commandArguments the other arguments
+     * @return the arguments of each command line, the other arguments unchanged if there is no batch
+     */
+    private List<List<String>> splitBatch( String executable, List<String> commandArguments,
+                                           Map<String, String> enviro )
+        throws MojoExecutionException
+    {
+        if ( batch == null )
+        {
+            return Collections.singletonList( commandArguments );
+        }
+
+        List<String> values = batch.getArguments() != null ? batch.getArguments() : Collections.<String>emptyList();
+        long limit = batch.getMaxLength() > 0 ? batch.getMaxLength()
+                        : ArgumentBatcher.getCommandLineLimit() - ArgumentBatcher.HEADROOM;
+        long budget =
+            limit - ArgumentBatcher.size( executable ) - ArgumentBatcher.size( commandArguments )
+                - ArgumentBatcher.size( enviro );
+
+        List<List<String>> batches;
+        try
+        {
+            batches = ArgumentBatcher.split( values, budget, batch.getMaxArguments() );
+        }
+        catch ( IllegalArgumentException e )
+        {
+            throw new MojoExecutionException( e.getMessage(), e );
+        }
+        getLog().debug( "Split " + values.size() + " batch argument(s) of " + executable + " into " + batches.size()
+            + " command(s)" );
+
+        List<List<String>> result = new ArrayList<List<String>>( batches.size() );
+        for ( List<String> part : batches )
+        {
+            List<String> arguments = new ArrayList<String>( commandArguments.subList( 0, batchPosition ) );
+            arguments.addAll( part );
+            arguments.addAll( commandArguments.subList( batchPosition, commandArguments.size() ) );
+            result.add( arguments );
+        }
+        return result;
+    }
+
+    /**
+     * @return the executor of {@link #createOutputExecutor()}, also connecting the {@link #inputFile} if supported
+     */
+    private Executor createExecutor()
+    {
+        Executor exec = createOutputExecutor();
+        if ( inputFile != null && !worker )
+        {
+            if ( !RedirectingExecutor.isSupported() )
+            {
+                getLog().warn( "Redirecting the input requires Java 7, " + inputFile + " is copied to the program" );
+            }
+            else if ( exec instanceof RedirectingExecutor )
+            {
+                ( (RedirectingExecutor) exec ).setInputFile( inputFile );
+            }
+            else
+            {
+                exec = RedirectingExecutor.readingFrom( inputFile );
+            }
+        }
+        if ( exec instanceof RedirectingExecutor )
+        {
+            ( (RedirectingExecutor) exec ).setCloseInput( closeStdin );
+        }
+        return exec;
+    }
+
+    /**
+     * @return an executor redirecting the output to the {@link #outputFile} or inheriting the streams of Maven if
+     *         {@link #redirectOutput} or {@link #inheritIo} is set and supported, a default executor otherwise
+     */
+    private Executor createOutputExecutor()
+    {
+        if ( redirectOutput && outputFile != null && !worker && !teeOutput && capturer == null && !compressOutput
+            && outputFileMaxSize <= 0 )
+        {
+            if ( RedirectingExecutor.isSupported() )
+            {
+                return RedirectingExecutor.toFile( outputFile );
+            }
+            getLog().warn( "Redirecting the output requires Java 7, the output is copied to " + outputFile );
+        }
+        if ( inheritIo && outputFile == null && !worker && capturer == null )
+        {
+            if ( RedirectingExecutor.isSupported() )
+            {
+                return RedirectingExecutor.inheritIo();
+            }
+            getLog().warn( "Inheriting the standard streams requires Java 7, the output is copied to the console" );
+        }
+        return new DefaultExecutor();
+    }
+
+    /**
+     * Fail if the executable is a name which the operating system will not find on the PATH, before the process is
+     * launched. The PATH of the environment of the execution is searched, and the PATH of Maven as well if it differs,
+     * as the JVM searches that one to start a process on Unix. Nothing is checked on other systems and with a
+     * toolchain.
+     */
+    private void checkExecutable( String executable, File dir, Map<String, String> enviro )
+        throws MojoExecutionException
+    {
+        String path = enviro.get( "PATH" );
+        if ( !OS.isFamilyUnix() || path == null || executable.indexOf( '/' ) >= 0 || new File( executable ).isFile()
+            || getToolchain() != null )
+        {
+            return;
+        }
+        if ( findExecutable( executable, path, dir ) != null )
+        {
+            return;
+        }
+        Map<String, String> mavenEnviro = SessionContext.get( session, SystemEnvironment.class ).getVariables( getLog() );
+        String mavenPath = mavenEnviro.get( "PATH" );
+        if ( mavenPath == null || mavenPath.equals( path ) || findExecutable( executable, mavenPath, dir ) == null )
+        {
+            throw new MojoExecutionException( "The executable '" + executable + "' was not found on the PATH: "
+                + path );
+        }
+    }
+
+    /**
+     * Search the PATH, the lookups are cached for the session by {@link ExecutableResolver}.
+     *
+     * @return the absolute path of the executable, or <code>null</code> if it is not on the PATH
+     */
+    protected String findExecutable( String name, String path, File dir )
+    {
+        return SessionContext.get( session, ExecutableResolver.class ).resolve( name, path, dir );
+    }
+
     private void fillSuccessCodes( Executor exec )
     {
         if ( successCodes != null && successCodes.length > 0 )
@@ -532,7 +1814,142 @@ public class ExecMojo
         }
     }
 
+    /**
+     * Make sure the processes started by the executor are destroyed with all their descendants when Maven stops, and
+     * set up the {@link #timeout} if any.
+     *
+     * @param stats the statistics to sample while the process runs, <code>null</code> for none
+     * @return the watchdog, <code>null</code> if there is no timeout
+     */
+    private ProcessTreeWatchdog fillWatchdog( Executor exec, ProcessStats stats )
+    {
+        exec.setProcessDestroyer( new ProcessTreeDestroyer( timeoutGracePeriod, stats ) );
+        if ( timeout <= 0 )
+        {
+            return null;
+        }
+        ProcessTreeWatchdog watchdog = new ProcessTreeWatchdog( timeout, timeoutGracePeriod );
+        exec.setWatchdog( watchdog );
+        return watchdog;
+    }
+
+    /**
+     * @return the tools applying the {@link #resourceControls}, empty if there are none or they are not supported
+     * @throws MojoExecutionException if a control is invalid
+     */
+    private List<String> getLauncherPrefix()
+        throws MojoExecutionException
+    {
+        if ( resourceControls == null )
+        {
+            return Collections.emptyList();
+        }
+        List<String> prefix;
+        try
+        {
+            prefix = ResourceLauncher.getPrefix( resourceControls );
+        }
+        catch ( IllegalArgumentException e )
+        {
+            throw new MojoExecutionException( e.getMessage(), e );
+        }
+        if ( !prefix.isEmpty() && !ResourceLauncher.isSupported() )
+        {
+            getLog().warn( "The resource controls are only supported on Linux, they are ignored" );
+            return Collections.emptyList();
+        }
+        return prefix;
+    }
+
+    /**
+     * Wait for a permit of the {@link #concurrencyGroup} before starting a process.
+     *
+     * @return the semaphore to release the permit to, <code>null</code> if there is no concurrency group
+     */
+    private Semaphore acquirePermit()
+        throws InterruptedIOException
+    {
+        if ( concurrencyGroup == null )
+        {
+            return null;
+        }
+        try
+        {
+            return SessionContext.get( session, ExecutionLimiter.class ).acquire( concurrencyGroup,
+                                                                                  concurrencyPermits, getLog() );
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException( "Interrupted while waiting for a permit of the concurrency group '"
+                + concurrencyGroup + "'" );
+        }
+    }
+
+    private static void releasePermit( Semaphore permit )
+    {
+        if ( permit != null )
+        {
+            permit.release();
+        }
+    }
+
+    /**
+     * @return the statistics to sample for the command line, <code>null</code> if {@link #processStats} is disabled
+     *         or not supported
+     */
+    private ProcessStats createProcessStats( CommandLine commandLine )
+    {
+        if ( !processStats )
+        {
+            return null;
+        }
+        if ( !ProcessStats.isSupported() )
+        {
+            getLog().warn( "Process statistics require /proc, they are not available on this system" );
+            return null;
+        }
+        return new ProcessStats( processStatsInterval, commandLine.toString() );
+    }
+
+    private void reportProcessStats( ProcessStats stats )
+    {
+        if ( stats == null )
+        {
+            return;
+        }
+        getLog().info( stats.getReport() );
+        if ( processStatsFile != null )
+        {
+            try
+            {
+                stats.appendTo( processStatsFile );
+            }
+            catch ( IOException e )
+            {
+                getLog().warn( "Could not write the process statistics to " + processStatsFile + ": "
+                    + e.getMessage() );
+            }
+        }
+    }
+
+    private void checkTimeout( ProcessTreeWatchdog watchdog, CommandLine commandLine )
+        throws MojoExecutionException
+    {
+        if ( watchdog != null && watchdog.isTimedOut() )
+        {
+            String report = watchdog.getReport();
+            getLog().error( report );
+            throw new MojoExecutionException( appendTail( "Execution of " + commandLine + " timed out. " + report ) );
+        }
+    }
+
     boolean isResultCodeAFailure( int result )
+    {
+        return isResultCodeAFailure( successCodes, result );
+    }
+
+    private static boolean isResultCodeAFailure( int[] successCodes, int result )
     {
         if ( successCodes == null || successCodes.length == 0 )
         {
@@ -564,6 +1981,7 @@ public class ExecMojo
      */
     private String computeClasspathString( Classpath specifiedClasspath )
     {
+        classpathUsed = true;
         List<String> resultList = computeClasspath( specifiedClasspath );
         StringBuffer theClasspath = new StringBuffer();
 
@@ -586,11 +2004,16 @@ public class ExecMojo
      */
     private List<String> computeClasspath( Classpath specifiedClasspath )
     {
-        List<Artifact> artifacts = new ArrayList<Artifact>();
-        List<File> theClasspathFiles = new ArrayList<File>();
-        List<String> resultList = new ArrayList<String>();
+        if ( classpathArtifacts == null )
+        {
+            classpathArtifacts = new ArrayList<Artifact>();
+            classpathFiles = new ArrayList<File>();
+            collectProjectArtifactsAndClasspath( classpathArtifacts, classpathFiles );
+        }
 
-        collectProjectArtifactsAndClasspath( artifacts, theClasspathFiles );
+        List<Artifact> artifacts = classpathArtifacts;
+        List<File> theClasspathFiles = classpathFiles;
+        List<String> resultList = new ArrayList<String>();
 
         if ( ( specifiedClasspath != null ) && ( specifiedClasspath.getDependencies() != null ) )
         {
@@ -641,6 +2064,11 @@ public class ExecMojo
     private final String[] WINDOWS_SPECIAL_EXTS = new String[] { ".bat", ".cmd" };
 
     CommandLine getExecutablePath( Map<String, String> enviro, File dir )
+    {
+        return getExecutablePath( executable, enviro, dir );
+    }
+
+    CommandLine getExecutablePath( String executable, Map<String, String> enviro, File dir )
     {
         File execFile = new File( executable );
         String exec = null;
@@ -660,7 +2088,9 @@ public class ExecMojo
             if ( tc != null )
             {
                 getLog().info( "Toolchain in exec-maven-plugin: " + tc );
-                exec = tc.findTool( executable );
+                ToolchainCache cache = SessionContext.get( session, ToolchainCache.class );
+                exec = cache.findTool( tc, executable );
+                getLog().debug( cache.getStatistics() );
             }
             else
             {
@@ -724,23 +2154,76 @@ public class ExecMojo
         String path = enviro.get( "PATH" );
         if ( path != null )
         {
-            paths.addAll( Arrays.asList( StringUtils.split( path, File.pathSeparator ) ) );
+            paths.addAll( Arrays.asList( StringUtils.split( path, File.pathSeparator ) ) );
+        }
+
+        return paths;
+    }
+
+    //
+    // methods used for tests purposes - allow mocking and simulate automatic setters
+    //
+
+    protected int executeCommandLine( Executor exec, CommandLine commandLine, Map<String, String> enviro,
+                                      OutputStream out, OutputStream err )
+        throws ExecuteException, IOException
+    {
+        InputStream in = openProcessInput( exec, System.in );
+        try
+        {
+            return executeCommandLine( exec, commandLine, enviro, out, err, in );
+        }
+        finally
+        {
+            if ( in != System.in )
+            {
+                IOUtil.close( in );
+            }
+        }
+    }
+
+    /**
+     * @param defaultInput the input when neither the {@link #inputFile} nor {@link #closeStdin} are set
+     * @return the stream copied to the standard input of the program, <code>null</code> to close it or if the
+     *         executor connects it
+     */
+    private InputStream openProcessInput( Executor exec, InputStream defaultInput )
+        throws IOException
+    {
+        if ( exec instanceof RedirectingExecutor )
+        {
+            return null;
+        }
+        if ( inputFile != null && !worker )
+        {
+            return new FileInputStream( inputFile );
         }
-
-        return paths;
+        return closeStdin ? null : defaultInput;
     }
 
-    //
-    // methods used for tests purposes - allow mocking and simulate automatic setters
-    //
+    /**
+     * @return true if the output of the processes started by the executor is connected by the operating system
+     */
+    private static boolean isOutputRedirected( Executor exec )
+    {
+        return exec instanceof RedirectingExecutor && ( (RedirectingExecutor) exec ).isRedirectingOutput();
+    }
 
+    /**
+     * @param in the input for the process, <code>null</code> to close its standard input immediately
+     */
     protected int executeCommandLine( Executor exec, CommandLine commandLine, Map<String, String> enviro,
-                                      OutputStream out, OutputStream err )
+                                      OutputStream out, OutputStream err, InputStream in )
         throws ExecuteException, IOException
     {
+        if ( pollOutput )
+        {
+            return executePolled( exec, commandLine, enviro, out, err );
+        }
+
         BufferedOutputStream bosStdOut = new BufferedOutputStream( out );
         BufferedOutputStream bosStdErr = new BufferedOutputStream( err );
-        PumpStreamHandler psh = new PumpStreamHandler( bosStdOut, bosStdErr, System.in );
+        PumpStreamHandler psh = new PumpStreamHandler( bosStdOut, bosStdErr, in );
         exec.setStreamHandler( psh );
 
         int result;
@@ -760,8 +2243,22 @@ public class ExecMojo
                                       FileOutputStream outputFile )
         throws ExecuteException, IOException
     {
+        if ( pollOutput )
+        {
+            BufferedOutputStream bos = new BufferedOutputStream( outputFile );
+            try
+            {
+                return executePolled( exec, commandLine, enviro, bos, bos );
+            }
+            finally
+            {
+                bos.flush();
+            }
+        }
+
         BufferedOutputStream bos = new BufferedOutputStream( outputFile );
-        PumpStreamHandler psh = new PumpStreamHandler( bos );
+        InputStream in = openProcessInput( exec, null );
+        PumpStreamHandler psh = new PumpStreamHandler( bos, bos, in );
         exec.setStreamHandler( psh );
 
         int result;
@@ -773,10 +2270,176 @@ public class ExecMojo
         finally
         {
             psh.stop();
+            IOUtil.close( in );
         }
         return result;
     }
 
+    private boolean isOutputCompressed()
+        throws MojoExecutionException
+    {
+        if ( outputFile == null || "none".equals( outputCompression ) )
+        {
+            return false;
+        }
+        if ( "gzip".equals( outputCompression ) )
+        {
+            return true;
+        }
+        if ( outputCompression == null || "auto".equals( outputCompression ) )
+        {
+            return AsyncGzipOutputStream.isGzipFile( outputFile );
+        }
+        throw new MojoExecutionException( "Invalid outputCompression '" + outputCompression
+            + "', use gzip, none or auto." );
+    }
+
+    /**
+     * @return a stream writing the {@link #outputFile}, compressed if {@link #outputCompression} requires it and
+     *         rolled over at the {@link #outputFileMaxSize}
+     */
+    private OutputStream openOutputFile()
+        throws IOException
+    {
+        if ( outputFileMaxSize > 0 )
+        {
+            return new RollingOutputStream( outputFile, outputFileMaxSize * 1024 * 1024, outputFileSegments,
+                                            compressOutput );
+        }
+        if ( compressOutput )
+        {
+            return new AsyncGzipOutputStream( outputFile );
+        }
+        return new FileOutputStream( outputFile );
+    }
+
+    private OutputCapturer createCapturer()
+        throws MojoExecutionException
+    {
+        if ( captures == null || captures.isEmpty() )
+        {
+            return null;
+        }
+        try
+        {
+            return new OutputCapturer( captures );
+        }
+        catch ( IllegalArgumentException e )
+        {
+            throw new MojoExecutionException( e.getMessage(), e );
+        }
+    }
+
+    /**
+     * @return the stream applying the {@link #captures} to the output written to it and keeping its end for the
+     *         failure message, or the stream itself if there are no captures and no {@link #outputTailSize}
+     */
+    private OutputStream capture( OutputStream out )
+    {
+        OutputStream stream = tail != null ? tail.wrap( out ) : out;
+        return capturer != null ? capturer.wrap( stream ) : stream;
+    }
+
+    /**
+     * @return the message followed by the end of the output of the failed execution, see {@link #outputTailSize}
+     */
+    String appendTail( String message )
+    {
+        String text = tail != null ? tail.getText() : "";
+        if ( text.length() == 0 )
+        {
+            return message;
+        }
+        return message + "\nEnd of the output:\n" + text;
+    }
+
+    /**
+     * Set the values captured from the output of the finished process as project properties.
+     */
+    private void setCapturedProperties()
+    {
+        if ( capturer == null )
+        {
+            return;
+        }
+        for ( Map.Entry<String, String> value : capturer.finish().entrySet() )
+        {
+            getLog().debug( "Captured " + value.getKey() + " = " + value.getValue() );
+            if ( project != null )
+            {
+                project.getProperties().setProperty( value.getKey(), value.getValue() );
+            }
+        }
+    }
+
+    /**
+     * Execute copying the output with the session scoped {@link StreamPoller}, see {@link #pollOutput}.
+     */
+    private int executePolled( Executor exec, CommandLine commandLine, Map<String, String> enviro,
+                                    OutputStream out, OutputStream err )
+        throws ExecuteException, IOException
+    {
+        StreamPoller poller = SessionContext.get( session, StreamPoller.class );
+        exec.setStreamHandler( poller.createStreamHandler( out, err ) );
+        return exec.execute( commandLine, enviro );
+    }
+
+    /**
+     * Execute writing the output both to the {@link #outputFile} and to the console, see {@link #teeOutput}.
+     */
+    private int executeTee( Executor exec, CommandLine commandLine, List<String> commandArguments,
+                            Map<String, String> enviro )
+        throws ExecuteException, IOException
+    {
+        TeeOutput tee = new TeeOutput( outputFile, openOutputFile(), System.out, System.err );
+        try
+        {
+            if ( worker )
+            {
+                return executeInWorker( commandLine, commandArguments, enviro, capture( tee.getOut() ) );
+            }
+            return executeCommandLine( exec, commandLine, enviro, capture( tee.getOut() ), capture( tee.getErr() ) );
+        }
+        finally
+        {
+            tee.close();
+        }
+    }
+
+    /**
+     * Execute with an executor whose process streams are connected by the operating system, see
+     * {@link RedirectingExecutor}.
+     */
+    protected int executeRedirected( Executor exec, CommandLine commandLine, Map<String, String> enviro )
+        throws ExecuteException, IOException
+    {
+        return exec.execute( commandLine, enviro );
+    }
+
+    /**
+     * Send the arguments to the session scoped worker process started by the command line.
+     *
+     * @return the exit code answered by the worker
+     */
+    protected int executeInWorker( CommandLine commandLine, List<String> commandArguments,
+                                   Map<String, String> enviro, OutputStream out )
+        throws IOException
+    {
+        WorkerPool pool = SessionContext.get( session, WorkerPool.class );
+        return pool.execute( Arrays.asList( commandLine.toStrings() ), workingDirectory, enviro, commandArguments,
+                             workerIdleTimeout, timeout, timeoutGracePeriod, out, getLog() );
+    }
+
+    MavenSession getSession()
+    {
+        return session;
+    }
+
+    long getTimeoutGracePeriod()
+    {
+        return timeoutGracePeriod;
+    }
+
     void setExecutable( String executable )
     {
         this.executable = executable;
@@ -831,28 +2494,173 @@ public class ExecMojo
         return successCodes;
     }
 
-    private Toolchain getToolchain()
+    void setCommands( List<Command> commands )
     {
-        Toolchain tc = null;
+        this.commands = commands;
+    }
 
-        try
-        {
-            if ( session != null ) // session is null in tests..
-            {
-                ToolchainManager toolchainManager =
-                    (ToolchainManager) session.getContainer().lookup( ToolchainManager.ROLE );
+    void setPipeline( List<Command> pipeline )
+    {
+        this.pipeline = pipeline;
+    }
 
-                if ( toolchainManager != null )
-                {
-                    tc = toolchainManager.getToolchainFromBuildContext( "jdk", session );
-                }
-            }
-        }
-        catch ( ComponentLookupException componentLookupException )
+    void setCommandThreads( int commandThreads )
+    {
+        this.commandThreads = commandThreads;
+    }
+
+    void setConcurrencyGroup( String concurrencyGroup )
+    {
+        this.concurrencyGroup = concurrencyGroup;
+    }
+
+    void setConcurrencyPermits( int concurrencyPermits )
+    {
+        this.concurrencyPermits = concurrencyPermits;
+    }
+
+    void setResourceControls( ResourceControls resourceControls )
+    {
+        this.resourceControls = resourceControls;
+    }
+
+    void setFileset( FileSet fileset )
+    {
+        this.fileset = fileset;
+    }
+
+    void setFilesetTarget( String filesetTarget )
+    {
+        this.filesetTarget = filesetTarget;
+    }
+
+    void setWorker( boolean worker )
+    {
+        this.worker = worker;
+    }
+
+    void setWorkerArguments( List<String> workerArguments )
+    {
+        this.workerArguments = workerArguments;
+    }
+
+    void setWorkerIdleTimeout( long workerIdleTimeout )
+    {
+        this.workerIdleTimeout = workerIdleTimeout;
+    }
+
+    void setTimeout( long timeout )
+    {
+        this.timeout = timeout;
+    }
+
+    void setTimeoutGracePeriod( long timeoutGracePeriod )
+    {
+        this.timeoutGracePeriod = timeoutGracePeriod;
+    }
+
+    void setRedirectOutput( boolean redirectOutput )
+    {
+        this.redirectOutput = redirectOutput;
+    }
+
+    void setInputFile( File inputFile )
+    {
+        this.inputFile = inputFile;
+    }
+
+    void setCloseStdin( boolean closeStdin )
+    {
+        this.closeStdin = closeStdin;
+    }
+
+    void setInheritIo( boolean inheritIo )
+    {
+        this.inheritIo = inheritIo;
+    }
+
+    void setTeeOutput( boolean teeOutput )
+    {
+        this.teeOutput = teeOutput;
+    }
+
+    void setPollOutput( boolean pollOutput )
+    {
+        this.pollOutput = pollOutput;
+    }
+
+    void setCaptures( List<Capture> captures )
+    {
+        this.captures = captures;
+    }
+
+    void setOutputCompression( String outputCompression )
+    {
+        this.outputCompression = outputCompression;
+    }
+
+    void setOutputFileMaxSize( long outputFileMaxSize )
+    {
+        this.outputFileMaxSize = outputFileMaxSize;
+    }
+
+    void setOutputFileSegments( int outputFileSegments )
+    {
+        this.outputFileSegments = outputFileSegments;
+    }
+
+    void setOutputTailSize( int outputTailSize )
+    {
+        this.outputTailSize = outputTailSize;
+    }
+
+    void setProcessStats( boolean processStats )
+    {
+        this.processStats = processStats;
+    }
+
+    void setProcessStatsInterval( long processStatsInterval )
+    {
+        this.processStatsInterval = processStatsInterval;
+    }
+
+    void setEnvironmentVariables( Map<String, String> environmentVariables )
+    {
+        this.environmentVariables = environmentVariables;
+    }
+
+    void setEnvironmentScript( File environmentScript )
+    {
+        this.environmentScript = environmentScript;
+    }
+
+    void setEnvironmentScriptInputs( List<File> environmentScriptInputs )
+    {
+        this.environmentScriptInputs = environmentScriptInputs;
+    }
+
+    void setEnvironmentScriptCacheDirectory( File environmentScriptCacheDirectory )
+    {
+        this.environmentScriptCacheDirectory = environmentScriptCacheDirectory;
+    }
+
+    void setProcessStatsFile( File processStatsFile )
+    {
+        this.processStatsFile = processStatsFile;
+    }
+
+    void setOutputFile( File outputFile )
+    {
+        this.outputFile = outputFile;
+    }
+
+    private Toolchain getToolchain()
+    {
+        if ( session == null ) // session is null in tests..
         {
-            // just ignore, could happen in pre-2.0.9 builds..
+            return null;
         }
-        return tc;
+        return SessionContext.get( session, ToolchainCache.class ).getToolchain( session );
     }
 
     /**
@@ -866,6 +2674,7 @@ public class ExecMojo
     private File createJar( List<String> classPath, String mainClass )
         throws IOException
     {
+        classpathUsed = true;
         File file = File.createTempFile( "maven-exec", ".jar" );
         file.deleteOnExit();
         FileOutputStream fos = new FileOutputStream( file );
@@ -895,6 +2704,63 @@ public class ExecMojo
         return file;
     }
 
+    /**
+     * @param enviro the environment of Maven and the {@link #environmentVariables}
+     * @return the variables added or changed by the {@link #environmentScript}, from the cache if neither the script,
+     *         its {@link #environmentScriptInputs} nor the environment changed since it ran
+     */
+    private Map<String, String> getScriptEnvironment( EnvironmentOverlay enviro )
+        throws MojoExecutionException
+    {
+        EnvironmentScriptCache cache = SessionContext.get( session, EnvironmentScriptCache.class );
+        try
+        {
+            StringBuilder key = new StringBuilder( FingerprintStore.hash( environmentScript ) );
+            if ( environmentScriptInputs != null )
+            {
+                for ( File input : environmentScriptInputs )
+                {
+                    key.append( '\n' ).append( input.getAbsolutePath() ).append( '=' );
+                    key.append( input.isFile() ? FingerprintStore.hash( input ) : "missing" );
+                }
+            }
+            key.append( '\n' ).append( describeEnvironment( enviro ) );
+            String hash = FingerprintStore.hash( key.toString() );
+
+            Map<String, String> envs = cache.get( hash, enviro, environmentScriptCacheDirectory );
+            if ( envs != null )
+            {
+                getLog().debug( "Environment of " + environmentScript + " taken from the cache" );
+                return envs;
+            }
+            envs = createEnvs( environmentScript );
+            if ( envs == null )
+            {
+                return null;
+            }
+            Map<String, String> changed = new HashMap<String, String>();
+            Map<String, String> inherited = new HashMap<String, String>();
+            for ( Map.Entry<String, String> variable : envs.entrySet() )
+            {
+                String value = enviro.get( variable.getKey() );
+                if ( !variable.getValue().equals( value ) )
+                {
+                    changed.put( variable.getKey(), variable.getValue() );
+                    if ( value != null )
+                    {
+                        inherited.put( variable.getKey(), value );
+                    }
+                }
+            }
+            cache.put( hash, changed, inherited, environmentScriptCacheDirectory );
+            return changed;
+        }
+        catch ( IOException e )
+        {
+            throw new MojoExecutionException( "Could not cache the environment of " + environmentScript, e );
+        }
+    }
+
     protected Map<String, String> createEnvs( File envScriptFile )
         throws MojoExecutionException
     {
@@ -905,34 +2771,30 @@ public class ExecMojo
         {
             tmpEnvExecFile = this.createEnvWrapperFile( envScriptFile );
 
-            Commandline cl = new Commandline();// commons-exec instead?
-            cl.setExecutable( tmpEnvExecFile.getAbsolutePath() );
+            CommandLine cl = new CommandLine( tmpEnvExecFile.getAbsolutePath() );
             if ( !OS.isFamilyWindows() )
             {
-                cl.setExecutable( "sh" );
-                cl.createArg().setFile( tmpEnvExecFile );
+                cl = new CommandLine( "sh" );
+                cl.addArgument( tmpEnvExecFile.getAbsolutePath(), false );
             }
 
             // pickup the initial env vars so that the env script can used if necessary
+            EnvironmentOverlay enviro =
+                new EnvironmentOverlay( SessionContext.get( session, SystemEnvironment.class ).getVariables( getLog() ) );
             if ( environmentVariables != null )
             {
-                for ( Map.Entry<String, String> item : environmentVariables.entrySet() )
-                {
-                    cl.addEnvironment( item.getKey(), item.getValue() );
-                }
+                enviro.putAll( environmentVariables );
             }
 
             EnvStreamConsumer stdout = new EnvStreamConsumer();
-            StreamConsumer stderr = new DefaultConsumer();
-
-            CommandLineUtils.executeCommandLine( cl, stdout, stderr );
+            Executor exec = new DefaultExecutor();
+            exec.setExitValues( null );
+            exec.setStreamHandler( new PumpStreamHandler( stdout, System.err, null ) );
+            exec.execute( cl, enviro );
+            stdout.close();
 
             results = stdout.getParsedEnv();
         }
-        catch ( CommandLineException e )
-        {
-            throw new MojoExecutionException( e.getMessage() );
-        }
         catch ( IOException e )
         {
             throw new MojoExecutionException( e.getMessage() );
@@ -974,8 +2836,15 @@ public class ExecMojo
                 writer = new PrintWriter( tmpFile );
                 writer.append( "#! /bin/sh" ).println();
                 writer.append( ". " ).append( envScript.getCanonicalPath() ).println(); // works on all unix??
-                writer.append( "echo " + EnvStreamConsumer.START_PARSING_INDICATOR ).println();
-                writer.append( "env" ).println();
+                // NUL terminated variables keep line breaks in values, if env supports it
+                writer.append( "if env -0 > /dev/null 2>&1" ).println();
+                writer.append( "then" ).println();
+                writer.append( "  echo " + EnvStreamConsumer.NUL_PARSING_INDICATOR ).println();
+                writer.append( "  env -0" ).println();
+                writer.append( "else" ).println();
+                writer.append( "  echo " + EnvStreamConsumer.START_PARSING_INDICATOR ).println();
+                writer.append( "  env" ).println();
+                writer.append( "fi" ).println();
                 writer.flush();
             }
         }
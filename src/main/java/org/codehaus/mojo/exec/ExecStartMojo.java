@@ -0,0 +1,196 @@
+package org.codehaus.mojo.exec;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.util.List;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.plugins.annotations.ResolutionScope;
+
+/**
+ * Starts an external program in the background and returns once it is ready, e.g. a server needed by the integration
+ * tests. The program keeps running until {@link ExecStopMojo} stops it or Maven exits, its whole process tree is
+ * destroyed in both cases. It is configured like {@link ExecMojo}, except that it runs a single
+ * <code>executable</code>, without commands, pipeline, worker, fileset or batch, without timeout, input or captures,
+ * and without caching. The build fails if such a parameter is configured.
+ *
+ * @since 1.4.0
+ */
+@Mojo( name = "start", threadSafe = true, requiresDependencyResolution = ResolutionScope.TEST )
+public class ExecStartMojo
+    extends ExecMojo
+{
+    private static final long POLL_INTERVAL = 100;
+
+    /**
+     * The number of milliseconds to wait for the program to exit after the grace period of destroying it.
+     */
+    private static final long STOP_MARGIN = 1000;
+
+    /**
+     * The id of the program, to stop it with the <code>stop</code> goal using the same id.
+     *
+     * @since 1.4.0
+     */
+    @Parameter( property = "exec.id", defaultValue = "default" )
+    private String id;
+
+    /**
+     * A regular expression a line of the standard or error output must contain before the program is ready.
+     *
+     * @since 1.4.0
+     */
+    @Parameter( property = "exec.readyPattern" )
+    private String readyPattern;
+
+    /**
+     * A local TCP port which must accept connections before the program is ready. 0 means no port.
+     *
+     * @since 1.4.0
+     */
+    @Parameter( property = "exec.readyPort", defaultValue = "0" )
+    private int readyPort;
+
+    /**
+     * The host of the {@link #readyPort}.
+     *
+     * @since 1.4.0
+     */
+    @Parameter( property = "exec.readyHost", defaultValue = "localhost" )
+    private String readyHost;
+
+    /**
+     * A file which must exist before the program is ready. Delete it before, if a previous run may have left it.
+     *
+     * @since 1.4.0
+     */
+    @Parameter( property = "exec.readyFile" )
+    private File readyFile;
+
+    /**
+     * The number of milliseconds to wait for the program to be ready. If it is not ready in time, its process tree is
+     * destroyed and the build fails.
+     *
+     * @since 1.4.0
+     */
+    @Parameter( property = "exec.readyTimeout", defaultValue = "60000" )
+    private long readyTimeout;
+
+    public void execute()
+        throws MojoExecutionException
+    {
+        if ( isSkip() )
+        {
+            getLog().info( "skipping execute as per configuraion" );
+            return;
+        }
+
+        List<String> unsupported = getParametersUnsupportedInBackground();
+        if ( !unsupported.isEmpty() )
+        {
+            throw new MojoExecutionException( "The start goal does not support the parameters " + unsupported );
+        }
+
+        BackgroundProcesses processes = SessionContext.get( getSession(), BackgroundProcesses.class );
+        if ( processes.getRunning( id ) != null )
+        {
+            throw new MojoExecutionException( "A program with the id '" + id + "' is already running" );
+        }
+
+        ReadinessProbe probe = new ReadinessProbe( readyPattern, readyHost, readyPort, readyFile );
+        BackgroundProcess process = startInBackground( probe );
+        processes.put( id, process );
+        getLog().info( "Started '" + id + "': " + process.getCommandLine() );
+        if ( probe.isEmpty() )
+        {
+            return;
+        }
+
+        long start = System.currentTimeMillis();
+        try
+        {
+            while ( !probe.isReady() )
+            {
+                if ( process.hasExited() )
+                {
+                    processes.remove( id );
+                    throw new MojoExecutionException( appendTail( "The program '" + id + "' exited with "
+                        + process.getExitDescription() + " before it was ready" ) );
+                }
+                if ( System.currentTimeMillis() - start > readyTimeout )
+                {
+                    processes.remove( id );
+                    process.stop( getTimeoutGracePeriod() + STOP_MARGIN );
+                    throw new MojoExecutionException( appendTail( "The program '" + id + "' was not ready within "
+                        + readyTimeout + " ms, waiting for " + probe.describe() ) );
+                }
+                Thread.sleep( POLL_INTERVAL );
+            }
+        }
+        catch ( InterruptedException e )
+        {
+            processes.remove( id );
+            try
+            {
+                process.stop( getTimeoutGracePeriod() + STOP_MARGIN );
+            }
+            catch ( InterruptedException again )
+            {
+                // the process tree was destroyed already, only the wait for the exit was interrupted
+            }
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException( "Interrupted while waiting for the program '" + id + "'", e );
+        }
+        getLog().info( "'" + id + "' is ready after " + ( System.currentTimeMillis() - start ) + " ms" );
+    }
+
+    void setId( String id )
+    {
+        this.id = id;
+    }
+
+    void setReadyPattern( String readyPattern )
+    {
+        this.readyPattern = readyPattern;
+    }
+
+    void setReadyPort( int readyPort )
+    {
+        this.readyPort = readyPort;
+    }
+
+    void setReadyHost( String readyHost )
+    {
+        this.readyHost = readyHost;
+    }
+
+    void setReadyFile( File readyFile )
+    {
+        this.readyFile = readyFile;
+    }
+
+    void setReadyTimeout( long readyTimeout )
+    {
+        this.readyTimeout = readyTimeout;
+    }
+}
@@ -0,0 +1,115 @@
+package org.codehaus.mojo.exec;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.Component;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+
+/**
+ * Stops a program started by {@link ExecStartMojo} in the same Maven session, together with all processes it started.
+ *
+ * @since 1.4.0
+ */
+@Mojo( name = "stop", threadSafe = true )
+public class ExecStopMojo
+    extends AbstractMojo
+{
+    /**
+     * The id of the program given to the <code>start</code> goal.
+     *
+     * @since 1.4.0
+     */
+    @Parameter( property = "exec.id", defaultValue = "default" )
+    private String id;
+
+    /**
+     * The number of milliseconds to wait for the program to exit once its process tree was destroyed. The build fails
+     * if it did not exit in time.
+     *
+     * @since 1.4.0
+     */
+    @Parameter( property = "exec.stopTimeout", defaultValue = "10000" )
+    private long stopTimeout = 10000;
+
+    /**
+     * Skip the execution.
+     *
+     * @since 1.4.0
+     */
+    @Parameter( property = "skip", defaultValue = "false" )
+    private boolean skip;
+
+    /**
+     * The current build session instance.
+     */
+    @Component
+    private MavenSession session;
+
+    public void execute()
+        throws MojoExecutionException
+    {
+        if ( skip )
+        {
+            getLog().info( "skipping execute as per configuraion" );
+            return;
+        }
+
+        BackgroundProcess process = SessionContext.get( session, BackgroundProcesses.class ).remove( id );
+        if ( process == null )
+        {
+            getLog().warn( "No program with the id '" + id + "' was started" );
+            return;
+        }
+        if ( process.hasExited() )
+        {
+            getLog().info( "'" + id + "' already exited with " + process.getExitDescription() );
+            return;
+        }
+
+        try
+        {
+            process.stop( stopTimeout );
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException( "Interrupted while stopping the program '" + id + "'", e );
+        }
+        if ( !process.hasExited() )
+        {
+            throw new MojoExecutionException( "The program '" + id + "' did not stop" );
+        }
+        getLog().info( "Stopped '" + id + "'" );
+    }
+
+    void setId( String id )
+    {
+        this.id = id;
+    }
+
+    void setStopTimeout( long stopTimeout )
+    {
+        this.stopTimeout = stopTimeout;
+    }
+}
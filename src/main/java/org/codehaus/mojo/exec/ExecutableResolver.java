@@ -0,0 +1,108 @@
+package org.codehaus.mojo.exec;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Session scoped cache of the executables found on the PATH, so that a missing executable fails the build before the
+ * execution is prepared, and many executions of the same executable search the PATH only once.
+ * <p>
+ * The search mirrors the one of the JVM when it starts a process on Unix: the directories of the PATH are searched in
+ * order for a regular file the user may execute, an empty or relative directory is relative to the working directory
+ * of the process. The results are keyed by the executable, the PATH and the working directory.
+ * </p>
+ */
+class ExecutableResolver
+{
+    private static final String NOT_FOUND = "";
+
+    private static final Method CAN_EXECUTE = findCanExecute();
+
+    private final Map<String, String> resolved = new HashMap<String, String>();
+
+    private static Method findCanExecute()
+    {
+        try
+        {
+            return File.class.getMethod( "canExecute" );
+        }
+        catch ( NoSuchMethodException e )
+        {
+            // Java 5, only regular files are checked
+            return null;
+        }
+    }
+
+    /**
+     * @param name the name of the executable, without directory
+     * @param path the PATH
+     * @param dir the working directory of the process
+     * @return the absolute path of the executable, or <code>null</code> if it is not on the PATH
+     */
+    synchronized String resolve( String name, String path, File dir )
+    {
+        String key = name + '\0' + path + '\0' + dir;
+        String file = resolved.get( key );
+        if ( file == null )
+        {
+            file = search( name, path, dir );
+            resolved.put( key, file != null ? file : NOT_FOUND );
+        }
+        return file != null && file.length() > 0 ? file : null;
+    }
+
+    private static String search( String name, String path, File dir )
+    {
+        for ( String directory : path.split( File.pathSeparator, -1 ) )
+        {
+            File parent = new File( directory.length() > 0 ? directory : "." );
+            if ( !parent.isAbsolute() )
+            {
+                parent = new File( dir, parent.getPath() );
+            }
+            File candidate = new File( parent, name );
+            if ( isExecutable( candidate ) )
+            {
+                return candidate.getAbsolutePath();
+            }
+        }
+        return null;
+    }
+
+    private static boolean isExecutable( File file )
+    {
+        if ( !file.isFile() )
+        {
+            return false;
+        }
+        try
+        {
+            return CAN_EXECUTE == null || ( (Boolean) CAN_EXECUTE.invoke( file ) ).booleanValue();
+        }
+        catch ( Exception e )
+        {
+            return true;
+        }
+    }
+}
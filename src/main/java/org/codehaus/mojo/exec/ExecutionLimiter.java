@@ -0,0 +1,81 @@
+package org.codehaus.mojo.exec;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Limits the number of processes started at the same time by all executions sharing a concurrency group, see
+ * {@link ExecMojo#concurrencyGroup}. It is session scoped, so it applies to all modules of a parallel build. The
+ * permits are granted in the order they were requested.
+ */
+class ExecutionLimiter
+{
+    private final Map<String, Semaphore> semaphores = new HashMap<String, Semaphore>();
+
+    private final Map<String, Integer> permits = new HashMap<String, Integer>();
+
+    /**
+     * Wait for a permit of the group.
+     *
+     * @param group the name of the concurrency group
+     * @param count the number of permits of the group, the first execution using the group defines it
+     * @param log the log receiving the waiting time
+     * @return the semaphore to release the permit to
+     * @throws InterruptedException if interrupted while waiting
+     */
+    Semaphore acquire( String group, int count, Log log )
+        throws InterruptedException
+    {
+        Semaphore semaphore;
+        synchronized ( this )
+        {
+            semaphore = semaphores.get( group );
+            if ( semaphore == null )
+            {
+                semaphore = new Semaphore( Math.max( 1, count ), true );
+                semaphores.put( group, semaphore );
+                permits.put( group, Integer.valueOf( count ) );
+            }
+            else if ( permits.get( group ).intValue() != count )
+            {
+                log.warn( "The concurrency group '" + group + "' already has " + permits.get( group )
+                    + " permit(s), ignoring " + count );
+            }
+        }
+
+        // unlike tryAcquire(), a timed tryAcquire does not overtake the waiting executions
+        if ( semaphore.tryAcquire( 0, TimeUnit.MILLISECONDS ) )
+        {
+            log.debug( "Acquired a permit of the concurrency group '" + group + "'" );
+            return semaphore;
+        }
+        long start = System.currentTimeMillis();
+        semaphore.acquire();
+        log.info( "Waited " + ( System.currentTimeMillis() - start ) + " ms for a permit of the concurrency group '"
+            + group + "'" );
+        return semaphore;
+    }
+}
@@ -0,0 +1,371 @@
+package org.codehaus.mojo.exec;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.codehaus.plexus.util.IOUtil;
+
+/**
+ * Stores the fingerprints of the inputs and outputs of an execution, so it can be skipped when neither the inputs,
+ * the outputs nor the execution itself changed since the last successful run.
+ * <p>
+ * A file fingerprint is its size, its modification time and the SHA-1 of its content. The content is only read when
+ * the size or the modification time differ from the stored ones, and the files which must be read are hashed in
+ * parallel.
+ * </p>
+ */
+class FingerprintStore
+{
+    private static final String KEY = "key";
+
+    private static final String INPUT_PREFIX = "input.";
+
+    private static final String OUTPUT_PREFIX = "output.";
+
+    private final File storeFile;
+
+    private Properties current;
+
+    /**
+     * @param storeFile the file holding the fingerprints of one execution
+     */
+    FingerprintStore( File storeFile )
+    {
+        this.storeFile = storeFile;
+    }
+
+    /**
+     * Check whether the execution is up to date. The fingerprints computed by this check are remembered and reused by
+     * {@link #record(List)}.
+     *
+     * @param key describes the execution itself, e.g. the command line and the environment
+     * @param inputs the input files
+     * @param outputs the output files
+     * @return true if the key and all inputs and outputs are unchanged since the last {@link #record(List)}
+     * @throws IOException if a file could not be read
+     */
+    boolean isUpToDate( String key, List<File> inputs, List<File> outputs )
+        throws IOException
+    {
+        Properties previous = load();
+
+        current = new Properties();
+        current.setProperty( KEY, hash( key ) );
+        fingerprint( inputs, INPUT_PREFIX, previous, current );
+
+        if ( previous == null || !current.getProperty( KEY ).equals( previous.getProperty( KEY ) ) )
+        {
+            return false;
+        }
+
+        fingerprint( outputs, OUTPUT_PREFIX, previous, current );
+        if ( !sameHashes( previous, current ) )
+        {
+            return false;
+        }
+
+        if ( !previous.equals( current ) )
+        {
+            // only modification times changed, remember them to avoid hashing again
+            save( current );
+        }
+        return true;
+    }
+
+    /**
+     * Record the fingerprints after a successful execution. The input fingerprints were computed by
+     * {@link #isUpToDate(String, List, List)} before the execution, so changes made to the inputs during the execution
+     * are detected by the next build.
+     *
+     * @param outputs the output files
+     * @throws IOException if a file could not be read or the store could not be written
+     */
+    void record( List<File> outputs )
+        throws IOException
+    {
+        Properties fingerprints = new Properties();
+        for ( Enumeration<?> names = current.propertyNames(); names.hasMoreElements(); )
+        {
+            String name = (String) names.nextElement();
+            if ( !name.startsWith( OUTPUT_PREFIX ) )
+            {
+                fingerprints.setProperty( name, current.getProperty( name ) );
+            }
+        }
+        fingerprint( outputs, OUTPUT_PREFIX, load(), fingerprints );
+        save( fingerprints );
+    }
+
+    /**
+     * Compare everything except the modification times.
+     */
+    private static boolean sameHashes( Properties previous, Properties current )
+    {
+        if ( previous.size() != current.size() )
+        {
+            return false;
+        }
+        for ( Enumeration<?> names = current.propertyNames(); names.hasMoreElements(); )
+        {
+            String name = (String) names.nextElement();
+            String before = previous.getProperty( name );
+            if ( before == null )
+            {
+                return false;
+            }
+            if ( !name.equals( KEY ) )
+            {
+                before = withoutTimestamp( before );
+            }
+            String after = current.getProperty( name );
+            if ( !name.equals( KEY ) )
+            {
+                after = withoutTimestamp( after );
+            }
+            if ( !before.equals( after ) )
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String withoutTimestamp( String fingerprint )
+    {
+        String[] parts = fingerprint.split( "," );
+        return parts.length == 3 ? parts[0] + "," + parts[2] : fingerprint;
+    }
+
+    /**
+     * Compute the fingerprints of the files, reusing the hash of the previous fingerprint when the size and the
+     * modification time of a file did not change.
+     */
+    private static void fingerprint( List<File> files, String prefix, Properties previous, Properties result )
+        throws IOException
+    {
+        List<File> toHash = new ArrayList<File>();
+        for ( File file : files )
+        {
+            String name = prefix + file.getAbsolutePath();
+            String sizeAndTime = file.length() + "," + file.lastModified();
+            String before = previous != null ? previous.getProperty( name ) : null;
+            if ( before != null && before.startsWith( sizeAndTime + "," ) )
+            {
+                result.setProperty( name, before );
+            }
+            else
+            {
+                toHash.add( file );
+            }
+        }
+
+        if ( toHash.isEmpty() )
+        {
+            return;
+        }
+
+        List<String> hashes = hashFiles( toHash );
+        for ( int i = 0; i < toHash.size(); i++ )
+        {
+            File file = toHash.get( i );
+            result.setProperty( prefix + file.getAbsolutePath(), file.length() + "," + file.lastModified() + ","
+                + hashes.get( i ) );
+        }
+    }
+
+    /**
+     * Hash the content of the files, in parallel if there are several.
+     *
+     * @return the hashes, in the order of the files
+     */
+    static List<String> hashFiles( List<File> files )
+        throws IOException
+    {
+        List<String> hashes = new ArrayList<String>( files.size() );
+        if ( files.size() <= 1 )
+        {
+            for ( File file : files )
+            {
+                hashes.add( hash( file ) );
+            }
+            return hashes;
+        }
+
+        int threads = Math.min( files.size(), Runtime.getRuntime().availableProcessors() );
+        ExecutorService pool = Executors.newFixedThreadPool( threads );
+        try
+        {
+            List<Future<String>> futures = new ArrayList<Future<String>>( files.size() );
+            for ( final File file : files )
+            {
+                futures.add( pool.submit( new Callable<String>()
+                {
+                    public String call()
+                        throws IOException
+                    {
+                        return hash( file );
+                    }
+                } ) );
+            }
+            for ( Future<String> future : futures )
+            {
+                hashes.add( future.get() );
+            }
+            return hashes;
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new IOException( "Interrupted while hashing files" );
+        }
+        catch ( ExecutionException e )
+        {
+            if ( e.getCause() instanceof IOException )
+            {
+                throw (IOException) e.getCause();
+            }
+            throw new IllegalStateException( e.getCause() );
+        }
+        finally
+        {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * @return the hex encoded SHA-1 of the content of the file
+     */
+    static String hash( File file )
+        throws IOException
+    {
+        MessageDigest digest = createDigest();
+        InputStream in = null;
+        try
+        {
+            in = new FileInputStream( file );
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ( ( read = in.read( buffer ) ) != -1 )
+            {
+                digest.update( buffer, 0, read );
+            }
+        }
+        finally
+        {
+            IOUtil.close( in );
+        }
+        return toHex( digest.digest() );
+    }
+
+    /**
+     * @return the hex encoded SHA-1 of the UTF-8 bytes of the text
+     */
+    static String hash( String text )
+    {
+        MessageDigest digest = createDigest();
+        try
+        {
+            return toHex( digest.digest( text.getBytes( "UTF-8" ) ) );
+        }
+        catch ( IOException e )
+        {
+            throw new IllegalStateException( "UTF-8 is not supported" );
+        }
+    }
+
+    private static MessageDigest createDigest()
+    {
+        try
+        {
+            return MessageDigest.getInstance( "SHA-1" );
+        }
+        catch ( NoSuchAlgorithmException e )
+        {
+            throw new IllegalStateException( "SHA-1 is not supported" );
+        }
+    }
+
+    private static String toHex( byte[] bytes )
+    {
+        StringBuilder hex = new StringBuilder( bytes.length * 2 );
+        for ( byte b : bytes )
+        {
+            hex.append( Character.forDigit( ( b >> 4 ) & 0xf, 16 ) ).append( Character.forDigit( b & 0xf, 16 ) );
+        }
+        return hex.toString();
+    }
+
+    private Properties load()
+        throws IOException
+    {
+        if ( !storeFile.isFile() )
+        {
+            return null;
+        }
+        Properties properties = new Properties();
+        InputStream in = null;
+        try
+        {
+            in = new FileInputStream( storeFile );
+            properties.load( in );
+        }
+        finally
+        {
+            IOUtil.close( in );
+        }
+        return properties;
+    }
+
+    private void save( Properties properties )
+        throws IOException
+    {
+        if ( !storeFile.getParentFile().isDirectory() && !storeFile.getParentFile().mkdirs() )
+        {
+            throw new IOException( "Could not create directory " + storeFile.getParentFile() );
+        }
+        OutputStream out = null;
+        try
+        {
+            out = new FileOutputStream( storeFile );
+            properties.store( out, "exec-maven-plugin fingerprints" );
+        }
+        finally
+        {
+            IOUtil.close( out );
+        }
+    }
+}
@@ -0,0 +1,438 @@
+package org.codehaus.mojo.exec;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileLock;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+import org.apache.maven.plugin.logging.Log;
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.IOUtil;
+
+/**
+ * A local, content-addressed cache for the outputs of executions, shared by all builds using the same directory.
+ * <p>
+ * The file contents are stored once in <code>objects/</code>, named by their SHA-1. For every execution key an entry in
+ * <code>entries/</code> maps the output paths to the hashes of their content. Files are written to a temporary name
+ * and renamed, so concurrent builds never see partial files. Restoring does not lock: if an object disappeared because
+ * it was evicted in the meantime, the restore is a cache miss. Only the eviction, which removes the least recently used
+ * entries once the cache exceeds its maximum size, is serialized by a file lock.
+ * </p>
+ */
+class OutputCache
+{
+    /**
+     * Objects which are not referenced by any entry are only removed when they are older than this, because a
+     * concurrent build may be about to write the entry referencing them.
+     */
+    private static final long ORPHAN_AGE = 10 * 60 * 1000L;
+
+    private static final Object EVICTION_LOCK = new Object();
+
+    private final File objects;
+
+    private final File entries;
+
+    private final File lockFile;
+
+    private final long maxSize;
+
+    private final Log log;
+
+    /**
+     * @param directory the root of the cache
+     * @param maxSize the size in bytes above which least recently used entries are evicted
+     * @param log the log
+     */
+    OutputCache( File directory, long maxSize, Log log )
+    {
+        this.objects = new File( directory, "objects" );
+        this.entries = new File( directory, "entries" );
+        this.lockFile = new File( directory, "eviction.lock" );
+        this.maxSize = maxSize;
+        this.log = log;
+    }
+
+    /**
+     * Restore the outputs stored for the key.
+     *
+     * @param key the hash of everything which determines the outputs
+     * @param outputDirectories the directories of the output filesets, in declaration order
+     * @return true if the outputs were restored
+     * @throws IOException if the outputs could not be written
+     */
+    boolean restore( String key, List<File> outputDirectories )
+        throws IOException
+    {
+        File entryFile = new File( entries, key + ".properties" );
+        Properties entry = load( entryFile );
+        if ( entry == null )
+        {
+            return false;
+        }
+
+        for ( Enumeration<?> names = entry.propertyNames(); names.hasMoreElements(); )
+        {
+            String name = (String) names.nextElement();
+            if ( !getObject( entry.getProperty( name ) ).isFile() )
+            {
+                log.debug( "Cache entry " + key + " is incomplete, an object was evicted" );
+                return false;
+            }
+        }
+
+        for ( Enumeration<?> names = entry.propertyNames(); names.hasMoreElements(); )
+        {
+            String name = (String) names.nextElement();
+            File target = resolve( name, outputDirectories );
+            if ( target == null )
+            {
+                return false;
+            }
+            target.getParentFile().mkdirs();
+            try
+            {
+                copy( getObject( entry.getProperty( name ) ), target );
+            }
+            catch ( IOException e )
+            {
+                log.debug( "Cache object for " + name + " vanished while restoring: " + e.getMessage() );
+                return false;
+            }
+        }
+
+        // least recently used eviction is based on the modification time of the entries
+        entryFile.setLastModified( System.currentTimeMillis() );
+        log.info( "Restored " + entry.size() + " output file(s) from the cache" );
+        return true;
+    }
+
+    /**
+     * Store the outputs for the key and evict old entries if the cache grew too large.
+     *
+     * @param key the hash of everything which determines the outputs
+     * @param outputDirectories the directories of the output filesets, in declaration order
+     * @param outputs the output files, each one below one of the output directories
+     * @throws IOException if the cache could not be written
+     */
+    void store( String key, List<File> outputDirectories, List<File> outputs )
+        throws IOException
+    {
+        List<String> hashes = FingerprintStore.hashFiles( outputs );
+
+        Properties entry = new Properties();
+        for ( int i = 0; i < outputs.size(); i++ )
+        {
+            File output = outputs.get( i );
+            String hash = hashes.get( i );
+            File object = getObject( hash );
+            if ( !object.isFile() )
+            {
+                object.getParentFile().mkdirs();
+                File tmp = File.createTempFile( hash, ".tmp", object.getParentFile() );
+                copy( output, tmp );
+                if ( !tmp.renameTo( object ) )
+                {
+                    // stored concurrently by another build
+                    tmp.delete();
+                }
+            }
+            else
+            {
+                object.setLastModified( System.currentTimeMillis() );
+            }
+            entry.setProperty( relativize( output, outputDirectories ), hash );
+        }
+
+        entries.mkdirs();
+        File tmp = File.createTempFile( key, ".tmp", entries );
+        OutputStream out = null;
+        try
+        {
+            out = new FileOutputStream( tmp );
+            entry.store( out, "exec-maven-plugin cache entry" );
+        }
+        finally
+        {
+            IOUtil.close( out );
+        }
+        File entryFile = new File( entries, key + ".properties" );
+        entryFile.delete();
+        if ( !tmp.renameTo( entryFile ) )
+        {
+            tmp.delete();
+        }
+        log.debug( "Stored " + outputs.size() + " output file(s) in the cache as " + key );
+
+        evict();
+    }
+
+    /**
+     * Remove the least recently used entries and the objects only they referenced until the cache fits its maximum
+     * size.
+     */
+    void evict()
+        throws IOException
+    {
+        synchronized ( EVICTION_LOCK )
+        {
+            lockFile.getParentFile().mkdirs();
+            RandomAccessFile lock = new RandomAccessFile( lockFile, "rw" );
+            try
+            {
+                FileLock fileLock = lock.getChannel().lock();
+                try
+                {
+                    evictLocked();
+                }
+                finally
+                {
+                    fileLock.release();
+                }
+            }
+            finally
+            {
+                lock.close();
+            }
+        }
+    }
+
+    private void evictLocked()
+        throws IOException
+    {
+        List<File> objectFiles = listObjects();
+        long size = 0;
+        for ( File object : objectFiles )
+        {
+            size += object.length();
+        }
+        if ( size <= maxSize )
+        {
+            return;
+        }
+
+        File[] entryFiles = entries.listFiles();
+        if ( entryFiles == null )
+        {
+            entryFiles = new File[0];
+        }
+        Arrays.sort( entryFiles, new Comparator<File>()
+        {
+            public int compare( File f1, File f2 )
+            {
+                long diff = f1.lastModified() - f2.lastModified();
+                return diff < 0 ? -1 : ( diff > 0 ? 1 : 0 );
+            }
+        } );
+
+        // every entry is read once, the references are counted down while the entries are evicted
+        List<Set<String>> entryHashes = new ArrayList<Set<String>>( entryFiles.length );
+        Map<String, Integer> references = new HashMap<String, Integer>();
+        for ( File entryFile : entryFiles )
+        {
+            Set<String> hashes = referencedHashes( entryFile );
+            entryHashes.add( hashes );
+            for ( String hash : hashes )
+            {
+                Integer count = references.get( hash );
+                references.put( hash, count == null ? 1 : count + 1 );
+            }
+        }
+
+        long now = System.currentTimeMillis();
+        List<File> unreferenced = new ArrayList<File>();
+        for ( File object : objectFiles )
+        {
+            if ( !references.containsKey( object.getName() ) )
+            {
+                unreferenced.add( object );
+            }
+        }
+        size -= deleteOrphans( unreferenced, now );
+
+        int evicted = 0;
+        for ( int i = 0; i < entryFiles.length && size > maxSize; i++ )
+        {
+            entryFiles[i].delete();
+            evicted++;
+
+            List<File> orphans = new ArrayList<File>();
+            for ( String hash : entryHashes.get( i ) )
+            {
+                int count = references.get( hash ) - 1;
+                references.put( hash, count );
+                if ( count == 0 )
+                {
+                    orphans.add( getObject( hash ) );
+                }
+            }
+            size -= deleteOrphans( orphans, now );
+        }
+        log.info( "Evicted " + evicted + " entries from the exec cache, " + size + " bytes remain" );
+    }
+
+    /**
+     * Delete the objects no entry references any more, unless a concurrent build may be about to reference them.
+     *
+     * @return the number of bytes deleted
+     */
+    private static long deleteOrphans( Collection<File> orphans, long now )
+    {
+        long deleted = 0;
+        for ( File object : orphans )
+        {
+            long length = object.length();
+            if ( now - object.lastModified() > ORPHAN_AGE && object.delete() )
+            {
+                deleted += length;
+            }
+        }
+        return deleted;
+    }
+
+    private Set<String> referencedHashes( File entryFile )
+        throws IOException
+    {
+        Set<String> hashes = new HashSet<String>();
+        Properties entry = load( entryFile );
+        if ( entry != null )
+        {
+            for ( Map.Entry<Object, Object> mapping : entry.entrySet() )
+            {
+                hashes.add( (String) mapping.getValue() );
+            }
+        }
+        return hashes;
+    }
+
+    private List<File> listObjects()
+    {
+        List<File> result = new ArrayList<File>();
+        File[] prefixes = objects.listFiles();
+        if ( prefixes != null )
+        {
+            for ( File prefix : prefixes )
+            {
+                File[] files = prefix.listFiles();
+                if ( files != null )
+                {
+                    for ( File file : files )
+                    {
+                        if ( !file.getName().endsWith( ".tmp" ) )
+                        {
+                            result.add( file );
+                        }
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    private File getObject( String hash )
+    {
+        return new File( new File( objects, hash.substring( 0, 2 ) ), hash );
+    }
+
+    /**
+     * @return the path of the output, prefixed by the index of its output directory
+     */
+    private static String relativize( File output, List<File> outputDirectories )
+        throws IOException
+    {
+        String path = output.getAbsolutePath();
+        for ( int i = 0; i < outputDirectories.size(); i++ )
+        {
+            String directory = outputDirectories.get( i ).getAbsolutePath() + File.separator;
+            if ( path.startsWith( directory ) )
+            {
+                return i + "/" + path.substring( directory.length() ).replace( File.separatorChar, '/' );
+            }
+        }
+        throw new IOException( output + " is not below any output directory" );
+    }
+
+    private static File resolve( String name, List<File> outputDirectories )
+    {
+        int slash = name.indexOf( '/' );
+        try
+        {
+            int index = Integer.parseInt( name.substring( 0, slash ) );
+            if ( index >= outputDirectories.size() )
+            {
+                return null;
+            }
+            return new File( outputDirectories.get( index ), name.substring( slash + 1 ) );
+        }
+        catch ( RuntimeException e )
+        {
+            return null;
+        }
+    }
+
+    private static void copy( File source, File target )
+        throws IOException
+    {
+        FileUtils.copyFile( source, target );
+    }
+
+    private static Properties load( File file )
+        throws IOException
+    {
+        if ( !file.isFile() )
+        {
+            return null;
+        }
+        Properties properties = new Properties();
+        InputStream in = null;
+        try
+        {
+            in = new FileInputStream( file );
+            properties.load( in );
+        }
+        catch ( IOException e )
+        {
+            // evicted concurrently
+            return null;
+        }
+        finally
+        {
+            IOUtil.close( in );
+        }
+        return properties;
+    }
+}
@@ -0,0 +1,257 @@
+package org.codehaus.mojo.exec;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Applies the {@link Capture} patterns to the output of a process while it is copied, see {@link ExecMojo#captures}.
+ * <p>
+ * The bytes of the current line are collected in a reusable buffer and matched through a <code>CharSequence</code>
+ * view mapping each byte to a character, with one reusable <code>Matcher</code> per pattern, so no
+ * <code>String</code> is created for lines which do not match. Patterns therefore match bytes: ASCII text matches as
+ * usual, and only the captured groups are decoded with the platform encoding. Lines longer than
+ * {@link #MAX_LINE_LENGTH} bytes are matched on their beginning only.
+ * </p>
+ */
+class OutputCapturer
+{
+    static final int MAX_LINE_LENGTH = 64 * 1024;
+
+    private final List<Capture> captures;
+
+    private final List<Pattern> patterns = new ArrayList<Pattern>();
+
+    private final List<CaptureStream> streams = new ArrayList<CaptureStream>();
+
+    private final Map<String, String> values = new LinkedHashMap<String, String>();
+
+    /**
+     * @param captures the captures
+     * @throws IllegalArgumentException if a capture has no property or an invalid pattern
+     */
+    OutputCapturer( List<Capture> captures )
+    {
+        this.captures = captures;
+        for ( Capture capture : captures )
+        {
+            if ( capture.getProperty() == null || capture.getPattern() == null )
+            {
+                throw new IllegalArgumentException( "Misconfigured capture, property and pattern are required: "
+                    + capture );
+            }
+            Pattern pattern = Pattern.compile( capture.getPattern() );
+            if ( capture.getGroup() < 0 || capture.getGroup() > pattern.matcher( "" ).groupCount() )
+            {
+                throw new IllegalArgumentException( "Misconfigured capture, the pattern has no group "
+                    + capture.getGroup() + ": " + capture );
+            }
+            patterns.add( pattern );
+        }
+    }
+
+    /**
+     * @param sink the stream receiving the output
+     * @return a stream copying the output to the sink and applying the patterns to it. Each stream must be written by
+     *         a single thread.
+     */
+    synchronized OutputStream wrap( OutputStream sink )
+    {
+        CaptureStream stream = new CaptureStream( sink );
+        streams.add( stream );
+        return stream;
+    }
+
+    /**
+     * Apply the patterns to the last lines which did not end with a line break, once the process exited.
+     *
+     * @return the captured values by property name, in the order of the captures
+     */
+    Map<String, String> finish()
+    {
+        List<CaptureStream> current;
+        synchronized ( this )
+        {
+            current = new ArrayList<CaptureStream>( streams );
+        }
+        for ( CaptureStream stream : current )
+        {
+            stream.endLine();
+        }
+        synchronized ( values )
+        {
+            Map<String, String> result = new LinkedHashMap<String, String>();
+            for ( Capture capture : captures )
+            {
+                String value = values.get( capture.getProperty() );
+                if ( value != null )
+                {
+                    result.put( capture.getProperty(), value );
+                }
+            }
+            return result;
+        }
+    }
+
+    private class CaptureStream
+        extends OutputStream
+    {
+        private final OutputStream sink;
+
+        private final ByteSequence line = new ByteSequence();
+
+        private final Matcher[] matchers = new Matcher[patterns.size()];
+
+        CaptureStream( OutputStream sink )
+        {
+            this.sink = sink;
+            for ( int i = 0; i < matchers.length; i++ )
+            {
+                matchers[i] = patterns.get( i ).matcher( "" );
+            }
+        }
+
+        public void write( int b )
+            throws IOException
+        {
+            sink.write( b );
+            scan( (byte) b );
+        }
+
+        public void write( byte[] b, int off, int len )
+            throws IOException
+        {
+            sink.write( b, off, len );
+            for ( int i = off; i < off + len; i++ )
+            {
+                scan( b[i] );
+            }
+        }
+
+        public void flush()
+            throws IOException
+        {
+            sink.flush();
+        }
+
+        private void scan( byte b )
+        {
+            if ( b == '\n' )
+            {
+                endLine();
+            }
+            else if ( b != '\r' )
+            {
+                line.append( b );
+            }
+        }
+
+        synchronized void endLine()
+        {
+            if ( line.length() == 0 )
+            {
+                return;
+            }
+            for ( int i = 0; i < matchers.length; i++ )
+            {
+                Matcher matcher = matchers[i].reset( line );
+                if ( matcher.find() )
+                {
+                    Capture capture = captures.get( i );
+                    int start = matcher.start( capture.getGroup() );
+                    String value = start < 0 ? "" : line.decode( start, matcher.end( capture.getGroup() ) );
+                    synchronized ( values )
+                    {
+                        values.put( capture.getProperty(), value );
+                    }
+                }
+            }
+            line.clear();
+        }
+    }
+
+    /**
+     * A growing byte buffer seen as characters, each byte mapped to the character with the same value.
+     */
+    private static class ByteSequence
+        implements CharSequence
+    {
+        private byte[] bytes = new byte[256];
+
+        private int length;
+
+        void append( byte b )
+        {
+            if ( length == bytes.length )
+            {
+                if ( length == MAX_LINE_LENGTH )
+                {
+                    return;
+                }
+                byte[] grown = new byte[Math.min( MAX_LINE_LENGTH, length * 2 )];
+                System.arraycopy( bytes, 0, grown, 0, length );
+                bytes = grown;
+            }
+            bytes[length++] = b;
+        }
+
+        void clear()
+        {
+            length = 0;
+        }
+
+        String decode( int start, int end )
+        {
+            return new String( bytes, start, end - start );
+        }
+
+        public int length()
+        {
+            return length;
+        }
+
+        public char charAt( int index )
+        {
+            return (char) ( bytes[index] & 0xff );
+        }
+
+        public CharSequence subSequence( int start, int end )
+        {
+            return toString().substring( start, end );
+        }
+
+        public String toString()
+        {
+            char[] chars = new char[length];
+            for ( int i = 0; i < length; i++ )
+            {
+                chars[i] = charAt( i );
+            }
+            return new String( chars );
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package org.codehaus.mojo.exec;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Keeps the last bytes of the output of a process in a fixed ring buffer, so they can be reported when the process
+ * fails, see {@link ExecMojo#outputTailSize}. The standard and the error output share the buffer, in the order they
+ * were written.
+ */
+class OutputTail
+{
+    private final byte[] ring;
+
+    private int position;
+
+    private boolean wrapped;
+
+    /**
+     * @param size the number of bytes kept
+     */
+    OutputTail( int size )
+    {
+        ring = new byte[size];
+    }
+
+    /**
+     * @param sink the stream receiving the output
+     * @return a stream copying the output to the sink and keeping its end
+     */
+    OutputStream wrap( final OutputStream sink )
+    {
+        return new OutputStream()
+        {
+            public void write( int b )
+                throws IOException
+            {
+                write( new byte[] { (byte) b }, 0, 1 );
+            }
+
+            public void write( byte[] b, int off, int len )
+                throws IOException
+            {
+                sink.write( b, off, len );
+                append( b, off, len );
+            }
+
+            public void flush()
+                throws IOException
+            {
+                sink.flush();
+            }
+        };
+    }
+
+    synchronized void append( byte[] b, int off, int len )
+    {
+        if ( len >= ring.length )
+        {
+            System.arraycopy( b, off + len - ring.length, ring, 0, ring.length );
+            position = 0;
+            wrapped = true;
+            return;
+        }
+        int first = Math.min( len, ring.length - position );
+        System.arraycopy( b, off, ring, position, first );
+        System.arraycopy( b, off + first, ring, 0, len - first );
+        position += len;
+        if ( position >= ring.length )
+        {
+            position -= ring.length;
+            wrapped = true;
+        }
+    }
+
+    /**
+     * @return the kept output decoded with the platform encoding, starting with the first complete line if the
+     *         beginning was dropped, without the trailing line break
+     */
+    synchronized String getText()
+    {
+        byte[] bytes;
+        if ( wrapped )
+        {
+            bytes = new byte[ring.length];
+            System.arraycopy( ring, position, bytes, 0, ring.length - position );
+            System.arraycopy( ring, 0, bytes, ring.length - position, position );
+        }
+        else
+        {
+            bytes = new byte[position];
+            System.arraycopy( ring, 0, bytes, 0, position );
+        }
+
+        int start = 0;
+        if ( wrapped )
+        {
+            while ( start < bytes.length && bytes[start] != '\n' )
+            {
+                start++;
+            }
+            start = start < bytes.length ? start + 1 : 0;
+        }
+        int end = bytes.length;
+        while ( end > start && ( bytes[end - 1] == '\n' || bytes[end - 1] == '\r' ) )
+        {
+            end--;
+        }
+        return new String( bytes, start, end - start );
+    }
+}
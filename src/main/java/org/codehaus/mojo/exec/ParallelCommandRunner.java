@@ -0,0 +1,286 @@
+package org.codehaus.mojo.exec;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Runs a list of independent jobs on a bounded pool of worker threads. The output of every job is buffered and copied
+ * to the sinks in submission order, so the output of one job is never interleaved with the output of another. The
+ * buffers are in memory and unbounded: the whole output of a job is held until the jobs before it finished, so jobs
+ * writing a lot of output need as much heap. The first failing job cancels all its siblings, destroying their
+ * processes together with their descendants.
+ */
+class ParallelCommandRunner
+{
+    /**
+     * A single unit of work, typically one command line.
+     */
+    interface Job
+    {
+        /**
+         * @param out where the standard output of the job must be written to
+         * @param err where the error output of the job must be written to
+         * @return the exit code
+         * @throws IOException if the job could not be executed
+         */
+        int execute( OutputStream out, OutputStream err )
+            throws IOException;
+
+        /**
+         * @param resultCode the exit code returned by {@link #execute(OutputStream, OutputStream)}
+         * @return true if the exit code must fail the build
+         */
+        boolean isFailure( int resultCode );
+
+        /**
+         * Destroy the processes of the job together with their descendants, and make sure it starts none later. The
+         * job may not have started yet.
+         */
+        void cancel();
+    }
+
+    private final Log log;
+
+    private final int threads;
+
+    ParallelCommandRunner( Log log, int threads )
+    {
+        this.log = log;
+        this.threads = threads;
+    }
+
+    /**
+     * Run all jobs and wait for their completion.
+     *
+     * @param jobs the jobs to run
+     * @param out the sink for the standard output of all jobs
+     * @param err the sink for the error output of all jobs
+     * @return the exit codes of the jobs, in submission order
+     * @throws MojoExecutionException if a job failed, in which case the remaining jobs were cancelled
+     */
+    int[] run( List<? extends Job> jobs, OutputStream out, OutputStream err )
+        throws MojoExecutionException
+    {
+        int size = jobs.size();
+        int[] results = new int[size];
+        if ( size == 0 )
+        {
+            return results;
+        }
+
+        int poolSize = Math.min( threads, size );
+        log.info( "Executing " + size + " command(s) using " + poolSize + " thread(s)" );
+
+        ExecutorService pool = Executors.newFixedThreadPool( poolSize, new DaemonThreadFactory() );
+        CompletionService<Integer> completionService = new ExecutorCompletionService<Integer>( pool );
+
+        List<Future<Integer>> futures = new ArrayList<Future<Integer>>( size );
+        Map<Future<Integer>, Integer> indexes = new HashMap<Future<Integer>, Integer>();
+        List<ByteArrayOutputStream> outBuffers = new ArrayList<ByteArrayOutputStream>( size );
+        List<ByteArrayOutputStream> errBuffers = new ArrayList<ByteArrayOutputStream>( size );
+        boolean[] completed = new boolean[size];
+        boolean[] cancelled = new boolean[size];
+
+        MojoExecutionException failure = null;
+        boolean cancelling = false;
+        try
+        {
+            for ( int i = 0; i < size; i++ )
+            {
+                ByteArrayOutputStream outBuffer = new ByteArrayOutputStream();
+                ByteArrayOutputStream errBuffer = new ByteArrayOutputStream();
+                outBuffers.add( outBuffer );
+                errBuffers.add( errBuffer );
+
+                Future<Integer> future =
+                    completionService.submit( new JobCallable( jobs.get( i ), outBuffer, errBuffer ) );
+                futures.add( future );
+                indexes.put( future, Integer.valueOf( i ) );
+            }
+
+            int next = 0;
+            for ( int done = 0; done < size; done++ )
+            {
+                Future<Integer> future = completionService.take();
+                int index = indexes.get( future ).intValue();
+                Job job = jobs.get( index );
+                try
+                {
+                    results[index] = future.get().intValue();
+                    if ( failure == null && job.isFailure( results[index] ) )
+                    {
+                        failure =
+                            new MojoExecutionException( "Result of " + job + " execution is: '" + results[index]
+                                + "'." );
+                    }
+                }
+                catch ( CancellationException e )
+                {
+                    cancelled[index] = true;
+                }
+                catch ( ExecutionException e )
+                {
+                    if ( failure == null )
+                    {
+                        failure = new MojoExecutionException( "Command execution failed.", e.getCause() );
+                    }
+                }
+                completed[index] = true;
+
+                if ( failure != null && !cancelling )
+                {
+                    cancelling = true;
+                    cancel( jobs, futures, completed );
+                }
+
+                while ( next < size && completed[next] )
+                {
+                    if ( cancelled[next] )
+                    {
+                        log.debug( "Cancelled: " + jobs.get( next ) );
+                    }
+                    else
+                    {
+                        outBuffers.get( next ).writeTo( out );
+                        errBuffers.get( next ).writeTo( err );
+                        out.flush();
+                        err.flush();
+                    }
+                    next++;
+                }
+            }
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException( "Interrupted while waiting for commands to finish", e );
+        }
+        catch ( IOException e )
+        {
+            throw new MojoExecutionException( "Could not write command output", e );
+        }
+        finally
+        {
+            if ( !cancelling )
+            {
+                cancel( jobs, futures, completed );
+            }
+            pool.shutdownNow();
+            awaitTermination( pool );
+        }
+
+        if ( failure != null )
+        {
+            throw failure;
+        }
+        return results;
+    }
+
+    /**
+     * Destroy the process trees of the jobs that did not complete before interrupting them, since an interrupt only
+     * destroys the direct child of a job.
+     */
+    private static void cancel( List<? extends Job> jobs, List<Future<Integer>> futures, boolean[] completed )
+    {
+        for ( int i = 0; i < jobs.size(); i++ )
+        {
+            if ( !completed[i] )
+            {
+                jobs.get( i ).cancel();
+            }
+        }
+        for ( Future<Integer> future : futures )
+        {
+            future.cancel( true );
+        }
+    }
+
+    private void awaitTermination( ExecutorService pool )
+    {
+        try
+        {
+            if ( !pool.awaitTermination( 30, TimeUnit.SECONDS ) )
+            {
+                log.warn( "Some commands did not terminate after being cancelled" );
+            }
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static class JobCallable
+        implements Callable<Integer>
+    {
+        private final Job job;
+
+        private final OutputStream out;
+
+        private final OutputStream err;
+
+        JobCallable( Job job, OutputStream out, OutputStream err )
+        {
+            this.job = job;
+            this.out = out;
+            this.err = err;
+        }
+
+        public Integer call()
+            throws IOException
+        {
+            return Integer.valueOf( job.execute( out, err ) );
+        }
+    }
+
+    private static class DaemonThreadFactory
+        implements ThreadFactory
+    {
+        private final AtomicInteger count = new AtomicInteger();
+
+        public Thread newThread( Runnable r )
+        {
+            Thread thread = new Thread( r, "exec-command-" + count.incrementAndGet() );
+            thread.setDaemon( true );
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,427 @@
+package org.codehaus.mojo.exec;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.exec.CommandLine;
+import org.apache.commons.exec.StreamPumper;
+import org.codehaus.plexus.util.IOUtil;
+
+/**
+ * Runs the stages of a {@link ExecMojo#pipeline}, the standard output of each stage connected to the standard input of
+ * the next one, without a shell.
+ * <p>
+ * The stages are connected by pipes of the operating system with <code>ProcessBuilder.startPipeline</code>, which only
+ * exists since Java 9. The plugin itself runs on older versions, so it is called by reflection, see
+ * {@link #isNative()}. Otherwise the output of each stage is copied to the next one by a thread of the Maven JVM. The
+ * standard input of the first stage is closed. The standard output of the last stage and the error output of all
+ * stages are copied to the given streams.
+ * </p>
+ * <p>
+ * A stage still running one second after the next stage exited is destroyed: it would get a broken pipe on its next
+ * write, but before Java 21 the JVM keeps the read end of the pipes between the stages open. Like a stage killed by a
+ * broken pipe, its exit code is not a failure, see {@link #isOrphaned(int)}.
+ * </p>
+ * <p>
+ * Descendants of the stages may keep the pipes open after all stages exited. Their output is only copied for one more
+ * second, then the pipes are closed and the pipeline returns.
+ * </p>
+ */
+class Pipeline
+{
+    private static final Method START_PIPELINE = findStartPipeline();
+
+    private static final long ORPHAN_GRACE_PERIOD = 1000;
+
+    private static final long PUMP_TIMEOUT = 1000;
+
+    private final List<ProcessBuilder> builders = new ArrayList<ProcessBuilder>();
+
+    private final List<CommandLine> commandLines = new ArrayList<CommandLine>();
+
+    private boolean[] orphaned = new boolean[0];
+
+    private volatile boolean timedOut;
+
+    /**
+     * @return true if the stages are connected by the operating system
+     */
+    static boolean isNative()
+    {
+        return START_PIPELINE != null;
+    }
+
+    private static Method findStartPipeline()
+    {
+        try
+        {
+            return ProcessBuilder.class.getMethod( "startPipeline", List.class );
+        }
+        catch ( NoSuchMethodException e )
+        {
+            return null;
+        }
+    }
+
+    /**
+     * Append a stage to the pipeline.
+     *
+     * @param commandLine the command line of the stage
+     * @param dir the working directory of the stage
+     * @param enviro the environment of the stage
+     */
+    void add( CommandLine commandLine, File dir, Map<String, String> enviro )
+    {
+        ProcessBuilder builder = new ProcessBuilder( commandLine.toStrings() );
+        builder.directory( dir );
+        builder.environment().clear();
+        for ( Map.Entry<String, String> variable : enviro.entrySet() )
+        {
+            // the process environment does not accept null, such variables are not set
+            if ( variable.getKey() != null && variable.getValue() != null )
+            {
+                builder.environment().put( variable.getKey(), variable.getValue() );
+            }
+        }
+        builders.add( builder );
+        commandLines.add( commandLine );
+    }
+
+    List<CommandLine> getCommandLines()
+    {
+        return commandLines;
+    }
+
+    /**
+     * @return true if the stage was destroyed by the pipeline because the next stage exited before it
+     */
+    boolean isOrphaned( int stage )
+    {
+        return orphaned[stage];
+    }
+
+    /**
+     * @return true if the stages were destroyed because they exceeded the timeout
+     */
+    boolean isTimedOut()
+    {
+        return timedOut;
+    }
+
+    /**
+     * Run all stages and wait until they exited.
+     *
+     * @param out the stream receiving the standard output of the last stage
+     * @param err the stream receiving the error output of all stages
+     * @param destroyer the destroyer of the processes, when Maven stops or the timeout is reached
+     * @param timeout the number of milliseconds the stages may run, &lt;= 0 for no timeout, see {@link #isTimedOut()}
+     * @return the exit code of each stage
+     * @throws IOException if a stage could not be started
+     * @throws InterruptedException if interrupted while waiting, the processes are destroyed
+     */
+    int[] run( OutputStream out, OutputStream err, ProcessTreeDestroyer destroyer, long timeout )
+        throws IOException, InterruptedException
+    {
+        List<Process> processes = start();
+        orphaned = new boolean[processes.size()];
+        List<Thread> pumps = new ArrayList<Thread>();
+        Thread watchdog = null;
+        OutputStream lockedOut = new LockedOutputStream( out );
+        OutputStream lockedErr = out == err ? lockedOut : new LockedOutputStream( err );
+        try
+        {
+            for ( int i = 0; i < processes.size(); i++ )
+            {
+                Process process = processes.get( i );
+                destroyer.add( process );
+                if ( i == 0 )
+                {
+                    process.getOutputStream().close();
+                }
+                if ( !isNative() && i > 0 )
+                {
+                    Process previous = processes.get( i - 1 );
+                    pumps.add( pump( new Connection( previous.getInputStream(), process.getOutputStream() ) ) );
+                }
+                pumps.add( pump( new StreamPumper( process.getErrorStream(), lockedErr ) ) );
+            }
+            pumps.add( pump( new StreamPumper( processes.get( processes.size() - 1 ).getInputStream(), lockedOut ) ) );
+            if ( timeout > 0 )
+            {
+                watchdog = startWatchdog( destroyer, timeout );
+            }
+
+            int[] exitCodes = new int[processes.size()];
+            for ( int i = processes.size() - 1; i >= 0; i-- )
+            {
+                Process process = processes.get( i );
+                if ( i < processes.size() - 1 && isNative() && !waitFor( process, ORPHAN_GRACE_PERIOD ) )
+                {
+                    // the JVM may keep the read end of the pipe open, so the stage would never get a broken pipe
+                    process.destroy();
+                    orphaned[i] = true;
+                }
+                exitCodes[i] = process.waitFor();
+            }
+            joinPumps( pumps, processes );
+            return exitCodes;
+        }
+        catch ( InterruptedException e )
+        {
+            for ( Process process : processes )
+            {
+                process.destroy();
+            }
+            throw e;
+        }
+        finally
+        {
+            if ( watchdog != null )
+            {
+                watchdog.interrupt();
+            }
+            for ( Process process : processes )
+            {
+                destroyer.remove( process );
+            }
+        }
+    }
+
+    /**
+     * Destroy all stages together with their descendants once the timeout is reached, unless interrupted before.
+     */
+    private Thread startWatchdog( final ProcessTreeDestroyer destroyer, final long timeout )
+    {
+        Thread watchdog = new Thread( "exec-pipeline-watchdog" )
+        {
+            public void run()
+            {
+                try
+                {
+                    Thread.sleep( timeout );
+                }
+                catch ( InterruptedException e )
+                {
+                    return;
+                }
+                timedOut = true;
+                destroyer.destroyAll();
+            }
+        };
+        watchdog.setDaemon( true );
+        watchdog.start();
+        return watchdog;
+    }
+
+    private List<Process> start()
+        throws IOException
+    {
+        List<Process> processes = new ArrayList<Process>();
+        if ( isNative() )
+        {
+            try
+            {
+                for ( Object process : (List<?>) START_PIPELINE.invoke( null, builders ) )
+                {
+                    processes.add( (Process) process );
+                }
+                return processes;
+            }
+            catch ( InvocationTargetException e )
+            {
+                if ( e.getCause() instanceof IOException )
+                {
+                    throw (IOException) e.getCause();
+                }
+                throw new IOException( "Cannot start the pipeline: " + e.getCause() );
+            }
+            catch ( IllegalAccessException e )
+            {
+                throw new IOException( "Cannot start the pipeline: " + e );
+            }
+        }
+
+        try
+        {
+            for ( ProcessBuilder builder : builders )
+            {
+                processes.add( builder.start() );
+            }
+        }
+        catch ( IOException e )
+        {
+            for ( Process process : processes )
+            {
+                process.destroy();
+            }
+            throw e;
+        }
+        return processes;
+    }
+
+    /**
+     * @return true if the process exited within the timeout
+     */
+    private static boolean waitFor( Process process, long timeout )
+        throws InterruptedException
+    {
+        long end = System.currentTimeMillis() + timeout;
+        while ( true )
+        {
+            try
+            {
+                process.exitValue();
+                return true;
+            }
+            catch ( IllegalThreadStateException e )
+            {
+                if ( System.currentTimeMillis() >= end )
+                {
+                    return false;
+                }
+                Thread.sleep( 10 );
+            }
+        }
+    }
+
+    /**
+     * Wait for the pumps to copy the remaining output, and close the pipes still held open by descendants of the stages
+     * after the {@link #PUMP_TIMEOUT}.
+     */
+    private static void joinPumps( List<Thread> pumps, List<Process> processes )
+        throws InterruptedException
+    {
+        long deadline = System.currentTimeMillis() + PUMP_TIMEOUT;
+        for ( Thread pump : pumps )
+        {
+            pump.join( Math.max( 1, deadline - System.currentTimeMillis() ) );
+        }
+        for ( Thread pump : pumps )
+        {
+            if ( pump.isAlive() )
+            {
+                for ( Process process : processes )
+                {
+                    IOUtil.close( process.getInputStream() );
+                    IOUtil.close( process.getErrorStream() );
+                }
+                return;
+            }
+        }
+    }
+
+    private static Thread pump( Runnable pumper )
+    {
+        Thread thread = new Thread( pumper, "exec-pipeline-pump" );
+        thread.setDaemon( true );
+        thread.start();
+        return thread;
+    }
+
+    /**
+     * Copies the output of a stage to the input of the next one. Both ends are closed once either is, so the writing
+     * stage gets a broken pipe when the reading one exited early, like with a pipe of the operating system.
+     */
+    private static class Connection
+        implements Runnable
+    {
+        private final InputStream in;
+
+        private final OutputStream out;
+
+        Connection( InputStream in, OutputStream out )
+        {
+            this.in = in;
+            this.out = out;
+        }
+
+        public void run()
+        {
+            byte[] buffer = new byte[8192];
+            try
+            {
+                int count;
+                while ( ( count = in.read( buffer ) ) >= 0 )
+                {
+                    out.write( buffer, 0, count );
+                }
+            }
+            catch ( IOException e )
+            {
+                // one of the stages exited
+            }
+            finally
+            {
+                IOUtil.close( out );
+                IOUtil.close( in );
+            }
+        }
+    }
+
+    /**
+     * Lets several pumps write to the same stream.
+     */
+    private static class LockedOutputStream
+        extends OutputStream
+    {
+        private final OutputStream sink;
+
+        LockedOutputStream( OutputStream sink )
+        {
+            this.sink = sink;
+        }
+
+        public void write( int b )
+            throws IOException
+        {
+            synchronized ( sink )
+            {
+                sink.write( b );
+            }
+        }
+
+        public void write( byte[] b, int off, int len )
+            throws IOException
+        {
+            synchronized ( sink )
+            {
+                sink.write( b, off, len );
+            }
+        }
+
+        public void flush()
+            throws IOException
+        {
+            synchronized ( sink )
+            {
+                sink.flush();
+            }
+        }
+    }
+}
@@ -0,0 +1,377 @@
+package org.codehaus.mojo.exec;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.codehaus.plexus.util.IOUtil;
+
+/**
+ * Samples the CPU time, memory, context switches and I/O of a process and its descendants from <code>/proc</code>
+ * while it runs, see {@link ExecMojo#processStats}.
+ * <p>
+ * The first sample is taken one interval after the start, so a process shorter than the interval costs nothing but
+ * an idle thread. Exited processes are no longer in <code>/proc</code>, so the totals are those of the last sample:
+ * the CPU time of a snapshot adds the time of every live process and the time of the children it already waited for,
+ * and the largest snapshot is reported. Context switches and I/O bytes are the last values seen for each process.
+ * Nothing is sampled on systems without <code>/proc</code>.
+ * </p>
+ */
+class ProcessStats
+{
+    static final String CSV_HEADER =
+        "command,wallMillis,userMillis,systemMillis,peakRssKb,voluntaryContextSwitches,involuntaryContextSwitches,"
+            + "readBytes,writtenBytes,storageReadBytes,storageWrittenBytes,processes,samples";
+
+    private static final Object FILE_LOCK = new Object();
+
+    private static long clockTicks;
+
+    private final long interval;
+
+    private final String command;
+
+    private final Map<Integer, long[]> lastSeen = new HashMap<Integer, long[]>();
+
+    private long startTime;
+
+    private long wallTime;
+
+    private long userTicks;
+
+    private long systemTicks;
+
+    private long peakRss;
+
+    private int samples;
+
+    private Thread sampler;
+
+    private volatile boolean stopped;
+
+    /**
+     * @param interval the number of milliseconds between two samples
+     * @param command the description of the command, for the report
+     */
+    ProcessStats( long interval, String command )
+    {
+        this.interval = Math.max( 1, interval );
+        this.command = command;
+    }
+
+    /**
+     * @return true if the statistics can be sampled on this system
+     */
+    static boolean isSupported()
+    {
+        return new File( "/proc/self/status" ).isFile();
+    }
+
+    /**
+     * Start sampling the process in the background.
+     */
+    synchronized void start( Process process )
+    {
+        startTime = System.currentTimeMillis();
+        final int pid = ProcessTree.pidOf( process );
+        if ( pid == ProcessTree.UNKNOWN_PID || !isSupported() )
+        {
+            return;
+        }
+        sampler = new Thread( "exec-process-stats-" + pid )
+        {
+            public void run()
+            {
+                try
+                {
+                    while ( !stopped )
+                    {
+                        Thread.sleep( interval );
+                        if ( !stopped )
+                        {
+                            sample( pid );
+                        }
+                    }
+                }
+                catch ( InterruptedException e )
+                {
+                    // stopped
+                }
+            }
+        };
+        sampler.setDaemon( true );
+        sampler.start();
+    }
+
+    /**
+     * Stop sampling once the process exited.
+     */
+    void stop()
+    {
+        Thread thread;
+        synchronized ( this )
+        {
+            wallTime = System.currentTimeMillis() - startTime;
+            stopped = true;
+            thread = sampler;
+        }
+        if ( thread != null )
+        {
+            thread.interrupt();
+            try
+            {
+                thread.join();
+            }
+            catch ( InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void sample( int pid )
+    {
+        List<Integer> pids = ProcessTree.withDescendants( pid );
+        long user = 0;
+        long system = 0;
+        long rss = 0;
+        Map<Integer, long[]> seen = new HashMap<Integer, long[]>();
+        for ( Integer process : pids )
+        {
+            long[] stat = readStat( process.intValue() );
+            if ( stat == null )
+            {
+                // exited in the meantime
+                continue;
+            }
+            user += stat[0] + stat[2];
+            system += stat[1] + stat[3];
+
+            long[] status = readFields( new File( "/proc/" + process + "/status" ), new String[] { "VmRSS:",
+                "VmHWM:", "voluntary_ctxt_switches:", "nonvoluntary_ctxt_switches:" } );
+            long[] io = readFields( new File( "/proc/" + process + "/io" ), new String[] { "rchar:", "wchar:",
+                "read_bytes:", "write_bytes:" } );
+            rss += status[0];
+            seen.put( process, new long[] { status[1], status[2], status[3], io[0], io[1], io[2], io[3] } );
+        }
+
+        synchronized ( this )
+        {
+            samples++;
+            userTicks = Math.max( userTicks, user );
+            systemTicks = Math.max( systemTicks, system );
+            peakRss = Math.max( peakRss, rss );
+            lastSeen.putAll( seen );
+        }
+    }
+
+    /**
+     * @return <code>utime</code>, <code>stime</code>, <code>cutime</code> and <code>cstime</code> of the process, or
+     *         <code>null</code> if it exited
+     */
+    private static long[] readStat( int pid )
+    {
+        String stat = ProcessTree.readFirstLine( new File( "/proc/" + pid + "/stat" ) );
+        if ( stat == null )
+        {
+            return null;
+        }
+        // the fields after the command name start with the state, utime is the 14th field of the line
+        String[] fields = stat.substring( stat.lastIndexOf( ')' ) + 2 ).split( " " );
+        try
+        {
+            return new long[] { Long.parseLong( fields[11] ), Long.parseLong( fields[12] ),
+                Long.parseLong( fields[13] ), Long.parseLong( fields[14] ) };
+        }
+        catch ( RuntimeException e )
+        {
+            return null;
+        }
+    }
+
+    /**
+     * @return the numeric value of each of the named lines of a <code>/proc</code> file, 0 if it is missing or not
+     *         readable
+     */
+    private static long[] readFields( File file, String[] names )
+    {
+        long[] values = new long[names.length];
+        BufferedReader reader = null;
+        try
+        {
+            reader = new BufferedReader( new FileReader( file ) );
+            String line;
+            while ( ( line = reader.readLine() ) != null )
+            {
+                for ( int i = 0; i < names.length; i++ )
+                {
+                    if ( line.startsWith( names[i] ) )
+                    {
+                        values[i] = parseNumber( line.substring( names[i].length() ) );
+                    }
+                }
+            }
+        }
+        catch ( IOException e )
+        {
+            // the process exited, or the file is not readable for this user
+        }
+        finally
+        {
+            IOUtil.close( reader );
+        }
+        return values;
+    }
+
+    private static long parseNumber( String value )
+    {
+        String number = value.trim();
+        int end = number.indexOf( ' ' );
+        try
+        {
+            return Long.parseLong( end < 0 ? number : number.substring( 0, end ) );
+        }
+        catch ( NumberFormatException e )
+        {
+            return 0;
+        }
+    }
+
+    /**
+     * @return the totals: wall, user and system milliseconds, peak RSS in kilobytes, voluntary and involuntary context
+     *         switches, bytes read and written, bytes read from and written to storage, number of processes and of
+     *         samples
+     */
+    synchronized long[] getTotals()
+    {
+        long[] totals = new long[12];
+        totals[0] = wallTime;
+        totals[1] = toMillis( userTicks );
+        totals[2] = toMillis( systemTicks );
+        long peak = peakRss;
+        for ( long[] values : lastSeen.values() )
+        {
+            peak = Math.max( peak, values[0] );
+            for ( int i = 1; i < values.length; i++ )
+            {
+                totals[i + 3] += values[i];
+            }
+        }
+        totals[3] = peak;
+        totals[10] = lastSeen.size();
+        totals[11] = samples;
+        return totals;
+    }
+
+    /**
+     * @return a human readable summary
+     */
+    String getReport()
+    {
+        long[] totals = getTotals();
+        StringBuilder report = new StringBuilder( "Process statistics of " ).append( command ).append( ": " );
+        report.append( "wall " ).append( totals[0] ).append( " ms" );
+        if ( totals[11] == 0 )
+        {
+            return report.append( ", finished before the first sample" ).toString();
+        }
+        report.append( ", user " ).append( totals[1] ).append( " ms, system " ).append( totals[2] ).append( " ms" );
+        report.append( ", peak RSS " ).append( totals[3] ).append( " kB" );
+        report.append( ", context switches " ).append( totals[4] ).append( " voluntary / " ).append( totals[5] );
+        report.append( " involuntary, read " ).append( totals[6] ).append( " bytes, written " ).append( totals[7] );
+        report.append( " bytes, " ).append( totals[10] ).append( " process(es), " ).append( totals[11] );
+        return report.append( " sample(s)" ).toString();
+    }
+
+    /**
+     * Append the totals as a line of comma separated values to the file, preceded by {@link #CSV_HEADER} if the file
+     * is new.
+     */
+    void appendTo( File file )
+        throws IOException
+    {
+        long[] totals = getTotals();
+        StringBuilder line = new StringBuilder( "\"" ).append( command.replace( "\"", "\"\"" ) ).append( '"' );
+        for ( long total : totals )
+        {
+            line.append( ',' ).append( total );
+        }
+        line.append( '\n' );
+
+        synchronized ( FILE_LOCK )
+        {
+            boolean created = !file.exists();
+            if ( file.getParentFile() != null )
+            {
+                file.getParentFile().mkdirs();
+            }
+            Writer writer = new FileWriter( file, true );
+            try
+            {
+                if ( created )
+                {
+                    writer.write( CSV_HEADER + "\n" );
+                }
+                writer.write( line.toString() );
+            }
+            finally
+            {
+                IOUtil.close( writer );
+            }
+        }
+    }
+
+    private static long toMillis( long ticks )
+    {
+        return ticks * 1000 / getClockTicks();
+    }
+
+    /**
+     * @return the number of clock ticks per second used by <code>/proc/&lt;pid&gt;/stat</code>
+     */
+    private static synchronized long getClockTicks()
+    {
+        if ( clockTicks == 0 )
+        {
+            clockTicks = 100;
+            List<String> output = ProcessTree.run( "getconf", "CLK_TCK" );
+            if ( output != null && !output.isEmpty() )
+            {
+                try
+                {
+                    clockTicks = Math.max( 1, Long.parseLong( output.get( 0 ).trim() ) );
+                }
+                catch ( NumberFormatException e )
+                {
+                    // keep the usual value
+                }
+            }
+        }
+        return clockTicks;
+    }
+}
@@ -0,0 +1,378 @@
+package org.codehaus.mojo.exec;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.exec.OS;
+import org.codehaus.plexus.util.IOUtil;
+
+/**
+ * Utilities to find and terminate a process together with all its descendants. <code>java.lang.Process</code> only
+ * knows about the direct child, so the descendants are looked up in <code>/proc</code> on Linux and with
+ * <code>ps</code> on other Unix systems. Windows uses <code>taskkill /T</code>.
+ */
+final class ProcessTree
+{
+    static final int UNKNOWN_PID = -1;
+
+    private ProcessTree()
+    {
+    }
+
+    /**
+     * @param process a started process
+     * @return the operating system id of the process, or {@link #UNKNOWN_PID} if it cannot be determined
+     */
+    static int pidOf( Process process )
+    {
+        try
+        {
+            // Java 9+
+            Method pid = Process.class.getMethod( "pid" );
+            return ( (Number) pid.invoke( process ) ).intValue();
+        }
+        catch ( Exception e )
+        {
+            // fall through to the private field of the Unix implementations
+        }
+
+        for ( Class<?> type = process.getClass(); type != null; type = type.getSuperclass() )
+        {
+            try
+            {
+                Field pid = type.getDeclaredField( "pid" );
+                pid.setAccessible( true );
+                return pid.getInt( process );
+            }
+            catch ( Exception e )
+            {
+                // try the super class
+            }
+        }
+        return UNKNOWN_PID;
+    }
+
+    /**
+     * @param pid a process id
+     * @return the process and all its descendants, parents before children
+     */
+    static List<Integer> withDescendants( int pid )
+    {
+        Map<Integer, List<Integer>> children = childrenByParent();
+
+        List<Integer> result = new ArrayList<Integer>();
+        result.add( Integer.valueOf( pid ) );
+        for ( int i = 0; i < result.size(); i++ )
+        {
+            List<Integer> direct = children.get( result.get( i ) );
+            if ( direct != null )
+            {
+                for ( Integer child : direct )
+                {
+                    if ( !result.contains( child ) )
+                    {
+                        result.add( child );
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param pid a process id
+     * @return true if the process still exists
+     */
+    static boolean isAlive( int pid )
+    {
+        if ( OS.isFamilyUnix() && new File( "/proc/self/stat" ).isFile() )
+        {
+            // zombies keep their entry until they are reaped, but they are dead nevertheless
+            String stat = readFirstLine( new File( "/proc/" + pid + "/stat" ) );
+            if ( stat == null )
+            {
+                return false;
+            }
+            char state = stat.charAt( stat.lastIndexOf( ')' ) + 2 );
+            return state != 'Z' && state != 'X';
+        }
+        if ( OS.isFamilyWindows() )
+        {
+            List<String> output = run( "tasklist", "/FI", "PID eq " + pid, "/NH" );
+            if ( output == null )
+            {
+                return false;
+            }
+            for ( String line : output )
+            {
+                if ( line.indexOf( " " + pid + " " ) >= 0 )
+                {
+                    return true;
+                }
+            }
+            return false;
+        }
+        return run( "kill", "-0", String.valueOf( pid ) ) != null;
+    }
+
+    /**
+     * Ask the processes to terminate: <code>SIGTERM</code> on Unix, <code>taskkill /T</code> on Windows.
+     */
+    static void terminate( List<Integer> pids )
+    {
+        if ( OS.isFamilyWindows() )
+        {
+            // taskkill /T walks the tree itself
+            for ( Integer pid : pids )
+            {
+                run( "taskkill", "/T", "/PID", String.valueOf( pid ) );
+            }
+        }
+        else
+        {
+            signal( "-TERM", pids );
+        }
+    }
+
+    /**
+     * Terminate the processes forcibly: <code>SIGKILL</code> on Unix, <code>taskkill /F</code> on Windows.
+     */
+    static void kill( List<Integer> pids )
+    {
+        if ( OS.isFamilyWindows() )
+        {
+            for ( Integer pid : pids )
+            {
+                run( "taskkill", "/F", "/PID", String.valueOf( pid ) );
+            }
+        }
+        else
+        {
+            signal( "-KILL", pids );
+        }
+    }
+
+    /**
+     * @return the processes of the list which are still alive
+     */
+    static List<Integer> alive( List<Integer> pids )
+    {
+        List<Integer> result = new ArrayList<Integer>();
+        for ( Integer pid : pids )
+        {
+            if ( isAlive( pid.intValue() ) )
+            {
+                result.add( pid );
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Terminate the processes, give them the grace period to exit and kill the ones which are still alive.
+     *
+     * @param pids the processes, as returned by {@link #withDescendants(int)}
+     * @param gracePeriod the number of milliseconds to wait between terminating and killing
+     * @return the processes which had to be killed
+     */
+    static List<Integer> destroy( List<Integer> pids, long gracePeriod )
+    {
+        terminate( pids );
+
+        long deadline = System.currentTimeMillis() + gracePeriod;
+        List<Integer> survivors = alive( pids );
+        while ( !survivors.isEmpty() && System.currentTimeMillis() < deadline )
+        {
+            try
+            {
+                Thread.sleep( 50 );
+            }
+            catch ( InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            survivors = alive( survivors );
+        }
+
+        if ( !survivors.isEmpty() )
+        {
+            kill( survivors );
+        }
+        return survivors;
+    }
+
+    private static void signal( String signal, List<Integer> pids )
+    {
+        List<String> command = new ArrayList<String>();
+        command.add( "kill" );
+        command.add( signal );
+        for ( Integer pid : pids )
+        {
+            command.add( pid.toString() );
+        }
+        run( command.toArray( new String[command.size()] ) );
+    }
+
+    private static Map<Integer, List<Integer>> childrenByParent()
+    {
+        Map<Integer, List<Integer>> children = new HashMap<Integer, List<Integer>>();
+
+        File[] entries = new File( "/proc" ).listFiles();
+        if ( entries != null && new File( "/proc/self/stat" ).isFile() )
+        {
+            for ( File entry : entries )
+            {
+                String name = entry.getName();
+                if ( name.length() > 0 && Character.isDigit( name.charAt( 0 ) ) )
+                {
+                    int ppid = readParentFromProc( entry );
+                    if ( ppid > 0 )
+                    {
+                        addChild( children, ppid, Integer.parseInt( name ) );
+                    }
+                }
+            }
+        }
+        else if ( !OS.isFamilyWindows() )
+        {
+            List<String> lines = run( "ps", "-A", "-o", "pid=", "-o", "ppid=" );
+            if ( lines != null )
+            {
+                for ( String line : lines )
+                {
+                    String[] tokens = line.trim().split( "\\s+" );
+                    if ( tokens.length == 2 )
+                    {
+                        try
+                        {
+                            addChild( children, Integer.parseInt( tokens[1] ), Integer.parseInt( tokens[0] ) );
+                        }
+                        catch ( NumberFormatException e )
+                        {
+                            // header or garbage, ignore
+                        }
+                    }
+                }
+            }
+        }
+        return children;
+    }
+
+    private static void addChild( Map<Integer, List<Integer>> children, int ppid, int pid )
+    {
+        Integer parent = Integer.valueOf( ppid );
+        List<Integer> list = children.get( parent );
+        if ( list == null )
+        {
+            list = new ArrayList<Integer>();
+            children.put( parent, list );
+        }
+        list.add( Integer.valueOf( pid ) );
+    }
+
+    /**
+     * Read the parent pid from <code>/proc/&lt;pid&gt;/stat</code>. The command name is enclosed in parentheses and
+     * may itself contain spaces or parentheses, so parsing starts after the last closing parenthesis.
+     */
+    private static int readParentFromProc( File processDir )
+    {
+        String stat = readFirstLine( new File( processDir, "stat" ) );
+        if ( stat == null )
+        {
+            return -1;
+        }
+        String[] fields = stat.substring( stat.lastIndexOf( ')' ) + 2 ).split( " " );
+        try
+        {
+            return Integer.parseInt( fields[1] );
+        }
+        catch ( RuntimeException e )
+        {
+            return -1;
+        }
+    }
+
+    static String readFirstLine( File file )
+    {
+        BufferedReader reader = null;
+        try
+        {
+            reader = new BufferedReader( new FileReader( file ) );
+            return reader.readLine();
+        }
+        catch ( IOException e )
+        {
+            // the process exited in the meantime
+            return null;
+        }
+        finally
+        {
+            IOUtil.close( reader );
+        }
+    }
+
+    /**
+     * Run a helper command and return its output lines, or <code>null</code> if it failed.
+     */
+    static List<String> run( String... command )
+    {
+        try
+        {
+            Process process = new ProcessBuilder( command ).redirectErrorStream( true ).start();
+            process.getOutputStream().close();
+            List<String> lines = new ArrayList<String>();
+            BufferedReader reader = new BufferedReader( new InputStreamReader( process.getInputStream() ) );
+            try
+            {
+                String line;
+                while ( ( line = reader.readLine() ) != null )
+                {
+                    lines.add( line );
+                }
+            }
+            finally
+            {
+                IOUtil.close( reader );
+            }
+            return process.waitFor() == 0 ? lines : null;
+        }
+        catch ( IOException e )
+        {
+            return null;
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+}
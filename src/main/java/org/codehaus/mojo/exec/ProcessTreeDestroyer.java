@@ -0,0 +1,174 @@
+package org.codehaus.mojo.exec;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.exec.ProcessDestroyer;
+
+/**
+ * Destroys the registered processes together with their descendants when the JVM shuts down, e.g. when Maven is
+ * interrupted. Modelled after commons-exec's <code>ShutdownHookProcessDestroyer</code>, which only destroys the
+ * direct children. As every launched process is registered here, it also starts the {@link ProcessStats} if any.
+ */
+class ProcessTreeDestroyer
+    implements ProcessDestroyer
+{
+    private final List<Process> processes = new ArrayList<Process>();
+
+    private final long gracePeriod;
+
+    private final ProcessStats stats;
+
+    private Thread shutdownHook;
+
+    private boolean running;
+
+    private boolean cancelled;
+
+    /**
+     * @param gracePeriod the number of milliseconds between terminating and killing the processes
+     */
+    ProcessTreeDestroyer( long gracePeriod )
+    {
+        this( gracePeriod, null );
+    }
+
+    /**
+     * @param gracePeriod the number of milliseconds between terminating and killing the processes
+     * @param stats the statistics sampled while the process runs, <code>null</code> for none
+     */
+    ProcessTreeDestroyer( long gracePeriod, ProcessStats stats )
+    {
+        this.gracePeriod = gracePeriod;
+        this.stats = stats;
+    }
+
+    public boolean add( Process process )
+    {
+        boolean added;
+        boolean destroy;
+        synchronized ( this )
+        {
+            added = register( process );
+            destroy = cancelled;
+        }
+        if ( destroy )
+        {
+            // started after the cancellation
+            destroyAll();
+        }
+        return added;
+    }
+
+    private boolean register( Process process )
+    {
+        if ( processes.isEmpty() )
+        {
+            shutdownHook = new Thread( "exec-process-destroyer" )
+            {
+                public void run()
+                {
+                    synchronized ( ProcessTreeDestroyer.this )
+                    {
+                        running = true;
+                    }
+                    destroyAll();
+                }
+            };
+            Runtime.getRuntime().addShutdownHook( shutdownHook );
+        }
+        if ( stats != null )
+        {
+            stats.start( process );
+        }
+        return processes.add( process );
+    }
+
+    public synchronized boolean remove( Process process )
+    {
+        boolean removed = processes.remove( process );
+        if ( removed && stats != null )
+        {
+            stats.stop();
+        }
+        if ( removed && processes.isEmpty() && !running )
+        {
+            try
+            {
+                Runtime.getRuntime().removeShutdownHook( shutdownHook );
+            }
+            catch ( IllegalStateException e )
+            {
+                // the JVM is already shutting down
+            }
+            shutdownHook = null;
+        }
+        return removed;
+    }
+
+    public synchronized int size()
+    {
+        return processes.size();
+    }
+
+    /**
+     * Destroy the registered processes and their descendants, and any process registered later.
+     */
+    void cancel()
+    {
+        synchronized ( this )
+        {
+            cancelled = true;
+        }
+        destroyAll();
+    }
+
+    /**
+     * Destroy the registered processes and their descendants, waiting for the grace period if they do not terminate.
+     */
+    void destroyAll()
+    {
+        List<Process> toDestroy;
+        synchronized ( this )
+        {
+            toDestroy = new ArrayList<Process>( processes );
+        }
+
+        List<Integer> pids = new ArrayList<Integer>();
+        for ( Process process : toDestroy )
+        {
+            int pid = ProcessTree.pidOf( process );
+            if ( pid != ProcessTree.UNKNOWN_PID )
+            {
+                pids.addAll( ProcessTree.withDescendants( pid ) );
+            }
+            else
+            {
+                process.destroy();
+            }
+        }
+        if ( !pids.isEmpty() )
+        {
+            ProcessTree.destroy( pids, gracePeriod );
+        }
+    }
+}
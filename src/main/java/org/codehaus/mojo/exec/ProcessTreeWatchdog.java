@@ -0,0 +1,128 @@
+package org.codehaus.mojo.exec;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.exec.ExecuteWatchdog;
+import org.apache.commons.exec.Watchdog;
+
+/**
+ * A watchdog which, when the timeout is reached, terminates the process together with all its descendants and kills
+ * the ones still alive after a grace period. The default {@link ExecuteWatchdog} only destroys the direct child, so
+ * grandchildren would keep running.
+ */
+class ProcessTreeWatchdog
+    extends ExecuteWatchdog
+{
+    private final long timeout;
+
+    private final long gracePeriod;
+
+    private Process process;
+
+    private long startTime;
+
+    private boolean timedOut;
+
+    private long runningTime;
+
+    private List<Integer> terminated = Collections.emptyList();
+
+    private List<Integer> killed = Collections.emptyList();
+
+    /**
+     * @param timeout the number of milliseconds the process may run, must be greater than 0
+     * @param gracePeriod the number of milliseconds between terminating and killing the processes
+     */
+    ProcessTreeWatchdog( long timeout, long gracePeriod )
+    {
+        super( timeout );
+        this.timeout = timeout;
+        this.gracePeriod = gracePeriod;
+    }
+
+    public synchronized void start( Process process )
+    {
+        this.process = process;
+        this.startTime = System.currentTimeMillis();
+        super.start( process );
+    }
+
+    public synchronized void timeoutOccured( Watchdog w )
+    {
+        if ( process != null && isWatching() && isRunning( process ) )
+        {
+            timedOut = true;
+            runningTime = System.currentTimeMillis() - startTime;
+
+            int pid = ProcessTree.pidOf( process );
+            if ( pid != ProcessTree.UNKNOWN_PID )
+            {
+                terminated = ProcessTree.withDescendants( pid );
+                killed = ProcessTree.destroy( terminated, gracePeriod );
+            }
+        }
+        // destroys the direct child in case the pid was not available
+        super.timeoutOccured( w );
+    }
+
+    private static boolean isRunning( Process process )
+    {
+        try
+        {
+            process.exitValue();
+            return false;
+        }
+        catch ( IllegalThreadStateException e )
+        {
+            return true;
+        }
+    }
+
+    /**
+     * @return true if the process was stopped because it exceeded the timeout
+     */
+    synchronized boolean isTimedOut()
+    {
+        return timedOut;
+    }
+
+    /**
+     * @return a description of how long the process ran and which processes were stopped
+     */
+    synchronized String getReport()
+    {
+        StringBuilder report = new StringBuilder();
+        report.append( "The process exceeded the timeout of " ).append( timeout ).append( " ms and was stopped after " );
+        report.append( runningTime ).append( " ms." );
+        if ( !terminated.isEmpty() )
+        {
+            report.append( " Terminated processes: " ).append( terminated ).append( "." );
+        }
+        if ( !killed.isEmpty() )
+        {
+            report.append( " Killed after the grace period of " ).append( gracePeriod ).append( " ms: " );
+            report.append( killed ).append( "." );
+        }
+        return report.toString();
+    }
+}
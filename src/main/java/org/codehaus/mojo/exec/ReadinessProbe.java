@@ -0,0 +1,234 @@
+package org.codehaus.mojo.exec;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Decides whether a program started by {@link ExecStartMojo} is ready: a line of its output matches a pattern, a TCP
+ * port accepts connections and a file exists. Every configured condition must hold.
+ * <p>
+ * Every complete line is matched once. A line without a line break yet, e.g. a prompt, is matched when the conditions
+ * are checked, if it grew since. Lines are only decoded until the pattern matched once, after that the output is
+ * passed through untouched.
+ * </p>
+ */
+class ReadinessProbe
+{
+    private static final int CONNECT_TIMEOUT = 500;
+
+    private final Pattern pattern;
+
+    private final String host;
+
+    private final int port;
+
+    private final File file;
+
+    private final List<LineMatcher> matchers = new ArrayList<LineMatcher>();
+
+    private volatile boolean matched;
+
+    /**
+     * @param pattern the regular expression a line of the output must contain, <code>null</code> for none
+     * @param host the host of the port
+     * @param port the port which must accept connections, 0 for none
+     * @param file the file which must exist, <code>null</code> for none
+     */
+    ReadinessProbe( String pattern, String host, int port, File file )
+    {
+        this.pattern = pattern != null ? Pattern.compile( pattern ) : null;
+        this.host = host;
+        this.port = port;
+        this.file = file;
+    }
+
+    /**
+     * @return true if no condition is configured, so the program is ready as soon as it started
+     */
+    boolean isEmpty()
+    {
+        return pattern == null && port <= 0 && file == null;
+    }
+
+    /**
+     * @return true if all configured conditions hold
+     */
+    boolean isReady()
+    {
+        if ( pattern != null && !matched )
+        {
+            synchronized ( matchers )
+            {
+                for ( LineMatcher matcher : matchers )
+                {
+                    matcher.matchPartialLine();
+                }
+            }
+        }
+        return ( pattern == null || matched ) && ( file == null || file.exists() ) && ( port <= 0 || canConnect() );
+    }
+
+    private boolean canConnect()
+    {
+        Socket socket = new Socket();
+        try
+        {
+            socket.connect( new InetSocketAddress( host, port ), CONNECT_TIMEOUT );
+            return true;
+        }
+        catch ( IOException e )
+        {
+            return false;
+        }
+        finally
+        {
+            try
+            {
+                socket.close();
+            }
+            catch ( IOException e )
+            {
+                // ignore
+            }
+        }
+    }
+
+    /**
+     * @return the configured conditions, for messages
+     */
+    String describe()
+    {
+        List<String> conditions = new ArrayList<String>();
+        if ( pattern != null )
+        {
+            conditions.add( "output matching '" + pattern.pattern() + "'" );
+        }
+        if ( port > 0 )
+        {
+            conditions.add( "port " + host + ":" + port );
+        }
+        if ( file != null )
+        {
+            conditions.add( "file " + file );
+        }
+        return conditions.isEmpty() ? "none" : conditions.toString();
+    }
+
+    /**
+     * @param sink the stream receiving the output
+     * @return a stream copying the output to the sink and matching its lines against the pattern
+     */
+    OutputStream wrap( OutputStream sink )
+    {
+        if ( pattern == null )
+        {
+            return sink;
+        }
+        LineMatcher matcher = new LineMatcher( sink );
+        synchronized ( matchers )
+        {
+            matchers.add( matcher );
+        }
+        return matcher;
+    }
+
+    private class LineMatcher
+        extends OutputStream
+    {
+        private final OutputStream sink;
+
+        private final ByteArrayOutputStream line = new ByteArrayOutputStream();
+
+        private int partialMatched;
+
+        LineMatcher( OutputStream sink )
+        {
+            this.sink = sink;
+        }
+
+        public void write( int b )
+            throws IOException
+        {
+            write( new byte[] { (byte) b }, 0, 1 );
+        }
+
+        public void write( byte[] b, int off, int len )
+            throws IOException
+        {
+            sink.write( b, off, len );
+            if ( matched )
+            {
+                return;
+            }
+            synchronized ( this )
+            {
+                int start = off;
+                for ( int i = off; i < off + len && !matched; i++ )
+                {
+                    if ( b[i] == '\n' )
+                    {
+                        line.write( b, start, i - start );
+                        match();
+                        line.reset();
+                        partialMatched = 0;
+                        start = i + 1;
+                    }
+                }
+                if ( !matched )
+                {
+                    line.write( b, start, off + len - start );
+                }
+            }
+        }
+
+        synchronized void matchPartialLine()
+        {
+            if ( !matched && line.size() > partialMatched )
+            {
+                partialMatched = line.size();
+                match();
+            }
+        }
+
+        private void match()
+        {
+            if ( pattern.matcher( line.toString() ).find() )
+            {
+                matched = true;
+                line.reset();
+            }
+        }
+
+        public void flush()
+            throws IOException
+        {
+            sink.flush();
+        }
+    }
+}
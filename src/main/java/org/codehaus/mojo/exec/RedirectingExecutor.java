@@ -0,0 +1,266 @@
+package org.codehaus.mojo.exec;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Map;
+
+import org.apache.commons.exec.CommandLine;
+import org.apache.commons.exec.DefaultExecutor;
+import org.apache.commons.exec.ExecuteStreamHandler;
+
+/**
+ * An executor whose processes read and write their standard streams directly from and to the files chosen by the
+ * operating system, instead of pipes pumped by threads of the Maven JVM. Either the output is redirected, or only the
+ * input is, in which case the output is pumped by the stream handler as usual.
+ * <p>
+ * This relies on <code>ProcessBuilder.Redirect</code>, which only exists since Java 7. The plugin itself runs on older
+ * versions, so the redirects are set up by reflection and {@link #isSupported()} must be checked first.
+ * </p>
+ */
+class RedirectingExecutor
+    extends DefaultExecutor
+{
+    private static final String REDIRECT_CLASS = "java.lang.ProcessBuilder$Redirect";
+
+    /**
+     * Whether the output is redirected, instead of being pumped by the stream handler.
+     */
+    private final boolean redirectOutput;
+
+    /**
+     * The file receiving the output, <code>null</code> to inherit the streams of the Maven process.
+     */
+    private final File outputFile;
+
+    /**
+     * The file read as standard input, <code>null</code> for none.
+     */
+    private File inputFile;
+
+    /**
+     * Whether the standard input is closed immediately if there is no {@link #inputFile}.
+     */
+    private boolean closeInput;
+
+    private RedirectingExecutor( boolean redirectOutput, File outputFile )
+    {
+        this.redirectOutput = redirectOutput;
+        this.outputFile = outputFile;
+        if ( redirectOutput )
+        {
+            setStreamHandler( new NoStreamHandler() );
+        }
+    }
+
+    /**
+     * @return true if the Java runtime supports redirecting the streams of processes
+     */
+    static boolean isSupported()
+    {
+        try
+        {
+            Class.forName( REDIRECT_CLASS );
+            return true;
+        }
+        catch ( ClassNotFoundException e )
+        {
+            return false;
+        }
+    }
+
+    /**
+     * @param outputFile the file receiving the standard and error output, it is truncated first
+     * @return an executor writing the output of its processes to the file
+     */
+    static RedirectingExecutor toFile( File outputFile )
+    {
+        return new RedirectingExecutor( true, outputFile );
+    }
+
+    /**
+     * @return an executor whose processes use the standard input, output and error of the Maven process
+     */
+    static RedirectingExecutor inheritIo()
+    {
+        return new RedirectingExecutor( true, null );
+    }
+
+    /**
+     * @param inputFile the file read as standard input
+     * @return an executor whose processes read the file, their output is pumped by the stream handler
+     */
+    static RedirectingExecutor readingFrom( File inputFile )
+    {
+        RedirectingExecutor executor = new RedirectingExecutor( false, null );
+        executor.setInputFile( inputFile );
+        return executor;
+    }
+
+    /**
+     * @return true if the output is redirected, false if it is pumped by the stream handler
+     */
+    boolean isRedirectingOutput()
+    {
+        return redirectOutput;
+    }
+
+    /**
+     * @param inputFile the file read as standard input, <code>null</code> to inherit it or let the stream handler
+     *            pump it
+     */
+    void setInputFile( File inputFile )
+    {
+        this.inputFile = inputFile;
+    }
+
+    /**
+     * @param closeInput whether the standard input is closed immediately if there is no input file
+     */
+    void setCloseInput( boolean closeInput )
+    {
+        this.closeInput = closeInput;
+    }
+
+    /**
+     * Start the process with a <code>ProcessBuilder</code>, as the command launchers of commons-exec use
+     * <code>Runtime.exec</code>, which cannot redirect.
+     */
+    protected Process launch( CommandLine command, @SuppressWarnings( "rawtypes" ) Map env, File dir )
+        throws IOException
+    {
+        if ( dir != null && !dir.exists() )
+        {
+            throw new IOException( dir + " doesn't exist." );
+        }
+
+        ProcessBuilder builder = new ProcessBuilder( command.toStrings() );
+        builder.directory( dir );
+        if ( env != null )
+        {
+            builder.environment().clear();
+            for ( Object entry : env.entrySet() )
+            {
+                Map.Entry<?, ?> variable = (Map.Entry<?, ?>) entry;
+                builder.environment().put( String.valueOf( variable.getKey() ), String.valueOf( variable.getValue() ) );
+            }
+        }
+
+        if ( inputFile != null )
+        {
+            redirect( builder, "redirectInput", invokeRedirect( "from", File.class, inputFile ) );
+        }
+        else if ( redirectOutput && !closeInput )
+        {
+            redirect( builder, "redirectInput", inherit() );
+        }
+
+        if ( redirectOutput && outputFile != null )
+        {
+            builder.redirectErrorStream( true );
+            redirect( builder, "redirectOutput", invokeRedirect( "to", File.class, outputFile ) );
+        }
+        else if ( redirectOutput )
+        {
+            redirect( builder, "redirectOutput", inherit() );
+            redirect( builder, "redirectError", inherit() );
+        }
+        return builder.start();
+    }
+
+    private static Object inherit()
+        throws IOException
+    {
+        try
+        {
+            return Class.forName( REDIRECT_CLASS ).getField( "INHERIT" ).get( null );
+        }
+        catch ( Exception e )
+        {
+            throw new IOException( "Cannot redirect the process streams: " + e );
+        }
+    }
+
+    private static Object invokeRedirect( String factory, Class<?> type, Object argument )
+        throws IOException
+    {
+        try
+        {
+            return Class.forName( REDIRECT_CLASS ).getMethod( factory, type ).invoke( null, argument );
+        }
+        catch ( Exception e )
+        {
+            throw new IOException( "Cannot redirect the process streams: " + e );
+        }
+    }
+
+    private static void redirect( ProcessBuilder builder, String method, Object redirect )
+        throws IOException
+    {
+        try
+        {
+            Method setter = ProcessBuilder.class.getMethod( method, Class.forName( REDIRECT_CLASS ) );
+            setter.invoke( builder, redirect );
+        }
+        catch ( InvocationTargetException e )
+        {
+            throw new IOException( "Cannot redirect the process streams: " + e.getCause() );
+        }
+        catch ( Exception e )
+        {
+            throw new IOException( "Cannot redirect the process streams: " + e );
+        }
+    }
+
+    /**
+     * The streams of the process are connected to files, there is nothing to pump. A standard input which is not
+     * connected to a file is closed.
+     */
+    private static class NoStreamHandler
+        implements ExecuteStreamHandler
+    {
+        public void setProcessInputStream( OutputStream os )
+            throws IOException
+        {
+            os.close();
+        }
+
+        public void setProcessErrorStream( InputStream is )
+        {
+        }
+
+        public void setProcessOutputStream( InputStream is )
+        {
+        }
+
+        public void start()
+        {
+        }
+
+        public void stop()
+        {
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package org.codehaus.mojo.exec;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+/**
+ * Wrapper class for the resourceControls argument type of the exec goal: the scheduling priority, I/O class, CPU
+ * affinity and resource limits applied to the executed program on Linux. Unset values leave the setting of Maven
+ * unchanged.
+ */
+public class ResourceControls
+{
+    private Integer nice;
+
+    private String ioClass;
+
+    private Integer ioPriority;
+
+    private String cpuAffinity;
+
+    private Long maxMemory;
+
+    private Long maxOpenFiles;
+
+    private Long maxCpuTime;
+
+    /**
+     * <p>
+     * Getter for the field <code>nice</code>, the niceness added to the priority of the program, from -20 (highest
+     * priority, requires privileges) to 19 (lowest priority).
+     * </p>
+     *
+     * @return the niceness, <code>null</code> if unset.
+     */
+    public Integer getNice()
+    {
+        return nice;
+    }
+
+    /**
+     * <p>
+     * Setter for the field <code>nice</code>.
+     * </p>
+     *
+     * @param nice the niceness.
+     */
+    public void setNice( Integer nice )
+    {
+        this.nice = nice;
+    }
+
+    /**
+     * <p>
+     * Getter for the field <code>ioClass</code>, the I/O scheduling class: <code>idle</code>,
+     * <code>best-effort</code> or <code>realtime</code> (requires privileges).
+     * </p>
+     *
+     * @return a {@link java.lang.String} object.
+     */
+    public String getIoClass()
+    {
+        return ioClass;
+    }
+
+    /**
+     * <p>
+     * Setter for the field <code>ioClass</code>.
+     * </p>
+     *
+     * @param ioClass a {@link java.lang.String} object.
+     */
+    public void setIoClass( String ioClass )
+    {
+        this.ioClass = ioClass;
+    }
+
+    /**
+     * <p>
+     * Getter for the field <code>ioPriority</code>, the priority within the <code>best-effort</code> and
+     * <code>realtime</code> I/O classes, from 0 (highest) to 7 (lowest).
+     * </p>
+     *
+     * @return the priority, <code>null</code> if unset.
+     */
+    public Integer getIoPriority()
+    {
+        return ioPriority;
+    }
+
+    /**
+     * <p>
+     * Setter for the field <code>ioPriority</code>.
+     * </p>
+     *
+     * @param ioPriority the priority.
+     */
+    public void setIoPriority( Integer ioPriority )
+    {
+        this.ioPriority = ioPriority;
+    }
+
+    /**
+     * <p>
+     * Getter for the field <code>cpuAffinity</code>, the CPUs the program may run on, as a list like
+     * <code>0,2,4-7</code>.
+     * </p>
+     *
+     * @return a {@link java.lang.String} object.
+     */
+    public String getCpuAffinity()
+    {
+        return cpuAffinity;
+    }
+
+    /**
+     * <p>
+     * Setter for the field <code>cpuAffinity</code>.
+     * </p>
+     *
+     * @param cpuAffinity a {@link java.lang.String} object.
+     */
+    public void setCpuAffinity( String cpuAffinity )
+    {
+        this.cpuAffinity = cpuAffinity;
+    }
+
+    /**
+     * <p>
+     * Getter for the field <code>maxMemory</code>, the maximum size of the address space of each process in
+     * megabytes.
+     * </p>
+     *
+     * @return the limit, <code>null</code> if unset.
+     */
+    public Long getMaxMemory()
+    {
+        return maxMemory;
+    }
+
+    /**
+     * <p>
+     * Setter for the field <code>maxMemory</code>.
+     * </p>
+     *
+     * @param maxMemory the limit.
+     */
+    public void setMaxMemory( Long maxMemory )
+    {
+        this.maxMemory = maxMemory;
+    }
+
+    /**
+     * <p>
+     * Getter for the field <code>maxOpenFiles</code>, the maximum number of files each process may open.
+     * </p>
+     *
+     * @return the limit, <code>null</code> if unset.
+     */
+    public Long getMaxOpenFiles()
+    {
+        return maxOpenFiles;
+    }
+
+    /**
+     * <p>
+     * Setter for the field <code>maxOpenFiles</code>.
+     * </p>
+     *
+     * @param maxOpenFiles the limit.
+     */
+    public void setMaxOpenFiles( Long maxOpenFiles )
+    {
+        this.maxOpenFiles = maxOpenFiles;
+    }
+
+    /**
+     * <p>
+     * Getter for the field <code>maxCpuTime</code>, the maximum CPU time of each process in seconds.
+     * </p>
+     *
+     * @return the limit, <code>null</code> if unset.
+     */
+    public Long getMaxCpuTime()
+    {
+        return maxCpuTime;
+    }
+
+    /**
+     * <p>
+     * Setter for the field <code>maxCpuTime</code>.
+     * </p>
+     *
+     * @param maxCpuTime the limit.
+     */
+    public void setMaxCpuTime( Long maxCpuTime )
+    {
+        this.maxCpuTime = maxCpuTime;
+    }
+
+    public String toString()
+    {
+        return "ResourceControls {nice " + nice + ", ioClass " + ioClass + " " + ioPriority + ", cpuAffinity "
+            + cpuAffinity + ", maxMemory " + maxMemory + ", maxOpenFiles " + maxOpenFiles + ", maxCpuTime "
+            + maxCpuTime + "}";
+    }
+}
@@ -0,0 +1,137 @@
+package org.codehaus.mojo.exec;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import org.apache.commons.exec.CommandLine;
+
+/**
+ * Applies {@link ResourceControls} to a command line by starting it through the Linux tools which set them up and
+ * then execute the program in the same process: <code>nice</code>, <code>ionice</code>, <code>taskset</code> and
+ * <code>prlimit</code>. The settings are inherited by the processes the program starts.
+ */
+final class ResourceLauncher
+{
+    private ResourceLauncher()
+    {
+        // utility class
+    }
+
+    /**
+     * @return true if the operating system is Linux
+     */
+    static boolean isSupported()
+    {
+        return System.getProperty( "os.name" ).toLowerCase( Locale.ENGLISH ).startsWith( "linux" );
+    }
+
+    /**
+     * @param controls the controls to apply
+     * @return the tools and their options which apply the controls, empty if none is set
+     * @throws IllegalArgumentException if a control has an invalid value
+     */
+    static List<String> getPrefix( ResourceControls controls )
+    {
+        List<String> prefix = new ArrayList<String>();
+        if ( controls.getNice() != null )
+        {
+            prefix.add( "nice" );
+            prefix.add( "-n" );
+            prefix.add( controls.getNice().toString() );
+        }
+        if ( controls.getIoClass() != null )
+        {
+            prefix.add( "ionice" );
+            prefix.add( "-c" );
+            prefix.add( getIoClassNumber( controls.getIoClass() ) );
+            if ( controls.getIoPriority() != null )
+            {
+                prefix.add( "-n" );
+                prefix.add( controls.getIoPriority().toString() );
+            }
+        }
+        if ( controls.getCpuAffinity() != null )
+        {
+            prefix.add( "taskset" );
+            prefix.add( "-c" );
+            prefix.add( controls.getCpuAffinity() );
+        }
+
+        List<String> limits = new ArrayList<String>();
+        if ( controls.getMaxMemory() != null )
+        {
+            limits.add( "--as=" + controls.getMaxMemory().longValue() * 1024 * 1024 );
+        }
+        if ( controls.getMaxOpenFiles() != null )
+        {
+            limits.add( "--nofile=" + controls.getMaxOpenFiles() );
+        }
+        if ( controls.getMaxCpuTime() != null )
+        {
+            limits.add( "--cpu=" + controls.getMaxCpuTime() );
+        }
+        if ( !limits.isEmpty() )
+        {
+            prefix.add( "prlimit" );
+            prefix.addAll( limits );
+            prefix.add( "--" );
+        }
+        return prefix;
+    }
+
+    /**
+     * @param prefix the tools applying the controls, as returned by {@link #getPrefix(ResourceControls)}
+     * @return the command line starting the program through the tools
+     */
+    static CommandLine wrap( CommandLine commandLine, List<String> prefix )
+    {
+        if ( prefix.isEmpty() )
+        {
+            return commandLine;
+        }
+        CommandLine wrapped = new CommandLine( prefix.get( 0 ) );
+        for ( String argument : prefix.subList( 1, prefix.size() ) )
+        {
+            wrapped.addArgument( argument, false );
+        }
+        wrapped.addArguments( commandLine.toStrings(), false );
+        return wrapped;
+    }
+
+    private static String getIoClassNumber( String ioClass )
+    {
+        if ( "realtime".equals( ioClass ) )
+        {
+            return "1";
+        }
+        if ( "best-effort".equals( ioClass ) )
+        {
+            return "2";
+        }
+        if ( "idle".equals( ioClass ) )
+        {
+            return "3";
+        }
+        throw new IllegalArgumentException( "Invalid ioClass '" + ioClass + "', use idle, best-effort or realtime." );
+    }
+}
@@ -0,0 +1,194 @@
+package org.codehaus.mojo.exec;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes a file which is rolled over to numbered segments when it reaches a maximum size, see
+ * {@link ExecMojo#outputFileMaxSize}.
+ * <p>
+ * The current output is always written to the file itself. When it is full, it is renamed to segment 1, the previous
+ * segment 1 to segment 2 and so on, and the oldest segment is deleted. The size counts the bytes written to the
+ * stream, before any compression. The stream is thread safe, so the standard and the error output can share it.
+ * </p>
+ */
+class RollingOutputStream
+    extends OutputStream
+{
+    private final File file;
+
+    private final long maxSize;
+
+    private final int segments;
+
+    private final boolean compress;
+
+    private OutputStream out;
+
+    private long size;
+
+    /**
+     * @param file the file, it is truncated and its old segments are deleted first
+     * @param maxSize the maximum number of bytes written to the file and to each segment
+     * @param segments the number of segments kept besides the file
+     * @param compress whether the file and the segments are compressed with gzip
+     */
+    RollingOutputStream( File file, long maxSize, int segments, boolean compress )
+        throws IOException
+    {
+        if ( maxSize <= 0 )
+        {
+            throw new IllegalArgumentException( "maxSize must be positive: " + maxSize );
+        }
+        this.file = file;
+        this.maxSize = maxSize;
+        this.segments = Math.max( 0, segments );
+        this.compress = compress;
+
+        for ( int i = 1; i <= this.segments; i++ )
+        {
+            delete( getSegment( file, i ) );
+        }
+        out = open();
+    }
+
+    /**
+     * @return the file of the segment with the given number: <code>out.log.1</code> for <code>out.log</code>, and
+     *         <code>out.log.1.gz</code> for <code>out.log.gz</code>
+     */
+    static File getSegment( File file, int index )
+    {
+        String name = file.getName();
+        if ( AsyncGzipOutputStream.isGzipFile( file ) )
+        {
+            int extension = name.length() - ".gz".length();
+            name = name.substring( 0, extension ) + "." + index + name.substring( extension );
+        }
+        else
+        {
+            name = name + "." + index;
+        }
+        return new File( file.getParentFile(), name );
+    }
+
+    public synchronized void write( int b )
+        throws IOException
+    {
+        write( new byte[] { (byte) b }, 0, 1 );
+    }
+
+    public synchronized void write( byte[] b, int off, int len )
+        throws IOException
+    {
+        if ( out == null )
+        {
+            throw new IOException( "Stream closed" );
+        }
+        while ( len > 0 )
+        {
+            if ( size == maxSize )
+            {
+                roll();
+            }
+            int count = (int) Math.min( len, maxSize - size );
+            out.write( b, off, count );
+            size += count;
+            off += count;
+            len -= count;
+        }
+    }
+
+    public synchronized void flush()
+        throws IOException
+    {
+        if ( out != null )
+        {
+            out.flush();
+        }
+    }
+
+    public synchronized void close()
+        throws IOException
+    {
+        if ( out != null )
+        {
+            OutputStream current = out;
+            out = null;
+            current.close();
+        }
+    }
+
+    private void roll()
+        throws IOException
+    {
+        OutputStream current = out;
+        out = null;
+        current.close();
+
+        if ( segments == 0 )
+        {
+            delete( file );
+        }
+        else
+        {
+            delete( getSegment( file, segments ) );
+            for ( int i = segments - 1; i >= 1; i-- )
+            {
+                File segment = getSegment( file, i );
+                if ( segment.exists() )
+                {
+                    rename( segment, getSegment( file, i + 1 ) );
+                }
+            }
+            rename( file, getSegment( file, 1 ) );
+        }
+
+        out = open();
+        size = 0;
+    }
+
+    private OutputStream open()
+        throws IOException
+    {
+        return compress ? new AsyncGzipOutputStream( file ) : new FileOutputStream( file );
+    }
+
+    private static void rename( File from, File to )
+        throws IOException
+    {
+        if ( !from.renameTo( to ) )
+        {
+            throw new IOException( "Could not roll over " + from + " to " + to );
+        }
+    }
+
+    private static void delete( File file )
+        throws IOException
+    {
+        if ( file.exists() && !file.delete() )
+        {
+            throw new IOException( "Could not delete " + file );
+        }
+    }
+}
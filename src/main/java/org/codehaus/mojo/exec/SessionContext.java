@@ -0,0 +1,80 @@
+package org.codehaus.mojo.exec;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.apache.maven.execution.MavenSession;
+
+/**
+ * Holds state which must survive between executions of the plugin within the same Maven session, such as running
+ * worker processes or caches. The plugin realm is shared by all modules of a reactor, so the state is kept in a static
+ * map keyed by the session. The session is <code>null</code> in unit tests, in which case a shared fallback context is
+ * used.
+ */
+final class SessionContext
+{
+    private static final Object NO_SESSION = new Object();
+
+    private static final Map<Object, Map<Class<?>, Object>> CONTEXTS = new WeakHashMap<Object, Map<Class<?>, Object>>();
+
+    private SessionContext()
+    {
+    }
+
+    /**
+     * Get the session scoped instance of the specified type, creating it with its default constructor the first time.
+     *
+     * @param session the current session, may be <code>null</code>
+     * @param type the type of the instance
+     * @return the instance bound to the session
+     */
+    static synchronized <T> T get( MavenSession session, Class<T> type )
+    {
+        Object key = session != null ? session : NO_SESSION;
+        Map<Class<?>, Object> context = CONTEXTS.get( key );
+        if ( context == null )
+        {
+            context = new HashMap<Class<?>, Object>();
+            CONTEXTS.put( key, context );
+        }
+
+        Object value = context.get( type );
+        if ( value == null )
+        {
+            try
+            {
+                value = type.newInstance();
+            }
+            catch ( InstantiationException e )
+            {
+                throw new IllegalStateException( "Cannot create session scoped " + type.getName() + ": " + e );
+            }
+            catch ( IllegalAccessException e )
+            {
+                throw new IllegalStateException( "Cannot create session scoped " + type.getName() + ": " + e );
+            }
+            context.put( type, value );
+        }
+        return type.cast( value );
+    }
+}
@@ -0,0 +1,277 @@
+package org.codehaus.mojo.exec;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.apache.commons.exec.ExecuteStreamHandler;
+
+/**
+ * Session scoped reader of the output of all processes started with {@link ExecMojo#pollOutput}. A single thread
+ * copies the output of every registered process, instead of two pump threads per process. Only the pump threads are
+ * saved: the thread which started a process still blocks until it exits, as without the poller.
+ * <p>
+ * The streams of a <code>java.lang.Process</code> are not selectable channels, so the thread polls them: it only reads
+ * the bytes reported by <code>available()</code>, which never blocks, and sleeps up to 10 milliseconds when no stream
+ * had any output, which delays output after a pause by as much. A stream is complete once its process exited and
+ * nothing is left to read. Output written after the exit by descendants still holding the pipe is not copied.
+ * </p>
+ */
+class StreamPoller
+{
+    private static final int BUFFER_SIZE = 8 * 1024;
+
+    private static final long MAX_IDLE_SLEEP = 10;
+
+    private final List<Channel> channels = new ArrayList<Channel>();
+
+    private Thread poller;
+
+    /**
+     * @param out the sink of the standard output of the process
+     * @param err the sink of the error output of the process
+     * @return a stream handler for a single execution, copying the output through this poller. The standard
+     *         input of the process is closed.
+     */
+    ExecuteStreamHandler createStreamHandler( OutputStream out, OutputStream err )
+    {
+        return new StreamHandler( out, err );
+    }
+
+    private synchronized Channel register( InputStream in, OutputStream out )
+    {
+        Channel channel = new Channel( in, out );
+        channels.add( channel );
+        if ( poller == null )
+        {
+            poller = new Thread( "exec-stream-poller" )
+            {
+                public void run()
+                {
+                    poll();
+                }
+            };
+            poller.setDaemon( true );
+            poller.start();
+        }
+        return channel;
+    }
+
+    /**
+     * @return the registered channels, <code>null</code> if there are none, in which case the poller terminates
+     */
+    private synchronized List<Channel> snapshot()
+    {
+        if ( channels.isEmpty() )
+        {
+            poller = null;
+            return null;
+        }
+        return new ArrayList<Channel>( channels );
+    }
+
+    private synchronized void unregister( Channel channel )
+    {
+        channels.remove( channel );
+        channel.done.countDown();
+    }
+
+    private void poll()
+    {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        long sleep = 1;
+        List<Channel> current;
+        while ( ( current = snapshot() ) != null )
+        {
+            boolean copied = false;
+            for ( Channel channel : current )
+            {
+                copied |= channel.copy( buffer );
+            }
+
+            if ( copied )
+            {
+                sleep = 1;
+                continue;
+            }
+            try
+            {
+                Thread.sleep( sleep );
+            }
+            catch ( InterruptedException e )
+            {
+                // only stops when all channels are done
+            }
+            sleep = Math.min( sleep * 2, MAX_IDLE_SLEEP );
+        }
+    }
+
+    /**
+     * One output stream of a process.
+     */
+    private class Channel
+    {
+        private final InputStream in;
+
+        private final OutputStream out;
+
+        private final CountDownLatch done = new CountDownLatch( 1 );
+
+        private volatile boolean exited;
+
+        private boolean dirty;
+
+        Channel( InputStream in, OutputStream out )
+        {
+            this.in = in;
+            this.out = out;
+        }
+
+        /**
+         * Copy the available bytes, called by the poller only.
+         *
+         * @return true if bytes were copied
+         */
+        boolean copy( byte[] buffer )
+        {
+            // read the flag before checking the stream, so no output written before the exit is missed
+            boolean finished = exited;
+            try
+            {
+                int available = in.available();
+                if ( available > 0 )
+                {
+                    int read = in.read( buffer, 0, Math.min( available, buffer.length ) );
+                    if ( read > 0 )
+                    {
+                        out.write( buffer, 0, read );
+                        dirty = true;
+                        return true;
+                    }
+                    finished = read < 0;
+                }
+                if ( dirty )
+                {
+                    out.flush();
+                    dirty = false;
+                }
+            }
+            catch ( IOException e )
+            {
+                // the stream was closed or the sink failed, like the pumps of commons-exec ignore it
+                finished = true;
+            }
+            if ( finished )
+            {
+                unregister( this );
+            }
+            return false;
+        }
+
+        /**
+         * Called once the process exited, wait until the remaining output was copied.
+         */
+        void finish()
+        {
+            exited = true;
+            boolean interrupted = false;
+            while ( true )
+            {
+                try
+                {
+                    done.await();
+                    break;
+                }
+                catch ( InterruptedException e )
+                {
+                    interrupted = true;
+                }
+            }
+            if ( interrupted )
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Registers the streams of one process with the poller.
+     */
+    private class StreamHandler
+        implements ExecuteStreamHandler
+    {
+        private final OutputStream out;
+
+        private final OutputStream err;
+
+        private OutputStream processInput;
+
+        private InputStream processOutput;
+
+        private InputStream processError;
+
+        private Channel outChannel;
+
+        private Channel errChannel;
+
+        StreamHandler( OutputStream out, OutputStream err )
+        {
+            this.out = out;
+            this.err = err;
+        }
+
+        public void setProcessInputStream( OutputStream os )
+        {
+            processInput = os;
+        }
+
+        public void setProcessOutputStream( InputStream is )
+        {
+            processOutput = is;
+        }
+
+        public void setProcessErrorStream( InputStream is )
+        {
+            processError = is;
+        }
+
+        public void start()
+            throws IOException
+        {
+            processInput.close();
+            outChannel = register( processOutput, out );
+            errChannel = register( processError, err );
+        }
+
+        /**
+         * Called by the executor once the process exited.
+         */
+        public void stop()
+        {
+            outChannel.finish();
+            errChannel.finish();
+        }
+    }
+}
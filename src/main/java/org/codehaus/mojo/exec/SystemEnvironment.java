@@ -0,0 +1,73 @@
+package org.codehaus.mojo.exec;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+import org.apache.maven.plugin.logging.Log;
+import org.codehaus.plexus.util.cli.CommandLineUtils;
+
+/**
+ * Session scoped snapshot of the environment variables of Maven, the base of the {@link EnvironmentOverlay} of every
+ * execution. It is taken by the first execution and never changes afterwards.
+ */
+class SystemEnvironment
+{
+    private Map<String, String> variables;
+
+    /**
+     * @param log the log receiving the variables when the snapshot is taken
+     * @return the immutable snapshot
+     */
+    synchronized Map<String, String> getVariables( Log log )
+    {
+        if ( variables == null )
+        {
+            Map<String, String> snapshot = new HashMap<String, String>();
+            try
+            {
+                Properties systemEnvVars = CommandLineUtils.getSystemEnvVars();
+                for ( Map.Entry<?, ?> entry : systemEnvVars.entrySet() )
+                {
+                    snapshot.put( (String) entry.getKey(), (String) entry.getValue() );
+                }
+            }
+            catch ( IOException x )
+            {
+                log.error( "Could not assign default system enviroment variables.", x );
+            }
+            variables = Collections.unmodifiableMap( snapshot );
+
+            if ( log.isDebugEnabled() )
+            {
+                for ( Map.Entry<String, String> entry : new TreeMap<String, String>( variables ).entrySet() )
+                {
+                    log.debug( "system env: " + entry.getKey() + "=" + entry.getValue() );
+                }
+            }
+        }
+        return variables;
+    }
+}
@@ -0,0 +1,293 @@
+package org.codehaus.mojo.exec;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes the standard and error output of a process both to a file and to the console, see
+ * {@link ExecMojo#teeOutput}.
+ * <p>
+ * The file is written synchronously through a <code>FileChannel</code>, directly from the bytes read from the process,
+ * so it is always complete. A compressing file stream is written through a channel as well. The console is written by
+ * a separate thread from a fixed pool of reusable buffers. When the console cannot keep up and all buffers are in use,
+ * the pumping thread waits at most {@link #CONSOLE_TIMEOUT} milliseconds for a free buffer. If none is freed in time,
+ * the console skips the output until a buffer is free again, so a blocked console cannot stall the process. The
+ * number of skipped bytes is reported on the console once it caught up.
+ * </p>
+ */
+class TeeOutput
+{
+    static final long CONSOLE_TIMEOUT = 1000;
+
+    private static final int CHUNK_SIZE = 8 * 1024;
+
+    private static final int CHUNK_COUNT = 32;
+
+    private final File file;
+
+    private final OutputStream fileStream;
+
+    private final WritableByteChannel channel;
+
+    private final BlockingQueue<Chunk> free = new ArrayBlockingQueue<Chunk>( CHUNK_COUNT );
+
+    private final BlockingQueue<Chunk> full = new ArrayBlockingQueue<Chunk>( CHUNK_COUNT + 1 );
+
+    private final Chunk end = new Chunk();
+
+    private final Thread consoleWriter;
+
+    private final OutputStream consoleOut;
+
+    private final OutputStream out;
+
+    private final OutputStream err;
+
+    private long skipped;
+
+    /**
+     * Set once the console did not free a buffer within the timeout, until it frees one again. Meanwhile chunks are
+     * skipped without waiting.
+     */
+    private volatile boolean stalled;
+
+    /**
+     * @param file the file receiving the complete output, it is truncated first
+     * @param consoleOut the console stream for the standard output
+     * @param consoleErr the console stream for the error output
+     */
+    TeeOutput( File file, OutputStream consoleOut, OutputStream consoleErr )
+        throws IOException
+    {
+        this( file, new FileOutputStream( file ), consoleOut, consoleErr );
+    }
+
+    /**
+     * @param file the name of the file, for messages
+     * @param fileStream the stream receiving the complete output, e.g. a compressing stream. It is written through a
+     *            channel, so a <code>FileOutputStream</code> is written without copying.
+     * @param consoleOut the console stream for the standard output
+     * @param consoleErr the console stream for the error output
+     */
+    TeeOutput( File file, OutputStream fileStream, OutputStream consoleOut, OutputStream consoleErr )
+    {
+        this.file = file;
+        this.fileStream = fileStream;
+        this.channel =
+            fileStream instanceof FileOutputStream ? ( (FileOutputStream) fileStream ).getChannel()
+                            : Channels.newChannel( fileStream );
+        for ( int i = 0; i < CHUNK_COUNT; i++ )
+        {
+            free.add( new Chunk() );
+        }
+        this.consoleOut = consoleOut;
+        this.out = new TeeStream( consoleOut );
+        this.err = new TeeStream( consoleErr );
+
+        consoleWriter = new Thread( "exec-tee-console" )
+        {
+            public void run()
+            {
+                writeConsole();
+            }
+        };
+        consoleWriter.setDaemon( true );
+        consoleWriter.start();
+    }
+
+    /**
+     * @return the stream receiving the standard output of the process
+     */
+    OutputStream getOut()
+    {
+        return out;
+    }
+
+    /**
+     * @return the stream receiving the error output of the process
+     */
+    OutputStream getErr()
+    {
+        return err;
+    }
+
+    /**
+     * Wait until the console caught up, at most {@link #CONSOLE_TIMEOUT} milliseconds, and close the file.
+     */
+    void close()
+        throws IOException
+    {
+        try
+        {
+            full.put( end );
+            consoleWriter.join( CONSOLE_TIMEOUT );
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+        }
+        finally
+        {
+            fileStream.close();
+        }
+    }
+
+    private void write( OutputStream console, byte[] b, int off, int len )
+        throws IOException
+    {
+        synchronized ( channel )
+        {
+            ByteBuffer buffer = ByteBuffer.wrap( b, off, len );
+            while ( buffer.hasRemaining() )
+            {
+                channel.write( buffer );
+            }
+        }
+
+        for ( int pos = off; pos < off + len; pos += CHUNK_SIZE )
+        {
+            Chunk chunk;
+            try
+            {
+                chunk = stalled ? free.poll() : free.poll( CONSOLE_TIMEOUT, TimeUnit.MILLISECONDS );
+            }
+            catch ( InterruptedException e )
+            {
+                throw new InterruptedIOException( "Interrupted while writing to the console" );
+            }
+            int length = Math.min( CHUNK_SIZE, off + len - pos );
+            stalled = chunk == null;
+            if ( chunk == null )
+            {
+                synchronized ( this )
+                {
+                    skipped += length;
+                }
+                continue;
+            }
+            chunk.target = console;
+            System.arraycopy( b, pos, chunk.data, 0, length );
+            chunk.length = length;
+            full.add( chunk );
+        }
+    }
+
+    private void writeConsole()
+    {
+        try
+        {
+            Chunk chunk;
+            while ( ( chunk = full.take() ) != end )
+            {
+                reportSkipped( chunk.target );
+                try
+                {
+                    chunk.target.write( chunk.data, 0, chunk.length );
+                    if ( full.isEmpty() )
+                    {
+                        chunk.target.flush();
+                    }
+                }
+                catch ( IOException e )
+                {
+                    // the console is gone, the file is complete anyway
+                }
+                free.add( chunk );
+            }
+            reportSkipped( consoleOut );
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void reportSkipped( OutputStream console )
+    {
+        long count;
+        synchronized ( this )
+        {
+            count = skipped;
+            skipped = 0;
+        }
+        if ( count > 0 )
+        {
+            String message = "[" + count + " bytes of output were not shown on the console, see " + file + "]";
+            try
+            {
+                console.write( ( System.getProperty( "line.separator" ) + message
+                    + System.getProperty( "line.separator" ) ).getBytes() );
+            }
+            catch ( IOException e )
+            {
+                // ignore
+            }
+        }
+    }
+
+    /**
+     * A reusable buffer holding output for the console.
+     */
+    private static class Chunk
+    {
+        private final byte[] data = new byte[CHUNK_SIZE];
+
+        private int length;
+
+        private OutputStream target;
+    }
+
+    private class TeeStream
+        extends OutputStream
+    {
+        private final OutputStream console;
+
+        private final byte[] single = new byte[1];
+
+        TeeStream( OutputStream console )
+        {
+            this.console = console;
+        }
+
+        public void write( int b )
+            throws IOException
+        {
+            single[0] = (byte) b;
+            write( single, 0, 1 );
+        }
+
+        public void write( byte[] b, int off, int len )
+            throws IOException
+        {
+            TeeOutput.this.write( console, b, off, len );
+        }
+    }
+}
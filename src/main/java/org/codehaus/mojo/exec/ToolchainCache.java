@@ -0,0 +1,105 @@
+package org.codehaus.mojo.exec;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.toolchain.Toolchain;
+import org.apache.maven.toolchain.ToolchainManager;
+import org.codehaus.plexus.component.repository.exception.ComponentLookupException;
+
+/**
+ * Session scoped cache of the toolchain manager and of the tools found in the toolchains, so that many executions of
+ * the same tool scan the toolchain only once.
+ * <p>
+ * The toolchain itself is still asked from the build context on every execution, as each module may select another
+ * one. The tools are keyed by the description of the toolchain, e.g. <code>JDK[/opt/jdk]</code>, so a change of the
+ * toolchain uses other entries.
+ * </p>
+ */
+class ToolchainCache
+{
+    private static final String NOT_FOUND = "";
+
+    private final Map<String, String> tools = new HashMap<String, String>();
+
+    private ToolchainManager manager;
+
+    private boolean managerLookedUp;
+
+    private int lookups;
+
+    private int hits;
+
+    /**
+     * @return the <code>jdk</code> toolchain of the build context of the current module, or <code>null</code>
+     */
+    Toolchain getToolchain( MavenSession session )
+    {
+        ToolchainManager toolchainManager;
+        synchronized ( this )
+        {
+            if ( !managerLookedUp )
+            {
+                try
+                {
+                    manager = (ToolchainManager) session.getContainer().lookup( ToolchainManager.ROLE );
+                }
+                catch ( ComponentLookupException componentLookupException )
+                {
+                    // just ignore, could happen in pre-2.0.9 builds..
+                }
+                managerLookedUp = true;
+            }
+            toolchainManager = manager;
+        }
+        return toolchainManager != null ? toolchainManager.getToolchainFromBuildContext( "jdk", session ) : null;
+    }
+
+    /**
+     * @return the path of the tool in the toolchain, or <code>null</code> if it does not contain it
+     */
+    synchronized String findTool( Toolchain toolchain, String name )
+    {
+        String key = toolchain.getType() + '\0' + toolchain + '\0' + name;
+        lookups++;
+        String tool = tools.get( key );
+        if ( tool != null )
+        {
+            hits++;
+        }
+        else
+        {
+            tool = toolchain.findTool( name );
+            tools.put( key, tool != null ? tool : NOT_FOUND );
+        }
+        return tool != null && tool.length() > 0 ? tool : null;
+    }
+
+    /**
+     * @return a description of how many lookups were answered from the cache
+     */
+    synchronized String getStatistics()
+    {
+        return hits + " of " + lookups + " toolchain lookup(s) answered from the cache";
+    }
+}
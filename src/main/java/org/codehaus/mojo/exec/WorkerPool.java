@@ -0,0 +1,377 @@
+package org.codehaus.mojo.exec;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.TreeMap;
+
+import org.apache.commons.exec.StreamPumper;
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Session scoped pool of long running worker processes, see {@link ExecMojo#worker}.
+ * <p>
+ * The protocol between the plugin and a worker is line based and uses UTF-8. For every execution the plugin writes a
+ * line containing the number of arguments to the standard input of the worker, followed by one line per argument, so
+ * arguments must not contain line breaks.
+ * The worker writes the output of the request to its standard output and ends it with a line <code>##EXIT n</code>,
+ * where <code>n</code> is the exit code of the request. The error output of the worker is copied to
+ * <code>System.err</code> as long as the worker lives. The worker should terminate when its standard input is closed.
+ * A worker not answering a request within the timeout is destroyed together with its descendants.
+ * </p>
+ */
+class WorkerPool
+{
+    static final String EXIT_MARKER = "##EXIT ";
+
+    private static final String ENCODING = "UTF-8";
+
+    private final Map<String, Worker> workers = new HashMap<String, Worker>();
+
+    private Timer timer;
+
+    private Thread shutdownHook;
+
+    /**
+     * Execute a request in the worker matching the command, working directory and environment, starting the worker if
+     * none is running yet.
+     *
+     * @param command the command starting the worker
+     * @param dir the working directory of the worker
+     * @param enviro the environment of the worker
+     * @param arguments the arguments of this request
+     * @param idleTimeout number of milliseconds after which an unused worker is stopped
+     * @param timeout number of milliseconds the worker may take to answer the request, &lt;= 0 for no timeout
+     * @param gracePeriod number of milliseconds between terminating and killing the worker when the timeout is reached
+     * @param out where the output of the request is written to
+     * @param log the log
+     * @return the exit code of the request
+     * @throws IOException if the worker could not be started, broke the protocol or did not answer in time
+     */
+    int execute( List<String> command, File dir, Map<String, String> enviro, List<String> arguments,
+                 long idleTimeout, long timeout, long gracePeriod, OutputStream out, Log log )
+        throws IOException
+    {
+        for ( String argument : arguments )
+        {
+            if ( argument.indexOf( '\n' ) >= 0 || argument.indexOf( '\r' ) >= 0 )
+            {
+                throw new IOException( "Arguments passed to a worker must not contain line breaks: " + argument );
+            }
+        }
+
+        String key = command + " in " + dir + " with " + new TreeMap<String, String>( enviro );
+
+        Worker worker;
+        synchronized ( this )
+        {
+            worker = workers.get( key );
+            if ( worker == null || !worker.isAlive() )
+            {
+                log.info( "Starting worker process: " + command );
+                worker = new Worker( command, dir, enviro, gracePeriod );
+                workers.put( key, worker );
+            }
+            else
+            {
+                log.debug( "Reusing worker process: " + command );
+            }
+            // reserved, so the idle check does not stop it before the request is sent
+            worker.users++;
+        }
+
+        try
+        {
+            return worker.execute( arguments, out, timeout, getTimer() );
+        }
+        catch ( IOException e )
+        {
+            if ( worker.isTimedOut() )
+            {
+                e = new IOException( "The worker process did not answer within " + timeout + " ms and was stopped" );
+            }
+            synchronized ( this )
+            {
+                if ( workers.get( key ) == worker )
+                {
+                    workers.remove( key );
+                }
+            }
+            worker.destroy();
+            throw e;
+        }
+        finally
+        {
+            synchronized ( this )
+            {
+                worker.users--;
+            }
+            scheduleIdleCheck( key, worker, idleTimeout );
+        }
+    }
+
+    private synchronized void scheduleIdleCheck( final String key, final Worker worker, final long idleTimeout )
+    {
+        getTimer().schedule( new TimerTask()
+        {
+            public void run()
+            {
+                synchronized ( WorkerPool.this )
+                {
+                    if ( worker.users > 0 || !worker.isIdle( idleTimeout ) )
+                    {
+                        return;
+                    }
+                    if ( workers.get( key ) == worker )
+                    {
+                        workers.remove( key );
+                    }
+                }
+                worker.close();
+            }
+        }, Math.max( 1, idleTimeout ) );
+    }
+
+    private synchronized Timer getTimer()
+    {
+        if ( timer == null )
+        {
+            timer = new Timer( "exec-worker-timeout", true );
+            shutdownHook = new Thread( "exec-worker-shutdown" )
+            {
+                public void run()
+                {
+                    destroyAll();
+                }
+            };
+            Runtime.getRuntime().addShutdownHook( shutdownHook );
+        }
+        return timer;
+    }
+
+    /**
+     * Stop all running workers.
+     */
+    void destroyAll()
+    {
+        List<Worker> running;
+        synchronized ( this )
+        {
+            running = new ArrayList<Worker>( workers.values() );
+            workers.clear();
+        }
+        for ( Worker worker : running )
+        {
+            worker.destroy();
+        }
+    }
+
+    /**
+     * A single running worker process.
+     */
+    private static class Worker
+    {
+        private final Process process;
+
+        private final Writer requests;
+
+        private final BufferedReader responses;
+
+        private final byte[] lineSeparator = System.getProperty( "line.separator" ).getBytes();
+
+        private final long gracePeriod;
+
+        /**
+         * The number of requests which took the worker from the pool and did not finish yet, guarded by the pool.
+         */
+        private int users;
+
+        private volatile boolean timedOut;
+
+        private volatile long lastUsed = System.currentTimeMillis();
+
+        Worker( List<String> command, File dir, Map<String, String> enviro, long gracePeriod )
+            throws IOException
+        {
+            this.gracePeriod = gracePeriod;
+            ProcessBuilder builder = new ProcessBuilder( command );
+            builder.directory( dir );
+            builder.environment().clear();
+            for ( Map.Entry<String, String> variable : enviro.entrySet() )
+            {
+                // the process environment does not accept null, such variables are not set
+                if ( variable.getKey() != null && variable.getValue() != null )
+                {
+                    builder.environment().put( variable.getKey(), variable.getValue() );
+                }
+            }
+            process = builder.start();
+
+            requests = new OutputStreamWriter( process.getOutputStream(), ENCODING );
+            responses = new BufferedReader( new InputStreamReader( process.getInputStream(), ENCODING ) );
+
+            Thread errorPump = new Thread( new StreamPumper( process.getErrorStream(), System.err, false ) );
+            errorPump.setName( "exec-worker-stderr" );
+            errorPump.setDaemon( true );
+            errorPump.start();
+        }
+
+        /**
+         * Send a request and wait for its answer. The timeout only starts once the worker serves this request, not
+         * while the request waits for another one to finish.
+         */
+        synchronized int execute( List<String> arguments, OutputStream out, long timeout, Timer timer )
+            throws IOException
+        {
+            TimerTask timeoutTask = null;
+            if ( timeout > 0 )
+            {
+                timeoutTask = new TimerTask()
+                {
+                    public void run()
+                    {
+                        timeOut();
+                    }
+                };
+                timer.schedule( timeoutTask, timeout );
+            }
+            try
+            {
+                requests.write( arguments.size() + "\n" );
+                for ( String argument : arguments )
+                {
+                    requests.write( argument );
+                    requests.write( '\n' );
+                }
+                requests.flush();
+
+                String line;
+                while ( ( line = responses.readLine() ) != null )
+                {
+                    if ( line.startsWith( EXIT_MARKER ) )
+                    {
+                        out.flush();
+                        try
+                        {
+                            return Integer.parseInt( line.substring( EXIT_MARKER.length() ).trim() );
+                        }
+                        catch ( NumberFormatException e )
+                        {
+                            throw new IOException( "Worker process answered with an invalid exit code: " + line );
+                        }
+                    }
+                    out.write( line.getBytes() );
+                    out.write( lineSeparator );
+                }
+                throw new IOException( "Worker process terminated without answering the request" );
+            }
+            finally
+            {
+                if ( timeoutTask != null )
+                {
+                    timeoutTask.cancel();
+                }
+                lastUsed = System.currentTimeMillis();
+            }
+        }
+
+        boolean isIdle( long idleTimeout )
+        {
+            return System.currentTimeMillis() - lastUsed >= idleTimeout;
+        }
+
+        boolean isAlive()
+        {
+            try
+            {
+                process.exitValue();
+                return false;
+            }
+            catch ( IllegalThreadStateException e )
+            {
+                return true;
+            }
+        }
+
+        /**
+         * Ask the worker to terminate by closing its standard input.
+         */
+        void close()
+        {
+            try
+            {
+                requests.close();
+                for ( int i = 0; i < 10 && isAlive(); i++ )
+                {
+                    Thread.sleep( 100 );
+                }
+            }
+            catch ( IOException e )
+            {
+                // ignore, the process is destroyed anyway
+            }
+            catch ( InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+            }
+            destroy();
+        }
+
+        /**
+         * Destroy the worker together with its descendants, killing them if they are still alive after the grace
+         * period.
+         */
+        void destroy()
+        {
+            int pid = ProcessTree.pidOf( process );
+            if ( pid != ProcessTree.UNKNOWN_PID )
+            {
+                ProcessTree.destroy( ProcessTree.withDescendants( pid ), gracePeriod );
+            }
+            process.destroy();
+        }
+
+        /**
+         * Destroy the worker because it did not answer a request in time.
+         */
+        void timeOut()
+        {
+            timedOut = true;
+            destroy();
+        }
+
+        boolean isTimedOut()
+        {
+            return timedOut;
+        }
+    }
+}
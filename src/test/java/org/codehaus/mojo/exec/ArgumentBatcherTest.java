@@ -0,0 +1,64 @@
+package org.codehaus.mojo.exec;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+public class ArgumentBatcherTest
+    extends TestCase
+{
+    public void testSplitsByBudget()
+    {
+        List<String> values = Arrays.asList( new String[] { "a", "bb", "ccc", "d", "e" } );
+        long budget = ArgumentBatcher.size( "bb" ) + ArgumentBatcher.size( "a" );
+
+        List<List<String>> batches = ArgumentBatcher.split( values, budget, 0 );
+
+        assertEquals( "[[a, bb], [ccc], [d, e]]", batches.toString() );
+    }
+
+    public void testSplitsByCount()
+    {
+        List<String> values = Arrays.asList( new String[] { "a", "b", "c" } );
+        assertEquals( "[[a, b], [c]]", ArgumentBatcher.split( values, Long.MAX_VALUE, 2 ).toString() );
+        assertTrue( ArgumentBatcher.split( values.subList( 0, 0 ), 100, 0 ).isEmpty() );
+    }
+
+    public void testValueTooLong()
+    {
+        try
+        {
+            ArgumentBatcher.split( Arrays.asList( new String[] { "a", "too long" } ), ArgumentBatcher.size( "a" ), 0 );
+            fail( "expected failure" );
+        }
+        catch ( IllegalArgumentException e )
+        {
+            assertTrue( e.getMessage(), e.getMessage().indexOf( "'too long'" ) > 0 );
+        }
+    }
+
+    public void testLimit()
+    {
+        assertTrue( ArgumentBatcher.getCommandLineLimit() > ArgumentBatcher.HEADROOM );
+    }
+}
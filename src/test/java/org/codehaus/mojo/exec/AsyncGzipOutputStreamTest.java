@@ -0,0 +1,92 @@
+package org.codehaus.mojo.exec;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+
+import junit.framework.TestCase;
+
+import org.codehaus.plexus.util.IOUtil;
+
+public class AsyncGzipOutputStreamTest
+    extends TestCase
+{
+    public void testRoundTrip()
+        throws Exception
+    {
+        File file = new File( "target/async-gzip-test.txt.gz" );
+        file.getParentFile().mkdirs();
+
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        AsyncGzipOutputStream out = new AsyncGzipOutputStream( file );
+        // more than the whole buffer pool, so the writer has to wait for the compressing thread
+        for ( int i = 0; i < 200000; i++ )
+        {
+            byte[] line = ( "line " + i + "\n" ).getBytes();
+            out.write( line );
+            expected.write( line );
+        }
+        out.write( '!' );
+        expected.write( '!' );
+        out.close();
+        out.close();
+
+        assertTrue( AsyncGzipOutputStream.isGzipFile( file ) );
+        assertTrue( Arrays.equals( expected.toByteArray(), read( file ) ) );
+    }
+
+    public void testWriteAfterClose()
+        throws Exception
+    {
+        File file = new File( "target/async-gzip-closed.gz" );
+        file.getParentFile().mkdirs();
+        AsyncGzipOutputStream out = new AsyncGzipOutputStream( file );
+        out.close();
+        try
+        {
+            out.write( 1 );
+            fail( "expected failure" );
+        }
+        catch ( IOException e )
+        {
+            assertEquals( "Stream closed", e.getMessage() );
+        }
+        assertEquals( 0, read( file ).length );
+    }
+
+    private static byte[] read( File file )
+        throws IOException
+    {
+        GZIPInputStream in = new GZIPInputStream( new FileInputStream( file ) );
+        try
+        {
+            return IOUtil.toByteArray( in );
+        }
+        finally
+        {
+            IOUtil.close( in );
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package org.codehaus.mojo.exec;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.HashMap;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+public class EnvStreamConsumerTest
+    extends TestCase
+{
+    public void testNulTerminated()
+        throws Exception
+    {
+        byte[] output = ( "script output\n" + EnvStreamConsumer.NUL_PARSING_INDICATOR + "\n"
+            + "OPTS=-Da=b -Dc=d\0MULTI=line 1\nline 2\0EMPTY=\0LAST=unterminated" ).getBytes();
+        EnvStreamConsumer consumer = new EnvStreamConsumer();
+        // in small chunks, so that variables are split across writes
+        for ( int i = 0; i < output.length; i += 5 )
+        {
+            consumer.write( output, i, Math.min( 5, output.length - i ) );
+        }
+        consumer.close();
+
+        Map<String, String> expected = new HashMap<String, String>();
+        expected.put( "OPTS", "-Da=b -Dc=d" );
+        expected.put( "MULTI", "line 1\nline 2" );
+        expected.put( "EMPTY", "" );
+        expected.put( "LAST", "unterminated" );
+        assertEquals( expected, consumer.getParsedEnv() );
+    }
+
+    public void testLines()
+        throws Exception
+    {
+        EnvStreamConsumer consumer = new EnvStreamConsumer();
+        consumer.write( ( EnvStreamConsumer.START_PARSING_INDICATOR + "\r\nPATH=C:\\bin\r\nOPTS=a=b\r\n" ).getBytes() );
+        consumer.close();
+
+        Map<String, String> expected = new HashMap<String, String>();
+        expected.put( "PATH", "C:\\bin" );
+        expected.put( "OPTS", "a=b" );
+        assertEquals( expected, consumer.getParsedEnv() );
+    }
+
+    public void testEncoding()
+        throws Exception
+    {
+        byte[] output =
+            ( EnvStreamConsumer.START_PARSING_INDICATOR + "\nGREETING=gr\u00fc\u00df dich\n" ).getBytes( "UTF-8" );
+        EnvStreamConsumer consumer = new EnvStreamConsumer( "UTF-8" );
+        consumer.write( output );
+        consumer.close();
+
+        assertEquals( "gr\u00fc\u00df dich", consumer.getParsedEnv().get( "GREETING" ) );
+    }
+
+    @SuppressWarnings( "deprecation" )
+    public void testConsumeLine()
+    {
+        EnvStreamConsumer consumer = new EnvStreamConsumer();
+        consumer.consumeLine( EnvStreamConsumer.START_PARSING_INDICATOR );
+        consumer.consumeLine( "OPTS=a=b" );
+
+        assertEquals( "a=b", consumer.getParsedEnv().get( "OPTS" ) );
+    }
+}
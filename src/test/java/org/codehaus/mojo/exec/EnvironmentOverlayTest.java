@@ -0,0 +1,66 @@
+package org.codehaus.mojo.exec;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+public class EnvironmentOverlayTest
+    extends TestCase
+{
+    public void testOverlay()
+    {
+        Map<String, String> base = new HashMap<String, String>();
+        base.put( "PATH", "/bin" );
+        base.put( "HOME", "/home/user" );
+        EnvironmentOverlay enviro = new EnvironmentOverlay( Collections.unmodifiableMap( base ) );
+
+        assertEquals( "/bin", enviro.put( "PATH", "/opt/bin:/bin" ) );
+        assertNull( enviro.put( "JAVA_OPTS", "-Xmx1g" ) );
+        enviro.putAll( Collections.singletonMap( "HOME", "/tmp" ) );
+
+        Map<String, String> expected = new HashMap<String, String>();
+        expected.put( "PATH", "/opt/bin:/bin" );
+        expected.put( "HOME", "/tmp" );
+        expected.put( "JAVA_OPTS", "-Xmx1g" );
+        assertEquals( expected, enviro );
+        assertEquals( expected, new HashMap<String, String>( enviro ) );
+        assertEquals( 3, enviro.size() );
+        assertEquals( 3, enviro.getOverlay().size() );
+        assertEquals( "/bin", base.get( "PATH" ) );
+    }
+
+    public void testRemove()
+    {
+        EnvironmentOverlay enviro = new EnvironmentOverlay( Collections.singletonMap( "PATH", "/bin" ) );
+        try
+        {
+            enviro.remove( "PATH" );
+            fail( "expected failure" );
+        }
+        catch ( UnsupportedOperationException e )
+        {
+            assertEquals( "/bin", enviro.get( "PATH" ) );
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package org.codehaus.mojo.exec;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.codehaus.plexus.util.FileUtils;
+
+public class EnvironmentScriptCacheTest
+    extends TestCase
+{
+    public void testDirectory()
+        throws Exception
+    {
+        File directory = new File( "target/env-script-cache" );
+        FileUtils.deleteDirectory( directory );
+
+        Map<String, String> variables = new HashMap<String, String>();
+        variables.put( "OPTS", "-Da=b -Dc=d" );
+        variables.put( "MULTI", "line 1\nline 2" );
+        Map<String, String> enviro = new HashMap<String, String>();
+        new EnvironmentScriptCache().put( "key", variables, enviro, directory );
+
+        EnvironmentScriptCache cache = new EnvironmentScriptCache();
+        assertEquals( variables, cache.get( "key", enviro, directory ) );
+        assertNull( cache.get( "other", enviro, directory ) );
+        assertEquals( "kept in memory once read", variables, cache.get( "key", enviro, null ) );
+        assertNull( new EnvironmentScriptCache().get( "key", enviro, null ) );
+    }
+
+    public void testInheritedValues()
+        throws Exception
+    {
+        File directory = new File( "target/env-script-cache-inherited" );
+        FileUtils.deleteDirectory( directory );
+
+        Map<String, String> variables = new HashMap<String, String>();
+        variables.put( "PATH", "/sdk/bin:/usr/bin" );
+        variables.put( "SDK_HOME", "/sdk" );
+        Map<String, String> enviro = new HashMap<String, String>();
+        enviro.put( "PATH", "/usr/bin" );
+        new EnvironmentScriptCache().put( "key", variables, enviro, directory );
+
+        EnvironmentScriptCache cache = new EnvironmentScriptCache();
+        assertEquals( variables, cache.get( "key", enviro, directory ) );
+
+        enviro.put( "PATH", "/opt/bin:/usr/bin" );
+        assertNull( "set from another PATH", cache.get( "key", enviro, directory ) );
+
+        enviro.put( "PATH", "/usr/bin" );
+        enviro.put( "SDK_HOME", "/other" );
+        assertNull( "set while it was not inherited", cache.get( "key", enviro, directory ) );
+    }
+}
@@ -10,14 +10,18 @@ package org.codehaus.mojo.exec;
  */
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.PrintStream;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Properties;
 
 import org.apache.commons.exec.CommandLine;
 import org.apache.commons.exec.ExecuteException;
@@ -26,6 +30,8 @@ import org.apache.commons.exec.OS;
 import org.apache.maven.artifact.repository.ArtifactRepository;
 import org.apache.maven.artifact.repository.DefaultArtifactRepository;
 import org.apache.maven.artifact.repository.layout.ArtifactRepositoryLayout;
+import org.apache.maven.model.FileSet;
+import org.apache.maven.model.Model;
 import org.apache.maven.monitor.logging.DefaultLog;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.logging.SystemStreamLog;
@@ -34,6 +40,7 @@ import org.apache.maven.project.MavenProject;
 import org.apache.maven.project.MavenProjectBuilder;
 import org.codehaus.plexus.logging.Logger;
 import org.codehaus.plexus.logging.console.ConsoleLogger;
+import org.codehaus.plexus.util.FileUtils;
 import org.codehaus.plexus.util.StringOutputStream;
 
 /**
@@ -50,14 +57,14 @@ public class ExecMojoTest
     {
         public int executeResult;
 
-        public List<CommandLine> commandLines = new ArrayList<CommandLine>();
+        public List<CommandLine> commandLines = Collections.synchronizedList( new ArrayList<CommandLine>() );
 
         public String failureMsg;
 
         public Map systemProperties = new HashMap();
 
         protected int executeCommandLine( Executor exec, CommandLine commandLine, Map enviro, OutputStream out,
-                                          OutputStream err )
+                                          OutputStream err, InputStream in )
             throws IOException, ExecuteException
         {
             commandLines.add( commandLine );
@@ -73,6 +80,11 @@ public class ExecMojoTest
             return (String) systemProperties.get( key );
         }
 
+        protected String findExecutable( String name, String path, File dir )
+        {
+            return name.startsWith( "no-such-" ) ? null : new File( "/usr/bin", name ).getPath();
+        }
+
         int getAmountExecutedCommandLines()
         {
             return commandLines.size();
@@ -107,6 +119,28 @@ public class ExecMojoTest
         checkMojo( "mvn --version" );
     }
 
+    public void testMissingExecutable()
+    {
+        if ( !OS.isFamilyUnix() )
+        {
+            return;
+        }
+
+        mojo.setExecutable( "no-such-executable" );
+        mojo.setEnvironmentVariables( Collections.singletonMap( "PATH", "/custom/bin" ) );
+        try
+        {
+            mojo.execute();
+            fail( "expected failure" );
+        }
+        catch ( MojoExecutionException e )
+        {
+            assertEquals( "The executable 'no-such-executable' was not found on the PATH: /custom/bin",
+                          e.getMessage() );
+        }
+        assertEquals( 0, mojo.getAmountExecutedCommandLines() );
+    }
+
     /*
      * This one won't work yet public void xxtestSimpleRunPropertiesAndArguments() throws MojoExecutionException,
      * Exception { File pom = new File( getBasedir(), "src/test/projects/project1/pom.xml" ); String output = execute(
@@ -374,6 +408,830 @@ public class ExecMojoTest
         assertFalse( execMojo.isResultCodeAFailure( 5 ) );
     }
 
+    public void testCommands()
+        throws MojoExecutionException
+    {
+        mojo.setCommandThreads( 2 );
+        mojo.setCommands( Arrays.asList( new Command[] { createCommand( "mvn", "--version" ),
+            createCommand( "java", "-version" ), createCommand( "ant", "-version" ) } ) );
+        mojo.execute();
+
+        assertEquals( 3, mojo.getAmountExecutedCommandLines() );
+        List<String> executed = new ArrayList<String>();
+        for ( CommandLine commandLine : mojo.commandLines )
+        {
+            executed.add( getCommandLineAsString( commandLine ) );
+        }
+        assertTrue( executed.contains( "mvn --version" ) );
+        assertTrue( executed.contains( "java -version" ) );
+        assertTrue( executed.contains( "ant -version" ) );
+    }
+
+    public void testCommandsFailure()
+    {
+        mojo.executeResult = 1;
+        mojo.setCommandThreads( 1 );
+        mojo.setCommands( Arrays.asList( new Command[] { createCommand( "mvn", "--version" ) } ) );
+
+        try
+        {
+            mojo.execute();
+            fail( "expected failure" );
+        }
+        catch ( MojoExecutionException e )
+        {
+            assertEquals( "Result of " + mojo.getExecutedCommandline( 0 ) + " execution is: '1'.", e.getMessage() );
+        }
+    }
+
+    public void testCommandsSuccessCodes()
+        throws MojoExecutionException
+    {
+        mojo.executeResult = 1;
+        Command command = createCommand( "mvn", "--version" );
+        command.setSuccessCodes( new int[] { 0, 1 } );
+        mojo.setCommands( Arrays.asList( new Command[] { command } ) );
+
+        mojo.execute();
+
+        checkMojo( "mvn --version" );
+    }
+
+    public void testCommandsFailureDestroysSiblingProcessTrees()
+        throws Exception
+    {
+        if ( !OS.isFamilyUnix() )
+        {
+            return;
+        }
+
+        File marker = new File( "target/commands-orphan.txt" ).getAbsoluteFile();
+        marker.delete();
+        ExecMojo realMojo = new ExecMojo();
+        realMojo.setBasedir( File.createTempFile( "mvn-temp", "txt" ).getParentFile() );
+        realMojo.setCommandThreads( 2 );
+        realMojo.setCommands( Arrays.asList( new Command[] { command( "sh", "-c", "sleep 1; exit 3" ),
+            command( "sh", "-c", "(sleep 3; touch '" + marker + "') & wait" ) } ) );
+
+        long start = System.currentTimeMillis();
+        try
+        {
+            realMojo.execute();
+            fail( "expected failure" );
+        }
+        catch ( MojoExecutionException e )
+        {
+            assertEquals( "Command execution failed.", e.getMessage() );
+        }
+        assertTrue( System.currentTimeMillis() - start < 3000 );
+
+        Thread.sleep( 3000 );
+        assertFalse( marker.exists() );
+    }
+
+    public void testWorker()
+        throws Exception
+    {
+        ExecMojo realMojo = new ExecMojo();
+        realMojo.setBasedir( File.createTempFile( "mvn-temp", "txt" ).getParentFile() );
+        realMojo.setExecutable( new File( System.getProperty( "java.home" ), "bin/java" ).getAbsolutePath() );
+        realMojo.setWorker( true );
+        realMojo.setWorkerIdleTimeout( 5000 );
+        realMojo.setWorkerArguments( Arrays.asList( new String[] { "-cp",
+            new File( "target/test-classes" ).getAbsolutePath(), StubWorker.class.getName() } ) );
+        File output = new File( "target/worker-output.txt" ).getAbsoluteFile();
+        realMojo.setOutputFile( output );
+
+        realMojo.setArguments( Arrays.asList( new String[] { "hello" } ) );
+        realMojo.execute();
+        assertEquals( "request 1: hello", FileUtils.fileRead( output ).trim() );
+
+        realMojo.setArguments( Arrays.asList( new String[] { "world" } ) );
+        realMojo.execute();
+        assertEquals( "request 2: world", FileUtils.fileRead( output ).trim() );
+
+        realMojo.setArguments( Arrays.asList( new String[] { "3" } ) );
+        try
+        {
+            realMojo.execute();
+            fail( "expected failure" );
+        }
+        catch ( MojoExecutionException e )
+        {
+            assertTrue( e.getMessage(), e.getMessage().endsWith( "execution is: '3'." ) );
+        }
+        assertEquals( "request 3: 3", FileUtils.fileRead( output ).trim() );
+    }
+
+    public void testWorkerTimeout()
+        throws Exception
+    {
+        ExecMojo realMojo = new ExecMojo();
+        realMojo.setBasedir( File.createTempFile( "mvn-temp", "txt" ).getParentFile() );
+        realMojo.setExecutable( new File( System.getProperty( "java.home" ), "bin/java" ).getAbsolutePath() );
+        realMojo.setWorker( true );
+        realMojo.setWorkerIdleTimeout( 5000 );
+        realMojo.setWorkerArguments( Arrays.asList( new String[] { "-Dworker=timeout", "-cp",
+            new File( "target/test-classes" ).getAbsolutePath(), StubWorker.class.getName() } ) );
+        realMojo.setOutputFile( new File( "target/worker-timeout.txt" ).getAbsoluteFile() );
+        realMojo.setTimeout( 2000 );
+        realMojo.setTimeoutGracePeriod( 1000 );
+
+        realMojo.setArguments( Arrays.asList( new String[] { "hang" } ) );
+        long start = System.currentTimeMillis();
+        try
+        {
+            realMojo.execute();
+            fail( "expected timeout" );
+        }
+        catch ( MojoExecutionException e )
+        {
+            assertEquals( "The worker process did not answer within 2000 ms and was stopped",
+                          e.getCause().getMessage() );
+        }
+        assertTrue( System.currentTimeMillis() - start < 10000 );
+
+        realMojo.setArguments( Arrays.asList( new String[] { "line\nbreak" } ) );
+        try
+        {
+            realMojo.execute();
+            fail( "expected failure" );
+        }
+        catch ( MojoExecutionException e )
+        {
+            assertEquals( "Arguments passed to a worker must not contain line breaks: line\nbreak",
+                          e.getCause().getMessage() );
+        }
+
+        realMojo.setArguments( Arrays.asList( new String[] { "answered" } ) );
+        realMojo.execute();
+        assertEquals( "a new worker answers", "request 1: answered",
+                      FileUtils.fileRead( new File( "target/worker-timeout.txt" ) ).trim() );
+    }
+
+    public void testRedirectOutput()
+        throws Exception
+    {
+        ExecMojo realMojo = new ExecMojo();
+        realMojo.setBasedir( File.createTempFile( "mvn-temp", "txt" ).getParentFile() );
+        realMojo.setExecutable( new File( System.getProperty( "java.home" ), "bin/java" ).getAbsolutePath() );
+        realMojo.setArguments( Arrays.asList( new String[] { "-version" } ) );
+        File output = new File( "target/redirect-output.txt" ).getAbsoluteFile();
+        output.delete();
+        realMojo.setOutputFile( output );
+        realMojo.setRedirectOutput( true );
+
+        realMojo.execute();
+
+        // java -version writes to the error output, which is redirected to the file as well
+        assertTrue( FileUtils.fileRead( output ).indexOf( "version" ) >= 0 );
+    }
+
+    public void testInheritIo()
+        throws Exception
+    {
+        ExecMojo realMojo = new ExecMojo();
+        realMojo.setBasedir( File.createTempFile( "mvn-temp", "txt" ).getParentFile() );
+        realMojo.setExecutable( new File( System.getProperty( "java.home" ), "bin/java" ).getAbsolutePath() );
+        realMojo.setInheritIo( true );
+
+        realMojo.setArguments( Arrays.asList( new String[] { "-version" } ) );
+        realMojo.execute();
+
+        realMojo.setArguments( Arrays.asList( new String[] { "org.codehaus.mojo.exec.NoSuchClass" } ) );
+        try
+        {
+            realMojo.execute();
+            fail( "expected failure" );
+        }
+        catch ( MojoExecutionException e )
+        {
+            assertEquals( "Command execution failed.", e.getMessage() );
+        }
+    }
+
+    public void testCaptures()
+        throws Exception
+    {
+        ExecMojo realMojo = new ExecMojo();
+        MavenProject project = new MavenProject( new Model() );
+        realMojo.setProject( project );
+        realMojo.setBasedir( File.createTempFile( "mvn-temp", "txt" ).getParentFile() );
+        realMojo.setExecutable( new File( System.getProperty( "java.home" ), "bin/java" ).getAbsolutePath() );
+        realMojo.setArguments( Arrays.asList( new String[] { "-cp", new File( "target/test-classes" ).getAbsolutePath(),
+            DummyMain.class.getName(), "version=1.2.3" } ) );
+        Capture capture = new Capture();
+        capture.setProperty( "tool.version" );
+        capture.setPattern( "version=(\\S+)" );
+        realMojo.setCaptures( Collections.singletonList( capture ) );
+        File output = new File( "target/capture-output.txt" ).getAbsoluteFile();
+        realMojo.setOutputFile( output );
+
+        realMojo.execute();
+
+        assertEquals( "1.2.3", project.getProperties().getProperty( "tool.version" ) );
+        assertTrue( FileUtils.fileRead( output ).indexOf( "version=1.2.3" ) >= 0 );
+    }
+
+    public void testFailureReportsOutputTail()
+        throws Exception
+    {
+        if ( !OS.isFamilyUnix() )
+        {
+            return;
+        }
+
+        ExecMojo realMojo = new ExecMojo();
+        realMojo.setBasedir( File.createTempFile( "mvn-temp", "txt" ).getParentFile() );
+        realMojo.setExecutable( "sh" );
+        realMojo.setArguments( Arrays.asList( new String[] { "-c", "echo compiling; echo broken >&2; exit 3" } ) );
+        realMojo.setOutputTailSize( 1 );
+        File output = new File( "target/tail-output.log" ).getAbsoluteFile();
+        realMojo.setOutputFile( output );
+        realMojo.setOutputFileMaxSize( 1 );
+
+        try
+        {
+            realMojo.execute();
+            fail( "expected failure" );
+        }
+        catch ( MojoExecutionException e )
+        {
+            assertTrue( e.getMessage(),
+                        e.getMessage().startsWith( "Command execution failed.\nEnd of the output:\n" ) );
+            assertTrue( e.getMessage(), e.getMessage().indexOf( "broken" ) > 0 );
+        }
+        assertTrue( FileUtils.fileRead( output ).indexOf( "compiling" ) >= 0 );
+    }
+
+    public void testProcessStats()
+        throws Exception
+    {
+        if ( !ProcessStats.isSupported() )
+        {
+            return;
+        }
+
+        ExecMojo realMojo = new ExecMojo();
+        realMojo.setBasedir( File.createTempFile( "mvn-temp", "txt" ).getParentFile() );
+        realMojo.setExecutable( "sh" );
+        realMojo.setArguments( Arrays.asList( new String[] { "-c", "sleep 1 & wait" } ) );
+        realMojo.setProcessStats( true );
+        realMojo.setProcessStatsInterval( 50 );
+        File statsFile = new File( "target/process-stats.csv" );
+        statsFile.delete();
+        realMojo.setProcessStatsFile( statsFile );
+
+        realMojo.execute();
+
+        String[] lines = FileUtils.fileRead( statsFile ).split( "\n" );
+        assertEquals( 2, lines.length );
+        assertEquals( ProcessStats.CSV_HEADER, lines[0] );
+        assertTrue( lines[1], lines[1].startsWith( "\"[sh, -c, sleep 1 & wait]\"," ) );
+        // the command is quoted, the numbers follow it
+        String[] values = lines[1].substring( lines[1].lastIndexOf( '"' ) + 2 ).split( "," );
+        assertEquals( lines[1], 12, values.length );
+        assertTrue( "wall time " + values[0], Long.parseLong( values[0] ) >= 1000 );
+        assertTrue( "peak RSS " + values[3], Long.parseLong( values[3] ) > 0 );
+        assertTrue( "sampled the sleeping child: " + lines[1], Long.parseLong( values[10] ) >= 2 );
+        assertTrue( "samples " + values[11], Long.parseLong( values[11] ) > 0 );
+    }
+
+    public void testBatchArguments()
+        throws Exception
+    {
+        if ( !OS.isFamilyUnix() )
+        {
+            return;
+        }
+
+        ExecMojo realMojo = new ExecMojo();
+        realMojo.setBasedir( File.createTempFile( "mvn-temp", "txt" ).getParentFile() );
+        realMojo.setExecutable( "sh" );
+        Batch batch = new Batch();
+        for ( int i = 1; i <= 10; i++ )
+        {
+            batch.setArgument( "file" + i );
+        }
+        batch.setMaxArguments( 3 );
+        realMojo.setArguments( Arrays.asList( new Object[] { "-c", "echo $# $1 $2 $3 $4", "batch", batch, "last" } ) );
+        realMojo.setCommandThreads( 2 );
+        File output = new File( "target/batch-output.txt" ).getAbsoluteFile();
+        realMojo.setOutputFile( output );
+
+        realMojo.execute();
+
+        assertEquals( "4 file1 file2 file3 last\n4 file4 file5 file6 last\n4 file7 file8 file9 last\n2 file10 last\n",
+                      FileUtils.fileRead( output ) );
+    }
+
+    public void testPipeline()
+        throws Exception
+    {
+        if ( !OS.isFamilyUnix() )
+        {
+            return;
+        }
+
+        ExecMojo realMojo = new ExecMojo();
+        realMojo.setBasedir( File.createTempFile( "mvn-temp", "txt" ).getParentFile() );
+        realMojo.setPipeline( Arrays.asList( new Command[] { command( "printf", "c\\nb b\\na\\n" ),
+            command( "sort" ), command( "head", "-n", "2" ) } ) );
+        File output = new File( "target/pipeline-output.txt" ).getAbsoluteFile();
+        realMojo.setOutputFile( output );
+
+        realMojo.execute();
+
+        assertEquals( "a\nb b\n", FileUtils.fileRead( output ) );
+    }
+
+    public void testPipelineChecksEveryStage()
+        throws Exception
+    {
+        if ( !OS.isFamilyUnix() )
+        {
+            return;
+        }
+
+        ExecMojo realMojo = new ExecMojo();
+        realMojo.setBasedir( File.createTempFile( "mvn-temp", "txt" ).getParentFile() );
+        Command failing = command( "sh", "-c", "echo failing >&2; exit 3" );
+        Command tolerated = command( "sh", "-c", "cat; exit 1" );
+        tolerated.setSuccessCodes( new int[] { 1 } );
+        realMojo.setPipeline( Arrays.asList( new Command[] { failing, tolerated } ) );
+        realMojo.setOutputFile( new File( "target/pipeline-failure.txt" ).getAbsoluteFile() );
+        realMojo.setOutputTailSize( 16 );
+
+        try
+        {
+            realMojo.execute();
+            fail( "expected failure" );
+        }
+        catch ( MojoExecutionException e )
+        {
+            assertEquals( "Result of the pipeline [3, 1], failed: [sh, -c, echo failing >&2; exit 3]: '3'.\n"
+                + "End of the output:\nfailing", e.getMessage() );
+        }
+    }
+
+    public void testPipelineWithSlowUpstreamCommand()
+        throws Exception
+    {
+        if ( !OS.isFamilyUnix() )
+        {
+            return;
+        }
+
+        ExecMojo realMojo = new ExecMojo();
+        realMojo.setBasedir( File.createTempFile( "mvn-temp", "txt" ).getParentFile() );
+        realMojo.setPipeline( Arrays.asList( new Command[] { command( "sh", "-c", "echo x; echo y; sleep 2" ),
+            command( "head", "-n", "1" ) } ) );
+        File output = new File( "target/pipeline-slow-upstream.txt" ).getAbsoluteFile();
+        realMojo.setOutputFile( output );
+
+        realMojo.execute();
+
+        assertEquals( "x\n", FileUtils.fileRead( output ) );
+    }
+
+    public void testPipelineDoesNotWaitForDescendants()
+        throws Exception
+    {
+        if ( !OS.isFamilyUnix() )
+        {
+            return;
+        }
+
+        ExecMojo realMojo = new ExecMojo();
+        realMojo.setBasedir( File.createTempFile( "mvn-temp", "txt" ).getParentFile() );
+        realMojo.setPipeline( Arrays.asList( new Command[] { command( "printf", "a\\n" ),
+            command( "sh", "-c", "cat; sleep 10 &" ) } ) );
+        File output = new File( "target/pipeline-descendants.txt" ).getAbsoluteFile();
+        realMojo.setOutputFile( output );
+
+        long start = System.currentTimeMillis();
+        realMojo.execute();
+
+        assertTrue( System.currentTimeMillis() - start < 5000 );
+        assertEquals( "a\n", FileUtils.fileRead( output ) );
+    }
+
+    public void testPipelineSkipsNullVariables()
+        throws Exception
+    {
+        if ( !OS.isFamilyUnix() )
+        {
+            return;
+        }
+
+        ExecMojo realMojo = new ExecMojo();
+        realMojo.setBasedir( File.createTempFile( "mvn-temp", "txt" ).getParentFile() );
+        setVariableValueToObject( realMojo, "failWithNullKeyOrValueInEnvironment", Boolean.FALSE );
+        Map<String, String> variables = new HashMap<String, String>();
+        variables.put( "EMPTY_VAR", null );
+        variables.put( "SET_VAR", "set" );
+        realMojo.setEnvironmentVariables( variables );
+        realMojo.setPipeline( Arrays.asList( new Command[] { command( "sh", "-c", "echo ${EMPTY_VAR-unset} $SET_VAR" ),
+            command( "cat" ) } ) );
+        File output = new File( "target/pipeline-null-variables.txt" ).getAbsoluteFile();
+        realMojo.setOutputFile( output );
+
+        realMojo.execute();
+
+        assertEquals( "unset set\n", FileUtils.fileRead( output ) );
+    }
+
+    public void testPipelineTimeout()
+        throws Exception
+    {
+        if ( !OS.isFamilyUnix() )
+        {
+            return;
+        }
+
+        ExecMojo realMojo = new ExecMojo();
+        realMojo.setBasedir( File.createTempFile( "mvn-temp", "txt" ).getParentFile() );
+        realMojo.setPipeline( Arrays.asList( new Command[] { command( "sleep", "60" ), command( "cat" ) } ) );
+        realMojo.setOutputFile( new File( "target/pipeline-timeout.txt" ).getAbsoluteFile() );
+        realMojo.setTimeout( 300 );
+        realMojo.setTimeoutGracePeriod( 1000 );
+
+        long start = System.currentTimeMillis();
+        try
+        {
+            realMojo.execute();
+            fail( "expected timeout" );
+        }
+        catch ( MojoExecutionException e )
+        {
+            assertEquals( "The pipeline exceeded the timeout of 300 ms, its commands were stopped.", e.getMessage() );
+        }
+        assertTrue( System.currentTimeMillis() - start < 10000 );
+    }
+
+    public void testInputFile()
+        throws Exception
+    {
+        if ( !OS.isFamilyUnix() )
+        {
+            return;
+        }
+
+        File input = new File( "target/input-file.txt" ).getAbsoluteFile();
+        StringBuilder lines = new StringBuilder();
+        for ( int i = 0; i < 1000; i++ )
+        {
+            lines.append( "line " ).append( i ).append( '\n' );
+        }
+        FileUtils.fileWrite( input.getPath(), lines.toString() );
+
+        for ( boolean redirect : new boolean[] { false, true } )
+        {
+            ExecMojo realMojo = new ExecMojo();
+            realMojo.setBasedir( File.createTempFile( "mvn-temp", "txt" ).getParentFile() );
+            realMojo.setExecutable( "sh" );
+            realMojo.setArguments( Arrays.asList( new String[] { "-c", "wc -l | tr -d ' '" } ) );
+            realMojo.setInputFile( input );
+            realMojo.setRedirectOutput( redirect );
+            File output = new File( "target/input-file-output.txt" ).getAbsoluteFile();
+            realMojo.setOutputFile( output );
+
+            realMojo.execute();
+
+            assertEquals( "1000\n", FileUtils.fileRead( output ) );
+        }
+    }
+
+    public void testCloseStdin()
+        throws Exception
+    {
+        if ( !OS.isFamilyUnix() )
+        {
+            return;
+        }
+
+        ExecMojo realMojo = new ExecMojo();
+        realMojo.setBasedir( File.createTempFile( "mvn-temp", "txt" ).getParentFile() );
+        realMojo.setExecutable( "sh" );
+        realMojo.setArguments( Arrays.asList( new String[] { "-c", "cat; echo done" } ) );
+        realMojo.setCloseStdin( true );
+        realMojo.setOutputTailSize( 16 );
+        File output = new File( "target/close-stdin-output.txt" ).getAbsoluteFile();
+        realMojo.setOutputFile( output );
+
+        realMojo.execute();
+
+        assertEquals( "done\n", FileUtils.fileRead( output ) );
+    }
+
+    public void testEnvironmentScriptIsCached()
+        throws Exception
+    {
+        if ( !OS.isFamilyUnix() )
+        {
+            return;
+        }
+
+        File runs = new File( "target/env-script-runs.txt" ).getAbsoluteFile();
+        runs.delete();
+        File script = new File( "target/env-script.sh" ).getAbsoluteFile();
+        FileUtils.fileWrite( script.getPath(), "echo run >> " + runs + "\nSCRIPT_VAR=\"from script $INPUT_VAR\"\n"
+            + "MULTI_VAR='x=1\ny=2'\nexport SCRIPT_VAR MULTI_VAR\n" );
+        File output = new File( "target/env-script-output.txt" ).getAbsoluteFile();
+        File cacheDirectory = new File( "target/env-script-cache" ).getAbsoluteFile();
+        FileUtils.deleteDirectory( cacheDirectory );
+
+        for ( String input : new String[] { "a", "a", "b" } )
+        {
+            ExecMojo realMojo = new ExecMojo();
+            realMojo.setBasedir( File.createTempFile( "mvn-temp", "txt" ).getParentFile() );
+            realMojo.setExecutable( "sh" );
+            realMojo.setArguments( Arrays.asList( new String[] { "-c", "echo $SCRIPT_VAR; echo \"$MULTI_VAR\"" } ) );
+            realMojo.setEnvironmentVariables( Collections.singletonMap( "INPUT_VAR", input ) );
+            realMojo.setEnvironmentScript( script );
+            realMojo.setEnvironmentScriptCacheDirectory( cacheDirectory );
+            realMojo.setOutputFile( output );
+
+            realMojo.execute();
+
+            assertEquals( "from script " + input + "\nx=1\ny=2\n", FileUtils.fileRead( output ) );
+        }
+        assertEquals( "run\nrun\n", FileUtils.fileRead( runs ) );
+
+        // only the variables changed by the script are stored, not the environment of Maven
+        assertEquals( 2, cacheDirectory.listFiles().length );
+        for ( File cached : cacheDirectory.listFiles() )
+        {
+            Properties variables = new Properties();
+            InputStream in = new FileInputStream( cached );
+            try
+            {
+                variables.load( in );
+            }
+            finally
+            {
+                in.close();
+            }
+            assertTrue( variables.containsKey( "set.SCRIPT_VAR" ) );
+            assertTrue( variables.containsKey( "set.MULTI_VAR" ) );
+            assertFalse( variables.containsKey( "set.PATH" ) );
+            assertFalse( variables.containsKey( "set.INPUT_VAR" ) );
+        }
+    }
+
+    private static Command command( String executable, String... arguments )
+    {
+        Command command = new Command();
+        command.setExecutable( executable );
+        command.setArguments( Arrays.asList( arguments ) );
+        return command;
+    }
+
+    public void testFilesetSkipsUpToDateFiles()
+        throws Exception
+    {
+        if ( !OS.isFamilyUnix() )
+        {
+            return;
+        }
+
+        File dir = new File( "target/fileset-test" ).getAbsoluteFile();
+        FileUtils.deleteDirectory( dir );
+        File sources = new File( dir, "src" );
+        new File( sources, "sub" ).mkdirs();
+        FileUtils.fileWrite( new File( sources, "a.txt" ).getPath(), "a" );
+        FileUtils.fileWrite( new File( sources, "sub/b.txt" ).getPath(), "b" );
+        FileUtils.fileWrite( new File( sources, "c.skip" ).getPath(), "c" );
+
+        ExecMojo realMojo = new ExecMojo();
+        realMojo.setBasedir( dir );
+        realMojo.setExecutable( "cp" );
+        realMojo.setArguments( Arrays.asList( new String[] { "%file", "%target" } ) );
+        FileSet fileset = new FileSet();
+        fileset.setDirectory( sources.getPath() );
+        fileset.addInclude( "**/*.txt" );
+        realMojo.setFileset( fileset );
+        realMojo.setFilesetTarget( "out/%dir/%name.copy" );
+
+        realMojo.execute();
+
+        File a = new File( dir, "out/a.copy" );
+        assertEquals( "a", FileUtils.fileRead( a ) );
+        assertEquals( "b", FileUtils.fileRead( new File( dir, "out/sub/b.copy" ) ) );
+        assertFalse( new File( dir, "out/c.copy" ).exists() );
+
+        // an up to date target is not copied again
+        FileUtils.fileWrite( a.getPath(), "kept" );
+        a.setLastModified( System.currentTimeMillis() + 10000 );
+        realMojo.execute();
+        assertEquals( "kept", FileUtils.fileRead( a ) );
+    }
+
+    public void testRecompiledClassesAreNotUpToDate()
+        throws Exception
+    {
+        if ( !OS.isFamilyUnix() )
+        {
+            return;
+        }
+
+        File dir = new File( "target/fingerprint-classpath-test" ).getAbsoluteFile();
+        FileUtils.deleteDirectory( dir );
+        File classes = new File( dir, "classes" );
+        File classFile = new File( classes, "pkg/Main.class" );
+        classFile.getParentFile().mkdirs();
+        FileUtils.fileWrite( classFile.getPath(), "version 1" );
+        File runs = new File( dir, "out/runs.txt" );
+
+        MavenProject project = new MavenProject( new Model() );
+        project.getBuild().setOutputDirectory( classes.getPath() );
+        ExecMojo realMojo = new ExecMojo();
+        realMojo.setBasedir( dir );
+        realMojo.setProject( project );
+        realMojo.classpathScope = "runtime";
+        realMojo.setExecutable( "sh" );
+        realMojo.setArguments( Arrays.asList( new String[] { "-c", "mkdir -p out; echo run >> " + runs } ) );
+        FileSet outputs = new FileSet();
+        outputs.setDirectory( new File( dir, "out" ).getPath() );
+        setVariableValueToObject( realMojo, "outputs", new FileSet[] { outputs } );
+        setVariableValueToObject( realMojo, "fingerprintDirectory", new File( dir, "fingerprints" ) );
+
+        realMojo.execute();
+        realMojo.execute();
+        assertEquals( "skipped while up to date", "run\n", FileUtils.fileRead( runs ) );
+
+        FileUtils.fileWrite( classFile.getPath(), "version 2" );
+        classFile.setLastModified( System.currentTimeMillis() + 10000 );
+        realMojo.execute();
+        assertEquals( "run again after recompiling", "run\nrun\n", FileUtils.fileRead( runs ) );
+    }
+
+    public void testCacheIgnoresUnusedClasspath()
+        throws Exception
+    {
+        if ( !OS.isFamilyUnix() )
+        {
+            return;
+        }
+
+        File dir = new File( "target/cache-classpath-test" ).getAbsoluteFile();
+        FileUtils.deleteDirectory( dir );
+        File classFile = new File( dir, "classes/pkg/Main.class" );
+        classFile.getParentFile().mkdirs();
+        FileUtils.fileWrite( classFile.getPath(), "version 1" );
+        File runs = new File( dir, "runs.txt" );
+        File generated = new File( dir, "out/generated.txt" );
+
+        MavenProject project = new MavenProject( new Model() );
+        project.getBuild().setOutputDirectory( classFile.getParentFile().getParent() );
+        ExecMojo realMojo = new ExecMojo();
+        realMojo.setBasedir( dir );
+        realMojo.setProject( project );
+        realMojo.classpathScope = "runtime";
+        realMojo.setExecutable( "sh" );
+        realMojo.setArguments( Arrays.asList( new String[] { "-c",
+            "echo run >> " + runs + "; mkdir -p out; echo generated > " + generated } ) );
+        FileSet outputs = new FileSet();
+        outputs.setDirectory( generated.getParent() );
+        setVariableValueToObject( realMojo, "outputs", new FileSet[] { outputs } );
+        setVariableValueToObject( realMojo, "fingerprintDirectory", new File( dir, "fingerprints" ) );
+        setVariableValueToObject( realMojo, "cacheDirectory", new File( dir, "cache" ) );
+        setVariableValueToObject( realMojo, "cacheMaxSize", 1L );
+
+        realMojo.execute();
+        FileUtils.deleteDirectory( generated.getParentFile() );
+        FileUtils.fileWrite( classFile.getPath(), "version 2" );
+        realMojo.execute();
+
+        assertEquals( "restored from the cache", "generated\n", FileUtils.fileRead( generated ) );
+        assertEquals( "run\n", FileUtils.fileRead( runs ) );
+    }
+
+    public void testCacheKeyIncludesEnvironmentVariables()
+        throws Exception
+    {
+        if ( !OS.isFamilyUnix() )
+        {
+            return;
+        }
+
+        File dir = new File( "target/cache-environment-test" ).getAbsoluteFile();
+        FileUtils.deleteDirectory( dir );
+        dir.mkdirs();
+        File runs = new File( dir, "runs.txt" );
+        File generated = new File( dir, "out/generated.txt" );
+
+        MavenProject project = new MavenProject( new Model() );
+        project.getBuild().setOutputDirectory( new File( dir, "classes" ).getPath() );
+        ExecMojo realMojo = new ExecMojo();
+        realMojo.setBasedir( dir );
+        realMojo.setProject( project );
+        realMojo.classpathScope = "runtime";
+        realMojo.setExecutable( "sh" );
+        realMojo.setArguments( Arrays.asList( new String[] { "-c",
+            "echo run >> " + runs + "; mkdir -p out; echo $FLAVOUR > " + generated } ) );
+        FileSet outputs = new FileSet();
+        outputs.setDirectory( generated.getParent() );
+        setVariableValueToObject( realMojo, "outputs", new FileSet[] { outputs } );
+        setVariableValueToObject( realMojo, "fingerprintDirectory", new File( dir, "fingerprints" ) );
+        setVariableValueToObject( realMojo, "cacheDirectory", new File( dir, "cache" ) );
+        setVariableValueToObject( realMojo, "cacheMaxSize", 1L );
+
+        realMojo.setEnvironmentVariables( Collections.singletonMap( "FLAVOUR", "sweet" ) );
+        realMojo.execute();
+        realMojo.setEnvironmentVariables( Collections.singletonMap( "FLAVOUR", "sour" ) );
+        realMojo.execute();
+
+        assertEquals( "sour\n", FileUtils.fileRead( generated ) );
+        assertEquals( "run\nrun\n", FileUtils.fileRead( runs ) );
+    }
+
+    public void testResourceControls()
+        throws Exception
+    {
+        if ( !ResourceLauncher.isSupported() )
+        {
+            return;
+        }
+
+        ExecMojo realMojo = new ExecMojo();
+        realMojo.setBasedir( File.createTempFile( "mvn-temp", "txt" ).getParentFile() );
+        realMojo.setExecutable( "sh" );
+        realMojo.setArguments( Arrays.asList( new String[] { "-c", "echo $(nice) $(ulimit -n) $(ulimit -t)" } ) );
+        ResourceControls controls = new ResourceControls();
+        controls.setNice( Integer.valueOf( 5 ) );
+        controls.setIoClass( "idle" );
+        controls.setCpuAffinity( "0" );
+        controls.setMaxOpenFiles( Long.valueOf( 64 ) );
+        controls.setMaxCpuTime( Long.valueOf( 100 ) );
+        realMojo.setResourceControls( controls );
+        File output = new File( "target/resource-controls.txt" ).getAbsoluteFile();
+        realMojo.setOutputFile( output );
+
+        realMojo.execute();
+
+        int niceness = Integer.parseInt( FileUtils.fileRead( output ).trim().split( " " )[0] );
+        assertTrue( "niceness " + niceness, niceness >= 5 );
+        assertTrue( FileUtils.fileRead( output ), FileUtils.fileRead( output ).trim().endsWith( " 64 100" ) );
+    }
+
+    public void testInvalidResourceControls()
+        throws Exception
+    {
+        ExecMojo realMojo = new ExecMojo();
+        realMojo.setBasedir( File.createTempFile( "mvn-temp", "txt" ).getParentFile() );
+        realMojo.setExecutable( "sh" );
+        ResourceControls controls = new ResourceControls();
+        controls.setIoClass( "fast" );
+        realMojo.setResourceControls( controls );
+        try
+        {
+            realMojo.execute();
+            fail( "expected failure" );
+        }
+        catch ( MojoExecutionException e )
+        {
+            assertTrue( e.getMessage(), e.getMessage().startsWith( "Invalid ioClass 'fast'" ) );
+        }
+    }
+
+    public void testTimeoutKillsProcessTree()
+        throws Exception
+    {
+        if ( !OS.isFamilyUnix() )
+        {
+            return;
+        }
+
+        ExecMojo realMojo = new ExecMojo();
+        realMojo.setBasedir( File.createTempFile( "mvn-temp", "txt" ).getParentFile() );
+        realMojo.setExecutable( "sh" );
+        // the background grandchild keeps stdout open, the execution can only finish if it is killed as well
+        realMojo.setArguments( Arrays.asList( new String[] { "-c", "sleep 60 & sleep 60; wait" } ) );
+        realMojo.setTimeout( 500 );
+        realMojo.setTimeoutGracePeriod( 1000 );
+
+        long start = System.currentTimeMillis();
+        try
+        {
+            realMojo.execute();
+            fail( "expected timeout" );
+        }
+        catch ( MojoExecutionException e )
+        {
+            assertTrue( e.getMessage(), e.getMessage().indexOf( "timed out" ) > 0 );
+        }
+        assertTrue( System.currentTimeMillis() - start < 20000 );
+    }
+
+    private Command createCommand( String executable, String argument )
+    {
+        Command command = new Command();
+        command.setExecutable( executable );
+        command.setArguments( Arrays.asList( new String[] { argument } ) );
+        return command;
+    }
+
     // MEXEC-81
     public void testParseCommandlineOSWin()
         throws Exception
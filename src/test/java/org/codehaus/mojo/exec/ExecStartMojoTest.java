@@ -0,0 +1,215 @@
+package org.codehaus.mojo.exec;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+import org.apache.commons.exec.OS;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.codehaus.plexus.util.FileUtils;
+
+public class ExecStartMojoTest
+    extends TestCase
+{
+    public void testStartAndStop()
+        throws Exception
+    {
+        if ( !OS.isFamilyUnix() )
+        {
+            return;
+        }
+
+        File pidFile = new File( "target/exec-start-child.pid" ).getAbsoluteFile();
+        pidFile.delete();
+        ExecStartMojo start =
+            createStartMojo( "sleep 60 & echo $! > " + pidFile + "; echo starting; echo ready; wait" );
+        start.setId( "server" );
+        start.setReadyPattern( "^read[y]$" );
+        start.execute();
+
+        BackgroundProcess process = SessionContext.get( null, BackgroundProcesses.class ).getRunning( "server" );
+        assertNotNull( process );
+        assertFalse( process.hasExited() );
+        String child = FileUtils.fileRead( pidFile ).trim();
+
+        ExecStopMojo stop = new ExecStopMojo();
+        stop.setId( "server" );
+        stop.setStopTimeout( 5000 );
+        stop.execute();
+
+        assertTrue( process.hasExited() );
+        assertNull( SessionContext.get( null, BackgroundProcesses.class ).getRunning( "server" ) );
+        if ( new File( "/proc/self" ).exists() )
+        {
+            // a killed orphan may remain a zombie until it is reaped
+            String stat = ProcessTree.readFirstLine( new File( "/proc/" + child + "/stat" ) );
+            assertTrue( "the child was killed: " + stat, stat == null || stat.contains( ") Z " ) );
+        }
+    }
+
+    public void testReadyFile()
+        throws Exception
+    {
+        if ( !OS.isFamilyUnix() )
+        {
+            return;
+        }
+
+        File readyFile = new File( "target/exec-start-ready" ).getAbsoluteFile();
+        readyFile.delete();
+        ExecStartMojo start = createStartMojo( "sleep 0.2; touch " + readyFile + "; sleep 60" );
+        start.setId( "file" );
+        start.setReadyFile( readyFile );
+        start.execute();
+        assertTrue( readyFile.exists() );
+
+        ExecStopMojo stop = new ExecStopMojo();
+        stop.setId( "file" );
+        stop.execute();
+    }
+
+    public void testExitBeforeReady()
+        throws Exception
+    {
+        if ( !OS.isFamilyUnix() )
+        {
+            return;
+        }
+
+        ExecStartMojo start = createStartMojo( "echo broken; exit 3" );
+        start.setId( "broken" );
+        start.setReadyPort( 1 );
+        try
+        {
+            start.execute();
+            fail( "expected failure" );
+        }
+        catch ( MojoExecutionException e )
+        {
+            assertEquals( "The program 'broken' exited with exit code 3 before it was ready\n"
+                + "End of the output:\nbroken", e.getMessage() );
+        }
+    }
+
+    public void testNotReadyInTime()
+        throws Exception
+    {
+        if ( !OS.isFamilyUnix() )
+        {
+            return;
+        }
+
+        ExecStartMojo start = createStartMojo( "sleep 60" );
+        start.setId( "slow" );
+        start.setReadyPattern( "never" );
+        start.setReadyTimeout( 300 );
+        try
+        {
+            start.execute();
+            fail( "expected failure" );
+        }
+        catch ( MojoExecutionException e )
+        {
+            assertEquals( "The program 'slow' was not ready within 300 ms, waiting for [output matching 'never']",
+                          e.getMessage() );
+        }
+        assertNull( SessionContext.get( null, BackgroundProcesses.class ).getRunning( "slow" ) );
+    }
+
+    public void testInterruptedWhileWaiting()
+        throws Exception
+    {
+        if ( !OS.isFamilyUnix() || !new File( "/proc/self" ).exists() )
+        {
+            return;
+        }
+
+        File pidFile = new File( "target/exec-start-interrupted.pid" ).getAbsoluteFile();
+        pidFile.delete();
+        final ExecStartMojo start = createStartMojo( "echo $$ > " + pidFile + "; exec sleep 60" );
+        start.setId( "interrupted" );
+        start.setReadyPattern( "never" );
+        start.setTimeoutGracePeriod( 1000 );
+        final Exception[] failure = new Exception[1];
+        Thread thread = new Thread()
+        {
+            public void run()
+            {
+                try
+                {
+                    start.execute();
+                }
+                catch ( Exception e )
+                {
+                    failure[0] = e;
+                }
+            }
+        };
+        thread.start();
+        for ( int i = 0; i < 100 && pidFile.length() == 0; i++ )
+        {
+            Thread.sleep( 100 );
+        }
+        String pid = FileUtils.fileRead( pidFile ).trim();
+
+        thread.interrupt();
+        thread.join( 10000 );
+
+        assertTrue( failure[0] instanceof MojoExecutionException );
+        assertNull( SessionContext.get( null, BackgroundProcesses.class ).getRunning( "interrupted" ) );
+        String stat = ProcessTree.readFirstLine( new File( "/proc/" + pid + "/stat" ) );
+        assertTrue( "the program was stopped: " + stat, stat == null || stat.contains( ") Z " ) );
+    }
+
+    public void testUnsupportedParameters()
+        throws Exception
+    {
+        ExecStartMojo start = createStartMojo( "sleep 60" );
+        start.setId( "unsupported" );
+        start.setTimeout( 1000 );
+        start.setTeeOutput( true );
+        try
+        {
+            start.execute();
+            fail( "expected failure" );
+        }
+        catch ( MojoExecutionException e )
+        {
+            assertEquals( "The start goal does not support the parameters [timeout, teeOutput]", e.getMessage() );
+        }
+        assertNull( SessionContext.get( null, BackgroundProcesses.class ).getRunning( "unsupported" ) );
+    }
+
+    private static ExecStartMojo createStartMojo( String script )
+        throws Exception
+    {
+        ExecStartMojo start = new ExecStartMojo();
+        start.setBasedir( File.createTempFile( "mvn-temp", "txt" ).getParentFile() );
+        start.setExecutable( "sh" );
+        start.setArguments( Arrays.asList( new String[] { "-c", script } ) );
+        start.setOutputTailSize( 16 );
+        start.setReadyHost( "localhost" );
+        start.setReadyTimeout( 10000 );
+        return start;
+    }
+}
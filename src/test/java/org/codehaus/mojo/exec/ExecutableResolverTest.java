@@ -0,0 +1,60 @@
+package org.codehaus.mojo.exec;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+
+import junit.framework.TestCase;
+
+import org.apache.commons.exec.OS;
+import org.codehaus.plexus.util.FileUtils;
+
+public class ExecutableResolverTest
+    extends TestCase
+{
+    public void testResolve()
+        throws Exception
+    {
+        if ( !OS.isFamilyUnix() )
+        {
+            return;
+        }
+
+        File dir = new File( "target/resolver-test" ).getAbsoluteFile();
+        FileUtils.deleteDirectory( dir );
+        File bin = new File( dir, "bin" );
+        bin.mkdirs();
+        File tool = new File( bin, "tool" );
+        FileUtils.fileWrite( tool.getPath(), "#!/bin/sh\n" );
+        File plain = new File( dir, "tool" );
+        FileUtils.fileWrite( plain.getPath(), "not executable" );
+        assertEquals( 0, Runtime.getRuntime().exec( new String[] { "chmod", "+x", tool.getPath() } ).waitFor() );
+
+        ExecutableResolver resolver = new ExecutableResolver();
+        // the file in the working directory is not executable, the relative bin directory is searched next
+        assertEquals( tool.getPath(), resolver.resolve( "tool", ":bin:/nonexistent", dir ) );
+        assertNull( resolver.resolve( "tool", "/nonexistent", dir ) );
+        assertNull( resolver.resolve( "other", ":bin", dir ) );
+
+        tool.delete();
+        assertEquals( "cached", tool.getPath(), resolver.resolve( "tool", ":bin:/nonexistent", dir ) );
+        assertNull( new ExecutableResolver().resolve( "tool", ":bin:/nonexistent", dir ) );
+    }
+}
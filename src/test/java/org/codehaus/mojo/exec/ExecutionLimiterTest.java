@@ -0,0 +1,82 @@
+package org.codehaus.mojo.exec;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+
+import junit.framework.TestCase;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+
+public class ExecutionLimiterTest
+    extends TestCase
+{
+    public void testPermitsAreGrantedInOrder()
+        throws Exception
+    {
+        final ExecutionLimiter limiter = new ExecutionLimiter();
+        final SystemStreamLog log = new SystemStreamLog();
+        Semaphore first = limiter.acquire( "heavy", 1, log );
+
+        final List<Integer> order = Collections.synchronizedList( new ArrayList<Integer>() );
+        List<Thread> threads = new ArrayList<Thread>();
+        for ( int i = 0; i < 3; i++ )
+        {
+            final int number = i;
+            Thread thread = new Thread()
+            {
+                public void run()
+                {
+                    try
+                    {
+                        Semaphore permit = limiter.acquire( "heavy", 1, log );
+                        order.add( Integer.valueOf( number ) );
+                        permit.release();
+                    }
+                    catch ( InterruptedException e )
+                    {
+                        // the test fails on the order
+                    }
+                }
+            };
+            thread.start();
+            threads.add( thread );
+            // wait until the thread queued for the permit
+            while ( first.getQueueLength() <= i )
+            {
+                Thread.sleep( 1 );
+            }
+        }
+
+        assertTrue( order.isEmpty() );
+        Semaphore other = limiter.acquire( "other", 1, log );
+        other.release();
+
+        first.release();
+        for ( Thread thread : threads )
+        {
+            thread.join( 10000 );
+        }
+        assertEquals( "[0, 1, 2]", order.toString() );
+    }
+}
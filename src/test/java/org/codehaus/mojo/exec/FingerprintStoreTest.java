@@ -0,0 +1,117 @@
+package org.codehaus.mojo.exec;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.codehaus.plexus.util.FileUtils;
+
+public class FingerprintStoreTest
+    extends TestCase
+{
+    private File dir;
+
+    private File input;
+
+    private File output;
+
+    private FingerprintStore store;
+
+    protected void setUp()
+        throws Exception
+    {
+        dir = new File( "target/fingerprint-test" ).getAbsoluteFile();
+        FileUtils.deleteDirectory( dir );
+        dir.mkdirs();
+        input = new File( dir, "input.txt" );
+        output = new File( dir, "output.txt" );
+        FileUtils.fileWrite( input.getPath(), "input" );
+        store = new FingerprintStore( new File( dir, "store/fingerprints.properties" ) );
+    }
+
+    public void testUpToDate()
+        throws Exception
+    {
+        assertFalse( "nothing recorded yet", isUpToDate( "key" ) );
+        FileUtils.fileWrite( output.getPath(), "output" );
+        store.record( list( output ) );
+
+        assertTrue( isUpToDate( "key" ) );
+        assertFalse( "key changed", isUpToDate( "other key" ) );
+    }
+
+    public void testTouchedInputIsUpToDate()
+        throws Exception
+    {
+        isUpToDate( "key" );
+        FileUtils.fileWrite( output.getPath(), "output" );
+        store.record( list( output ) );
+
+        input.setLastModified( input.lastModified() - 10000 );
+        assertTrue( "same content", isUpToDate( "key" ) );
+    }
+
+    public void testChangedInput()
+        throws Exception
+    {
+        isUpToDate( "key" );
+        FileUtils.fileWrite( output.getPath(), "output" );
+        store.record( list( output ) );
+
+        FileUtils.fileWrite( input.getPath(), "changed input" );
+        assertFalse( isUpToDate( "key" ) );
+    }
+
+    public void testDeletedOutput()
+        throws Exception
+    {
+        isUpToDate( "key" );
+        FileUtils.fileWrite( output.getPath(), "output" );
+        store.record( list( output ) );
+
+        output.delete();
+        assertFalse( store.isUpToDate( "key", list( input ), list() ) );
+    }
+
+    public void testHashFilesInParallel()
+        throws Exception
+    {
+        FileUtils.fileWrite( output.getPath(), "input" );
+        List<String> hashes = FingerprintStore.hashFiles( list( input, output ) );
+        assertEquals( 2, hashes.size() );
+        assertEquals( FingerprintStore.hash( input ), hashes.get( 0 ) );
+        assertEquals( hashes.get( 0 ), hashes.get( 1 ) );
+    }
+
+    private boolean isUpToDate( String key )
+        throws Exception
+    {
+        return store.isUpToDate( key, list( input ), output.exists() ? list( output ) : list() );
+    }
+
+    private static List<File> list( File... files )
+    {
+        return Arrays.asList( files );
+    }
+}
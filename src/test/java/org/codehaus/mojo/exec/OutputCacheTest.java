@@ -0,0 +1,139 @@
+package org.codehaus.mojo.exec;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.codehaus.plexus.util.FileUtils;
+
+public class OutputCacheTest
+    extends TestCase
+{
+    private File dir;
+
+    private File outputDirectory;
+
+    private List<File> outputDirectories;
+
+    protected void setUp()
+        throws Exception
+    {
+        dir = new File( "target/output-cache-test" ).getAbsoluteFile();
+        FileUtils.deleteDirectory( dir );
+        outputDirectory = new File( dir, "workspace/out" );
+        outputDirectory.mkdirs();
+        outputDirectories = Collections.singletonList( outputDirectory );
+    }
+
+    public void testStoreAndRestore()
+        throws Exception
+    {
+        OutputCache cache = new OutputCache( new File( dir, "cache" ), Long.MAX_VALUE, new SystemStreamLog() );
+        File output = new File( outputDirectory, "sub/generated.txt" );
+        output.getParentFile().mkdirs();
+        FileUtils.fileWrite( output.getPath(), "generated" );
+
+        assertFalse( "nothing stored yet", cache.restore( "key", outputDirectories ) );
+        cache.store( "key", outputDirectories, Collections.singletonList( output ) );
+
+        FileUtils.deleteDirectory( outputDirectory );
+        assertFalse( "other key", cache.restore( "other", outputDirectories ) );
+        assertTrue( cache.restore( "key", outputDirectories ) );
+        assertEquals( "generated", FileUtils.fileRead( output ) );
+    }
+
+    public void testRestoreIntoOtherLocation()
+        throws Exception
+    {
+        OutputCache cache = new OutputCache( new File( dir, "cache" ), Long.MAX_VALUE, new SystemStreamLog() );
+        File output = new File( outputDirectory, "generated.txt" );
+        FileUtils.fileWrite( output.getPath(), "generated" );
+        cache.store( "key", outputDirectories, Collections.singletonList( output ) );
+
+        File otherDirectory = new File( dir, "other-workspace/out" );
+        assertTrue( cache.restore( "key", Collections.singletonList( otherDirectory ) ) );
+        assertEquals( "generated", FileUtils.fileRead( new File( otherDirectory, "generated.txt" ) ) );
+    }
+
+    public void testEvictsLeastRecentlyUsed()
+        throws Exception
+    {
+        OutputCache cache = new OutputCache( new File( dir, "cache" ), 15, new SystemStreamLog() );
+        File first = new File( outputDirectory, "first.txt" );
+        File second = new File( outputDirectory, "second.txt" );
+        FileUtils.fileWrite( first.getPath(), "0123456789" );
+        FileUtils.fileWrite( second.getPath(), "abcdefghij" );
+
+        cache.store( "first", outputDirectories, Collections.singletonList( first ) );
+        File firstEntry = new File( dir, "cache/entries/first.properties" );
+        firstEntry.setLastModified( firstEntry.lastModified() - 60000 );
+        // old enough to be removed once no entry references it
+        File firstObject = new File( dir, "cache/objects" ).listFiles()[0].listFiles()[0];
+        firstObject.setLastModified( firstObject.lastModified() - 3600000 );
+
+        cache.store( "second", outputDirectories, Arrays.asList( new File[] { second } ) );
+
+        assertFalse( "evicted", firstEntry.exists() );
+        assertFalse( firstObject.exists() );
+        assertFalse( cache.restore( "first", outputDirectories ) );
+        assertTrue( cache.restore( "second", outputDirectories ) );
+    }
+
+    public void testEvictionKeepsObjectsStillReferenced()
+        throws Exception
+    {
+        OutputCache cache = new OutputCache( new File( dir, "cache" ), 20, new SystemStreamLog() );
+        File shared = new File( outputDirectory, "shared.txt" );
+        File own = new File( outputDirectory, "own.txt" );
+        File second = new File( outputDirectory, "second.txt" );
+        FileUtils.fileWrite( shared.getPath(), "0123456789" );
+        FileUtils.fileWrite( own.getPath(), "01234" );
+        FileUtils.fileWrite( second.getPath(), "abcdefghij" );
+
+        cache.store( "first", outputDirectories, Arrays.asList( new File[] { shared, own } ) );
+        cache.store( "other", outputDirectories, Collections.singletonList( shared ) );
+        File firstEntry = new File( dir, "cache/entries/first.properties" );
+        firstEntry.setLastModified( firstEntry.lastModified() - 60000 );
+        File otherEntry = new File( dir, "cache/entries/other.properties" );
+        otherEntry.setLastModified( otherEntry.lastModified() - 30000 );
+        for ( File prefix : new File( dir, "cache/objects" ).listFiles() )
+        {
+            for ( File object : prefix.listFiles() )
+            {
+                object.setLastModified( object.lastModified() - 3600000 );
+            }
+        }
+
+        cache.store( "second", outputDirectories, Collections.singletonList( second ) );
+
+        assertFalse( "evicted", firstEntry.exists() );
+        assertTrue( "fits after evicting one entry", otherEntry.exists() );
+        FileUtils.deleteDirectory( outputDirectory );
+        assertTrue( "the shared object is kept", cache.restore( "other", outputDirectories ) );
+        assertEquals( "0123456789", FileUtils.fileRead( shared ) );
+        assertTrue( cache.restore( "second", outputDirectories ) );
+    }
+}
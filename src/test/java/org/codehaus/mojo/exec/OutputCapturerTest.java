@@ -0,0 +1,85 @@
+package org.codehaus.mojo.exec;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+public class OutputCapturerTest
+    extends TestCase
+{
+    public void testCapturesAcrossWrites()
+        throws Exception
+    {
+        OutputCapturer capturer =
+            new OutputCapturer( Arrays.asList( new Capture[] { capture( "version", "version (\\S+)", 1 ),
+                capture( "tests", "Tests run: (\\d+)", 1 ) } ) );
+        ByteArrayOutputStream sink = new ByteArrayOutputStream();
+        OutputStream out = capturer.wrap( sink );
+
+        out.write( "tool vers".getBytes() );
+        out.write( "ion 1.2.3\r\nTests run: 4\nTests run: ".getBytes() );
+        out.write( '7' );
+
+        Map<String, String> values = capturer.finish();
+        assertEquals( "1.2.3", values.get( "version" ) );
+        assertEquals( "last match wins, even without a final line break", "7", values.get( "tests" ) );
+        assertEquals( "tool version 1.2.3\r\nTests run: 4\nTests run: 7", sink.toString() );
+    }
+
+    public void testNoMatch()
+        throws Exception
+    {
+        OutputCapturer capturer =
+            new OutputCapturer( Arrays.asList( new Capture[] { capture( "whole", "^done$", 0 ) } ) );
+        OutputStream out = capturer.wrap( new ByteArrayOutputStream() );
+        out.write( "not done\n".getBytes() );
+        assertTrue( capturer.finish().isEmpty() );
+
+        out.write( "done\n".getBytes() );
+        assertEquals( "done", capturer.finish().get( "whole" ) );
+    }
+
+    public void testInvalidGroup()
+    {
+        try
+        {
+            new OutputCapturer( Arrays.asList( new Capture[] { capture( "p", "no group", 1 ) } ) );
+            fail( "expected failure" );
+        }
+        catch ( IllegalArgumentException e )
+        {
+            assertTrue( e.getMessage(), e.getMessage().startsWith( "Misconfigured capture" ) );
+        }
+    }
+
+    private static Capture capture( String property, String pattern, int group )
+    {
+        Capture capture = new Capture();
+        capture.setProperty( property );
+        capture.setPattern( pattern );
+        capture.setGroup( group );
+        return capture;
+    }
+}
@@ -0,0 +1,53 @@
+package org.codehaus.mojo.exec;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+
+import junit.framework.TestCase;
+
+public class OutputTailTest
+    extends TestCase
+{
+    public void testKeepsLastLines()
+        throws Exception
+    {
+        OutputTail tail = new OutputTail( 16 );
+        ByteArrayOutputStream sink = new ByteArrayOutputStream();
+        OutputStream out = tail.wrap( sink );
+        assertEquals( "", tail.getText() );
+
+        out.write( "first line\nsecond\n".getBytes() );
+        assertEquals( "the incomplete first line is dropped", "second", tail.getText() );
+        out.write( "third\n".getBytes() );
+        out.write( 'x' );
+        assertEquals( "second\nthird\nx", tail.getText() );
+        assertEquals( "first line\nsecond\nthird\nx", sink.toString() );
+    }
+
+    public void testShortOutput()
+        throws Exception
+    {
+        OutputTail tail = new OutputTail( 1024 );
+        tail.wrap( new ByteArrayOutputStream() ).write( "only line\r\n".getBytes() );
+        assertEquals( "only line", tail.getText() );
+    }
+}
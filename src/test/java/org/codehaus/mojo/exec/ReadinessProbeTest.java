@@ -0,0 +1,56 @@
+package org.codehaus.mojo.exec;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+
+import junit.framework.TestCase;
+
+public class ReadinessProbeTest
+    extends TestCase
+{
+    public void testCompleteLines()
+        throws Exception
+    {
+        ReadinessProbe probe = new ReadinessProbe( "^ready$", "localhost", 0, null );
+        ByteArrayOutputStream sink = new ByteArrayOutputStream();
+        OutputStream out = probe.wrap( sink );
+
+        out.write( "starting\nrea".getBytes() );
+        assertFalse( probe.isReady() );
+        out.write( "dy\nserving\n".getBytes() );
+        assertTrue( probe.isReady() );
+        assertEquals( "starting\nready\nserving\n", sink.toString() );
+    }
+
+    public void testPrompt()
+        throws Exception
+    {
+        ReadinessProbe probe = new ReadinessProbe( "> $", "localhost", 0, null );
+        OutputStream out = probe.wrap( new ByteArrayOutputStream() );
+
+        out.write( "welcome\n".getBytes() );
+        out.write( ">".getBytes() );
+        assertFalse( probe.isReady() );
+        out.write( " ".getBytes() );
+        assertTrue( "a line without a line break is matched when checked", probe.isReady() );
+    }
+}
@@ -0,0 +1,60 @@
+package org.codehaus.mojo.exec;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+
+import junit.framework.TestCase;
+
+import org.codehaus.plexus.util.FileUtils;
+
+public class RollingOutputStreamTest
+    extends TestCase
+{
+    public void testRollsOverToSegments()
+        throws Exception
+    {
+        File dir = new File( "target/rolling-test" );
+        FileUtils.deleteDirectory( dir );
+        dir.mkdirs();
+        File file = new File( dir, "out.log" );
+        // left over by an earlier execution
+        FileUtils.fileWrite( RollingOutputStream.getSegment( file, 2 ).getPath(), "stale" );
+
+        RollingOutputStream out = new RollingOutputStream( file, 10, 2, false );
+        out.write( "0123456789abcdefghij".getBytes() );
+        assertFalse( "a later segment is not started before it is written", RollingOutputStream.getSegment( file, 2 )
+            .exists() );
+        out.write( "ABCDEFGHIJ".getBytes() );
+        out.write( 'x' );
+        out.close();
+
+        assertEquals( "x", FileUtils.fileRead( file ) );
+        assertEquals( "ABCDEFGHIJ", FileUtils.fileRead( RollingOutputStream.getSegment( file, 1 ) ) );
+        assertEquals( "abcdefghij", FileUtils.fileRead( RollingOutputStream.getSegment( file, 2 ) ) );
+        assertFalse( RollingOutputStream.getSegment( file, 3 ).exists() );
+    }
+
+    public void testSegmentNames()
+    {
+        assertEquals( "out.log.3", RollingOutputStream.getSegment( new File( "out.log" ), 3 ).getName() );
+        assertEquals( "out.log.1.gz", RollingOutputStream.getSegment( new File( "out.log.gz" ), 1 ).getName() );
+    }
+}
@@ -0,0 +1,104 @@
+package org.codehaus.mojo.exec;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.apache.commons.exec.CommandLine;
+import org.apache.commons.exec.DefaultExecutor;
+
+public class StreamPollerTest
+    extends TestCase
+{
+    public void testConcurrentProcessesShareOneThread()
+        throws Exception
+    {
+        final StreamPoller poller = new StreamPoller();
+        final List<ByteArrayOutputStream> outputs = new ArrayList<ByteArrayOutputStream>();
+        List<Thread> threads = new ArrayList<Thread>();
+        final List<Throwable> failures = new ArrayList<Throwable>();
+
+        for ( int i = 0; i < 4; i++ )
+        {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            outputs.add( out );
+            final CommandLine commandLine =
+                new CommandLine( new File( System.getProperty( "java.home" ), "bin/java" ).getAbsolutePath() );
+            commandLine.addArguments( new String[] { "-cp", new File( "target/test-classes" ).getAbsolutePath(),
+                DummyMain.class.getName(), "process" + i }, false );
+
+            Thread thread = new Thread()
+            {
+                public void run()
+                {
+                    try
+                    {
+                        DefaultExecutor executor = new DefaultExecutor();
+                        executor.setStreamHandler( poller.createStreamHandler( out, out ) );
+                        executor.execute( commandLine );
+                    }
+                    catch ( Throwable e )
+                    {
+                        synchronized ( failures )
+                        {
+                            failures.add( e );
+                        }
+                    }
+                }
+            };
+            threads.add( thread );
+            thread.start();
+        }
+
+        for ( Thread thread : threads )
+        {
+            thread.join( 60000 );
+        }
+
+        assertEquals( "[]", failures.toString() );
+        for ( int i = 0; i < outputs.size(); i++ )
+        {
+            String output = outputs.get( i ).toString().trim();
+            assertTrue( output, output.startsWith( "Hello" ) );
+            assertTrue( output, output.endsWith( "process" + i ) );
+        }
+        assertTrue( countThreads( "exec-stream-poller" ) <= 1 );
+    }
+
+    private static int countThreads( String name )
+    {
+        Thread[] threads = new Thread[Thread.activeCount() * 2];
+        int count = Thread.enumerate( threads );
+        int result = 0;
+        for ( int i = 0; i < count; i++ )
+        {
+            if ( name.equals( threads[i].getName() ) )
+            {
+                result++;
+            }
+        }
+        return result;
+    }
+}
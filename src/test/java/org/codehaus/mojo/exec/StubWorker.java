@@ -0,0 +1,67 @@
+package org.codehaus.mojo.exec;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+
+/**
+ * Minimal worker process for the worker mode of exec:exec, see {@link WorkerPool}. Answers every request with the
+ * request number and the arguments. A request whose first argument is a number exits with that number, a request
+ * whose first argument is <code>slow</code> is answered after one second, and one whose first argument is
+ * <code>hang</code> is never answered.
+ */
+public class StubWorker
+{
+    public static void main( String... args )
+        throws IOException, InterruptedException
+    {
+        BufferedReader in = new BufferedReader( new InputStreamReader( System.in, "UTF-8" ) );
+        int requests = 0;
+        String line;
+        while ( ( line = in.readLine() ) != null )
+        {
+            int count = Integer.parseInt( line.trim() );
+            StringBuilder buffer = new StringBuilder( "request " ).append( ++requests ).append( ":" );
+            int exitCode = 0;
+            for ( int i = 0; i < count; i++ )
+            {
+                String argument = in.readLine();
+                if ( i == 0 && argument.matches( "\\d+" ) )
+                {
+                    exitCode = Integer.parseInt( argument );
+                }
+                else if ( i == 0 && argument.equals( "slow" ) )
+                {
+                    Thread.sleep( 1000 );
+                }
+                else if ( i == 0 && argument.equals( "hang" ) )
+                {
+                    Thread.sleep( 60000 );
+                }
+                buffer.append( " " ).append( argument );
+            }
+            System.out.println( buffer.toString() );
+            System.out.println( WorkerPool.EXIT_MARKER + exitCode );
+            System.out.flush();
+        }
+    }
+}
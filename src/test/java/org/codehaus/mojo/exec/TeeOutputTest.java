@@ -0,0 +1,98 @@
+package org.codehaus.mojo.exec;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.CountDownLatch;
+
+import junit.framework.TestCase;
+
+import org.codehaus.plexus.util.FileUtils;
+
+public class TeeOutputTest
+    extends TestCase
+{
+    private File file;
+
+    protected void setUp()
+        throws Exception
+    {
+        file = new File( "target/tee-test/output.txt" ).getAbsoluteFile();
+        file.getParentFile().mkdirs();
+    }
+
+    public void testWritesFileAndConsole()
+        throws Exception
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        TeeOutput tee = new TeeOutput( file, out, err );
+        tee.getOut().write( "hello ".getBytes() );
+        tee.getErr().write( "error ".getBytes() );
+        tee.getOut().write( 'x' );
+        tee.close();
+
+        assertEquals( "hello error x", FileUtils.fileRead( file ) );
+        assertEquals( "hello x", out.toString() );
+        assertEquals( "error ", err.toString() );
+    }
+
+    public void testBlockedConsoleDoesNotStall()
+        throws Exception
+    {
+        final CountDownLatch release = new CountDownLatch( 1 );
+        OutputStream blocked = new OutputStream()
+        {
+            public void write( int b )
+                throws IOException
+            {
+                write( new byte[] { (byte) b }, 0, 1 );
+            }
+
+            public void write( byte[] b, int off, int len )
+                throws IOException
+            {
+                try
+                {
+                    release.await();
+                }
+                catch ( InterruptedException e )
+                {
+                    throw new IOException( "interrupted" );
+                }
+            }
+        };
+
+        TeeOutput tee = new TeeOutput( file, blocked, blocked );
+        byte[] data = new byte[1024 * 1024];
+        long start = System.currentTimeMillis();
+        tee.getOut().write( data );
+        tee.getOut().write( data );
+        long elapsed = System.currentTimeMillis() - start;
+        release.countDown();
+        tee.close();
+
+        assertTrue( "took " + elapsed + " ms", elapsed < 10 * TeeOutput.CONSOLE_TIMEOUT );
+        assertEquals( 2 * data.length, file.length() );
+    }
+}
@@ -0,0 +1,74 @@
+package org.codehaus.mojo.exec;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import junit.framework.TestCase;
+
+import org.apache.maven.toolchain.Toolchain;
+
+public class ToolchainCacheTest
+    extends TestCase
+{
+    public void testFindTool()
+    {
+        StubToolchain jdk = new StubToolchain( "/opt/jdk" );
+        ToolchainCache cache = new ToolchainCache();
+
+        assertEquals( "/opt/jdk/bin/java", cache.findTool( jdk, "java" ) );
+        assertEquals( "/opt/jdk/bin/java", cache.findTool( new StubToolchain( "/opt/jdk" ), "java" ) );
+        assertNull( cache.findTool( jdk, "missing" ) );
+        assertNull( cache.findTool( jdk, "missing" ) );
+        assertEquals( 2, jdk.scans );
+
+        StubToolchain other = new StubToolchain( "/opt/other" );
+        assertEquals( "/opt/other/bin/java", cache.findTool( other, "java" ) );
+        assertEquals( 1, other.scans );
+        assertEquals( "2 of 5 toolchain lookup(s) answered from the cache", cache.getStatistics() );
+    }
+
+    private static class StubToolchain
+        implements Toolchain
+    {
+        private final String home;
+
+        private int scans;
+
+        StubToolchain( String home )
+        {
+            this.home = home;
+        }
+
+        public String getType()
+        {
+            return "jdk";
+        }
+
+        public String findTool( String toolName )
+        {
+            scans++;
+            return "missing".equals( toolName ) ? null : home + "/bin/" + toolName;
+        }
+
+        public String toString()
+        {
+            return "JDK[" + home + "]";
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package org.codehaus.mojo.exec;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+
+public class WorkerPoolTest
+    extends TestCase
+{
+    private final WorkerPool pool = new WorkerPool();
+
+    private final List<String> command = Arrays.asList( new String[] {
+        new File( System.getProperty( "java.home" ), "bin/java" ).getAbsolutePath(), "-cp",
+        new File( "target/test-classes" ).getAbsolutePath(), StubWorker.class.getName() } );
+
+    protected void tearDown()
+    {
+        pool.destroyAll();
+    }
+
+    public void testTimeoutStartsWhenTheRequestIsServed()
+        throws Exception
+    {
+        final Map<String, String> enviro = new HashMap<String, String>( System.getenv() );
+        final Exception[] failures = new Exception[2];
+        Thread[] threads = new Thread[2];
+        for ( int i = 0; i < threads.length; i++ )
+        {
+            final int index = i;
+            threads[i] = new Thread()
+            {
+                public void run()
+                {
+                    try
+                    {
+                        // each request takes one second, the second one waits for the first one
+                        pool.execute( command, new File( "." ), enviro, Arrays.asList( new String[] { "slow" } ),
+                                      60000, 1500, 1000, new ByteArrayOutputStream(), new SystemStreamLog() );
+                    }
+                    catch ( Exception e )
+                    {
+                        failures[index] = e;
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for ( Thread thread : threads )
+        {
+            thread.join( 10000 );
+        }
+        assertNull( failures[0] );
+        assertNull( failures[1] );
+    }
+
+    public void testNullValuesAreNotSet()
+        throws Exception
+    {
+        Map<String, String> enviro = new HashMap<String, String>( System.getenv() );
+        enviro.put( "EXEC_NULL_VALUE", null );
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        assertEquals( 0, pool.execute( command, new File( "." ), enviro, Arrays.asList( new String[] { "hello" } ),
+                                       60000, 0, 1000, out, new SystemStreamLog() ) );
+        assertEquals( "request 1: hello", out.toString().trim() );
+    }
+}